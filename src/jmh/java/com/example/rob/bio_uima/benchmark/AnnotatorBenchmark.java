@@ -0,0 +1,95 @@
+package com.example.rob.bio_uima.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.util.XMLInputSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.rob.bio_uima.uima.BioTypes;
+import com.example.rob.bio_uima.uima.CasView;
+
+/**
+ * End-to-end runs of the translation and all-pairs alignment pipeline (<code>desc/BioDescriptor.xml</code>) over one
+ * CAS of synthetic DNA sequences, including filling the CAS. Run from the project directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotatorBenchmark {
+
+   private static final String DESCRIPTOR = "src/main/resources/desc/BioDescriptor.xml";
+
+   @Param({ "8", "32" })
+   public int                  sequences;
+
+   @Param({ "300", "3000" })
+   public int                  length;
+
+   private AnalysisEngine      engine;
+   private CAS                 cas;
+   private String[]            dna;
+
+   @Setup
+   public void setUp() throws Exception {
+      ResourceSpecifier specifier = UIMAFramework.getXMLParser().parseResourceSpecifier(
+            new XMLInputSource(DESCRIPTOR));
+      engine = UIMAFramework.produceAnalysisEngine(specifier);
+      cas = engine.newCAS();
+
+      // Every sequence is a single open reading frame, so that each has a protein of length / 3 residues to align.
+      SequenceGenerator generator = new SequenceGenerator(42);
+      dna = new String[sequences];
+      for (int i = 0; i < sequences; i++) {
+         dna[i] = generator.codingDna(length / 3);
+      }
+   }
+
+   @Benchmark
+   public CAS allPairs() throws Exception {
+      cas.reset();
+      CAS dnaView = cas.createView(CasView.DNA);
+      Type sequenceType = cas.getTypeSystem().getType(BioTypes.DNA_SEQUENCE);
+      Feature name = sequenceType.getFeatureByBaseName(BioTypes.NAME);
+
+      StringBuilder text = new StringBuilder();
+      for (String seq : dna) {
+         text.append(seq).append(" ");
+      }
+      dnaView.setDocumentText(text.toString());
+      for (int i = 0, begin = 0; i < dna.length; begin += dna[i].length() + 1, i++) {
+         AnnotationFS sequence = dnaView.createAnnotation(sequenceType, begin, begin + dna[i].length());
+         sequence.setStringValue(name, "seq" + i);
+         dnaView.addFsToIndexes(sequence);
+      }
+
+      engine.process(cas);
+      return cas;
+   }
+
+   @TearDown
+   public void tearDown() {
+      engine.destroy();
+   }
+
+}
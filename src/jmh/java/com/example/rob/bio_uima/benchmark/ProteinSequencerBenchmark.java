@@ -0,0 +1,78 @@
+package com.example.rob.bio_uima.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.rob.bio_uima.core.Orf;
+import com.example.rob.bio_uima.core.OrfFinder;
+import com.example.rob.bio_uima.core.PackedDnaSequence;
+import com.example.rob.bio_uima.core.ProteinSequencer;
+
+/**
+ * Translation throughput from 1 KB to 100 MB of DNA. Scores are in microseconds per sequence; divide the length by
+ * the score for nucleotides per microsecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProteinSequencerBenchmark {
+
+   @Param({ "1024", "1048576", "104857600" })
+   public int               length;
+
+   private String            dna;
+   private PackedDnaSequence packed;
+   private OrfFinder         finder;
+
+   @Setup
+   public void setUp() {
+      dna = new SequenceGenerator(42).dna(length);
+      packed = PackedDnaSequence.pack(dna);
+      finder = new OrfFinder(30);
+   }
+
+   /**
+    * Packing and translating, as for text input.
+    */
+   @Benchmark
+   public String findLongestProteinOrf() {
+      return ProteinSequencer.getInstance().findLongestProteinOrf(dna);
+   }
+
+   /**
+    * Translating an already packed sequence, as for a sequence store.
+    */
+   @Benchmark
+   public Orf findLongestOrf_Packed() {
+      return ProteinSequencer.getInstance().findLongestOrf(packed);
+   }
+
+   @Benchmark
+   public PackedDnaSequence pack() {
+      return PackedDnaSequence.pack(dna);
+   }
+
+   /**
+    * The ten longest ORFs of at least 30 amino acids, in all six frames.
+    */
+   @Benchmark
+   public List<Orf> findOrfs() {
+      return finder.findOrfs(packed, 10);
+   }
+
+}
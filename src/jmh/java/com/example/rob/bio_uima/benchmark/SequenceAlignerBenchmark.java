@@ -0,0 +1,85 @@
+package com.example.rob.bio_uima.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.rob.bio_uima.core.Alignment;
+import com.example.rob.bio_uima.core.SequenceAligner;
+
+/**
+ * Pairwise alignment over a grid of lengths. Besides the time per pair, the 'cells' counter reports dynamic programming
+ * cell updates per second; divide it by 10^9 for GCUPS. Traceback counts each cell of the cost matrix once, although
+ * Hirschberg's algorithm computes about twice as many.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SequenceAlignerBenchmark {
+
+   @Param({ "100", "1000", "10000" })
+   public int                  firstLength;
+
+   @Param({ "100", "1000", "10000" })
+   public int                  secondLength;
+
+   @Param({ "SCALAR", "STRIPED" })
+   public SequenceAligner.Kernel kernel;
+
+   private SequenceAligner     aligner;
+   private String              first;
+   private String              second;
+
+   /**
+    * Cell updates, reported by JMH as a rate.
+    */
+   @State(Scope.Thread)
+   @AuxCounters(AuxCounters.Type.OPERATIONS)
+   public static class Cells {
+
+      public long cells;
+
+      @Setup(Level.Iteration)
+      public void reset() {
+         cells = 0;
+      }
+   }
+
+   @Setup
+   public void setUp() {
+      SequenceGenerator generator = new SequenceGenerator(42);
+      first = generator.protein(firstLength);
+      second = generator.mutate(first.substring(0, Math.min(firstLength, secondLength)), 0.3)
+            + generator.protein(Math.max(0, secondLength - firstLength));
+      aligner = new SequenceAligner(-2, -2, 2, -1);
+      aligner.setKernel(kernel);
+   }
+
+   @Benchmark
+   public int score(Cells counter) {
+      counter.cells += (long) firstLength * secondLength;
+      return aligner.score(first, second);
+   }
+
+   @Benchmark
+   public Alignment align(Cells counter) {
+      counter.cells += (long) firstLength * secondLength;
+      return aligner.align(first, second);
+   }
+
+}
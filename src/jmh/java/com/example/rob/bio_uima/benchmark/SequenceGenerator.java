@@ -0,0 +1,73 @@
+package com.example.rob.bio_uima.benchmark;
+
+import java.util.Random;
+
+/**
+ * Seeded generator of synthetic DNA and protein sequences, so that every benchmark run sees the same input.
+ */
+public class SequenceGenerator {
+
+   private static final String NUCLEOTIDES = "ACGT";
+   private static final String RESIDUES    = "ACDEFGHIKLMNPQRSTVWY";
+
+   private final Random        random;
+
+   public SequenceGenerator(long seed) {
+      this.random = new Random(seed);
+   }
+
+   /**
+    * 
+    * @param length
+    * @return A uniformly random DNA sequence, in which start and stop codons occur by chance.
+    */
+   public String dna(int length) {
+      return random(NUCLEOTIDES, length);
+   }
+
+   /**
+    * 
+    * @param codons
+    * @return A start codon followed by random codons other than stop codons, which translates to a protein of
+    *         'codons' residues.
+    */
+   public String codingDna(int codons) {
+      StringBuilder dna = new StringBuilder(3 * codons).append("ATG");
+      while (dna.length() < 3 * codons) {
+         String codon = random(NUCLEOTIDES, 3);
+         if (!codon.equals("TAA") && !codon.equals("TAG") && !codon.equals("TGA")) {
+            dna.append(codon);
+         }
+      }
+      return dna.toString();
+   }
+
+   public String protein(int length) {
+      return random(RESIDUES, length);
+   }
+
+   /**
+    * 
+    * @param protein
+    * @param rate The fraction of residues to substitute.
+    * @return A copy of the protein with random substitutions, as a related sequence would have.
+    */
+   public String mutate(String protein, double rate) {
+      char[] residues = protein.toCharArray();
+      for (int i = 0; i < residues.length; i++) {
+         if (random.nextDouble() < rate) {
+            residues[i] = RESIDUES.charAt(random.nextInt(RESIDUES.length()));
+         }
+      }
+      return new String(residues);
+   }
+
+   private String random(String alphabet, int length) {
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+         chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+      }
+      return new String(chars);
+   }
+
+}
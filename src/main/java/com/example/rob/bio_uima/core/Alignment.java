@@ -0,0 +1,268 @@
+package com.example.rob.bio_uima.core;
+
+import java.util.Arrays;
+
+/**
+ * A global alignment of two sequences, stored as the score and a run-length encoded list of edit operations, which
+ * takes memory proportional to the number of runs rather than to the length of the alignment. The gapped rows are
+ * only rendered when asked for.
+ * 
+ * <p>
+ * The operations can be written as a CIGAR-style string such as <code>3M1X2I4M1D</code> (see {@link #toCigar()}).
+ */
+public class Alignment {
+
+   /**
+    * An alignment column.
+    */
+   public enum Op {
+      /**
+       * Two equal residues.
+       */
+      MATCH('M'),
+      /**
+       * Two different residues.
+       */
+      MISMATCH('X'),
+      /**
+       * A residue of the second sequence against a gap.
+       */
+      INSERTION('I'),
+      /**
+       * A residue of the first sequence against a gap.
+       */
+      DELETION('D');
+
+      private final char code;
+
+      private Op(char code) {
+         this.code = code;
+      }
+
+      public char getCode() {
+         return code;
+      }
+   }
+
+   private static final Op[]    OPS  = Op.values();
+   private static final char    GAP  = '-';
+
+   private final CharSequence   x;
+   private final CharSequence   y;
+   private final int            score;
+
+   /**
+    * One entry per run: <code>length &lt;&lt; 2 | op.ordinal()</code>.
+    */
+   private final int[]          runs;
+
+   private Alignment(CharSequence x, CharSequence y, int score, int[] runs) {
+      this.x = x;
+      this.y = y;
+      this.score = score;
+      this.runs = runs;
+   }
+
+   /**
+    * Rebuilds an alignment from its CIGAR string.
+    * 
+    * @param cigar As returned by {@link #toCigar()}.
+    * @param x The first sequence.
+    * @param y The second sequence.
+    * @param score
+    * @return The alignment.
+    * @throws IllegalArgumentException If the string is not a valid list of runs.
+    */
+   public static Alignment fromCigar(String cigar, CharSequence x, CharSequence y, int score) {
+      Builder builder = new Builder();
+      int length = 0;
+      for (int i = 0; i < cigar.length(); i++) {
+         char c = cigar.charAt(i);
+         if (c >= '0' && c <= '9') {
+            length = 10 * length + (c - '0');
+            continue;
+         }
+         Op op = null;
+         for (Op candidate : OPS) {
+            if (candidate.getCode() == c) {
+               op = candidate;
+            }
+         }
+         if (op == null || length == 0) {
+            throw new IllegalArgumentException("Invalid CIGAR string: " + cigar);
+         }
+         builder.add(op, length);
+         length = 0;
+      }
+      if (length != 0) {
+         throw new IllegalArgumentException("Invalid CIGAR string: " + cigar);
+      }
+      return builder.build(x, y, score);
+   }
+
+   public int getScore() {
+      return score;
+   }
+
+   /**
+    * 
+    * @return The number of runs of equal operations.
+    */
+   public int getRunCount() {
+      return runs.length;
+   }
+
+   public Op getOp(int run) {
+      return OPS[runs[run] & 3];
+   }
+
+   public int getRunLength(int run) {
+      return runs[run] >>> 2;
+   }
+
+   /**
+    * 
+    * @return The number of alignment columns.
+    */
+   public int getLength() {
+      int length = 0;
+      for (int run : runs) {
+         length += run >>> 2;
+      }
+      return length;
+   }
+
+   /**
+    * 
+    * @return The same alignment with the two sequences swapped (insertions become deletions and vice versa).
+    */
+   public Alignment swap() {
+      int[] swapped = new int[runs.length];
+      for (int r = 0; r < runs.length; r++) {
+         int op = runs[r] & 3;
+         if (op == Op.INSERTION.ordinal()) {
+            op = Op.DELETION.ordinal();
+         }
+         else if (op == Op.DELETION.ordinal()) {
+            op = Op.INSERTION.ordinal();
+         }
+         swapped[r] = (runs[r] & ~3) | op;
+      }
+      return new Alignment(y, x, score, swapped);
+   }
+
+   /**
+    * 
+    * @return The first sequence with '-' for gaps.
+    */
+   public String getFirstRow() {
+      return render(x, Op.INSERTION);
+   }
+
+   /**
+    * 
+    * @return The second sequence with '-' for gaps.
+    */
+   public String getSecondRow() {
+      return render(y, Op.DELETION);
+   }
+
+   private String render(CharSequence seq, Op gap) {
+      char[] row = new char[getLength()];
+      int column = 0;
+      int p = 0;
+      for (int r = 0; r < runs.length; r++) {
+         boolean isGap = getOp(r) == gap;
+         for (int k = getRunLength(r); k > 0; k--) {
+            row[column++] = isGap ? GAP : seq.charAt(p++);
+         }
+      }
+      return new String(row);
+   }
+
+   /**
+    * 
+    * @return The runs as <code>length</code> followed by the code of the operation, e.g. <code>3M1X2I</code>.
+    */
+   public String toCigar() {
+      StringBuilder cigar = new StringBuilder(4 * runs.length);
+      for (int r = 0; r < runs.length; r++) {
+         cigar.append(getRunLength(r)).append(getOp(r).getCode());
+      }
+      return cigar.toString();
+   }
+
+   @Override
+   public String toString() {
+      return toCigar() + " (" + score + ")";
+   }
+
+   /**
+    * Collects runs of operations. A traceback can append a segment backwards between {@link #beginReversed()} and
+    * {@link #endReversed()}, which flips it in place.
+    */
+   static final class Builder {
+
+      private int[] runs = new int[16];
+      private int   count;
+
+      /**
+       * Runs before this index are not merged with new ones.
+       */
+      private int   floor;
+
+      void add(Op op, int length) {
+         if (length <= 0) {
+            return;
+         }
+         if (count > floor && (runs[count - 1] & 3) == op.ordinal()) {
+            runs[count - 1] += length << 2;
+            return;
+         }
+         if (count == runs.length) {
+            runs = Arrays.copyOf(runs, 2 * count);
+         }
+         runs[count++] = length << 2 | op.ordinal();
+      }
+
+      void beginReversed() {
+         floor = count;
+      }
+
+      void endReversed() {
+         for (int i = floor, j = count - 1; i < j; i++, j--) {
+            int run = runs[i];
+            runs[i] = runs[j];
+            runs[j] = run;
+         }
+
+         // Join the flipped segment to the run before it.
+         if (floor > 0 && floor < count && (runs[floor - 1] & 3) == (runs[floor] & 3)) {
+            runs[floor - 1] += runs[floor] & ~3;
+            System.arraycopy(runs, floor + 1, runs, floor, count - floor - 1);
+            count--;
+         }
+         floor = 0;
+      }
+
+      /**
+       * 
+       * @param op
+       * @return The total length of the runs of the given operation.
+       */
+      int total(Op op) {
+         int total = 0;
+         for (int r = 0; r < count; r++) {
+            if ((runs[r] & 3) == op.ordinal()) {
+               total += runs[r] >>> 2;
+            }
+         }
+         return total;
+      }
+
+      Alignment build(CharSequence x, CharSequence y, int score) {
+         return new Alignment(x, y, score, Arrays.copyOf(runs, count));
+      }
+   }
+
+}
@@ -0,0 +1,400 @@
+package com.example.rob.bio_uima.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers alignments and scores so that pairs seen before are not aligned again. Entries are keyed by a 128-bit hash
+ * of the two sequences and the four costs of the aligner, so a changed sequence or cost scheme simply misses.
+ * 
+ * <p>
+ * Recently used entries are kept in an in-memory LRU map. With a file, every new entry is also appended to it and the
+ * file is memory-mapped when opened; only the positions of its records are kept on the heap. Rerunning over an input
+ * with a few new sequences then only aligns the pairs that involve them.
+ * 
+ * <p>
+ * Records are little-endian: both halves of the key (longs), the score (int), and the length of the CIGAR string (see
+ * {@link Alignment#toCigar()}) followed by its bytes, or -1 for a score alone. A record cut short by a crash is dropped
+ * when the file is opened, and the file is forced to the disk when closed. Files are limited to 2 GB: a new entry that
+ * would take the file past it is kept in memory and refused with an {@link UncheckedIOException}.
+ * 
+ * <p>
+ * Lookups and updates are synchronized, but alignments are computed outside of the lock, so a single cache can be
+ * shared by several threads, each with its own {@link SequenceAligner}. Records are appended at the end known to the
+ * instance, so two instances must never write the same file: {@link #open(int, String)} returns the instance already
+ * open on a file within the JVM, and a file must not be shared between processes.
+ */
+public class AlignmentCache implements Closeable {
+
+   private static final int           MAGIC        = 0x31434142;   // "BAC1"
+   private static final int           HEADER_BYTES = 8;
+   private static final int           RECORD_BYTES = 24;
+   private static final int           SCORE_ONLY   = -1;
+
+   /**
+    * The caches backed by a file, by canonical path.
+    */
+   private static final Map<String, AlignmentCache> OPEN = new HashMap<String, AlignmentCache>();
+
+   private final Map<Key, Entry>      recent;
+   private final Map<Key, Integer>    stored       = new HashMap<Key, Integer>();
+   private final RandomAccessFile     file;
+   private final FileChannel          channel;
+   private MappedByteBuffer           mapping;
+   private long                       fileSize;
+   private final long                 maxBytes;
+   private String                     path;
+   private int                        references;
+
+   private long                       hits;
+   private long                       misses;
+
+   /**
+    * Creates an in-memory cache.
+    * 
+    * @param capacity The number of entries kept in memory.
+    */
+   public AlignmentCache(int capacity) {
+      this.recent = lru(capacity);
+      this.maxBytes = 0;
+      this.file = null;
+      this.channel = null;
+   }
+
+   /**
+    * Returns the cache backed by a file, which is created if it does not exist. A file already open in this JVM gives
+    * the same instance, with the capacity it was first opened with; it is closed when each caller has closed it.
+    * 
+    * @param capacity The number of entries kept in memory.
+    * @param fileName
+    * @return The cache.
+    * @throws IOException If the file cannot be opened or is not an alignment cache.
+    */
+   public static AlignmentCache open(int capacity, String fileName) throws IOException {
+      return open(capacity, fileName, Integer.MAX_VALUE);
+   }
+
+   /**
+    * 
+    * @param capacity
+    * @param fileName
+    * @param maxBytes The largest file to write, if the file is not open yet.
+    * @return The cache.
+    * @throws IOException If the file cannot be opened or is not an alignment cache.
+    */
+   static AlignmentCache open(int capacity, String fileName, long maxBytes) throws IOException {
+      String path = new File(fileName).getCanonicalPath();
+      synchronized (OPEN) {
+         AlignmentCache cache = OPEN.get(path);
+         if (cache == null) {
+            cache = new AlignmentCache(capacity, path, maxBytes);
+            cache.path = path;
+            OPEN.put(path, cache);
+         }
+         cache.references++;
+         return cache;
+      }
+   }
+
+   private AlignmentCache(int capacity, String fileName, long maxBytes) throws IOException {
+      this.recent = lru(capacity);
+      this.maxBytes = maxBytes;
+      this.file = new RandomAccessFile(fileName, "rw");
+      this.channel = file.getChannel();
+      try {
+         open(fileName);
+      }
+      catch (IOException e) {
+         file.close();
+         throw e;
+      }
+   }
+
+   private static Map<Key, Entry> lru(final int capacity) {
+      return new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > capacity;
+         }
+      };
+   }
+
+   /**
+    * Indexes the records of the file, dropping any incomplete one at its end.
+    */
+   private void open(String fileName) throws IOException {
+      fileSize = channel.size();
+      if (fileSize == 0) {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+         header.putInt(MAGIC).putInt(0).flip();
+         write(header);
+      }
+      if (fileSize > maxBytes) {
+         throw new IOException("Alignment cache is too large to map: " + fileName);
+      }
+      remap();
+      if (fileSize < HEADER_BYTES || mapping.getInt(0) != MAGIC) {
+         throw new IOException("Not an alignment cache: " + fileName);
+      }
+
+      int position = HEADER_BYTES;
+      while (position + RECORD_BYTES <= fileSize) {
+         int cigarLength = mapping.getInt(position + 20);
+         int end = position + RECORD_BYTES + Math.max(0, cigarLength);
+         if (cigarLength < SCORE_ONLY || end > fileSize) {
+            break;
+         }
+         stored.put(new Key(mapping.getLong(position), mapping.getLong(position + 8)), position);
+         position = end;
+      }
+      if (position < fileSize) {
+         channel.truncate(position);
+         fileSize = position;
+         remap();
+      }
+   }
+
+   private void remap() throws IOException {
+      mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+      mapping.order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   /**
+    * Returns the cached alignment of the pair, or aligns it with 'aligner' and caches it.
+    * 
+    * @param aligner
+    * @param seq1
+    * @param seq2
+    * @return The alignment.
+    * @throws UncheckedIOException If the entry cannot be written to the file, or would take it past 2 GB.
+    */
+   public Alignment align(SequenceAligner aligner, CharSequence seq1, CharSequence seq2) {
+      Key key = new Key(aligner, seq1, seq2);
+      Entry entry = get(key, true);
+      if (entry != null) {
+         return Alignment.fromCigar(entry.cigar, seq1, seq2, entry.score);
+      }
+      Alignment alignment = aligner.align(seq1, seq2);
+      put(key, new Entry(alignment.getScore(), alignment.toCigar()));
+      return alignment;
+   }
+
+   /**
+    * Returns the cached score of the pair, or scores it with 'aligner' and caches it. Abandoned pairs (see
+    * {@link SequenceAligner#setScoreCutoff(int)}) are not cached.
+    * 
+    * @param aligner
+    * @param seq1
+    * @param seq2
+    * @return The score.
+    * @throws UncheckedIOException If the entry cannot be written to the file, or would take it past 2 GB.
+    */
+   public int score(SequenceAligner aligner, CharSequence seq1, CharSequence seq2) {
+      Key key = new Key(aligner, seq1, seq2);
+      Entry entry = get(key, false);
+      if (entry != null) {
+         return entry.score;
+      }
+      int score = aligner.score(seq1, seq2);
+      if (score != SequenceAligner.ABANDONED) {
+         put(key, new Entry(score, null));
+      }
+      return score;
+   }
+
+   /**
+    * 
+    * @param key
+    * @param needsAlignment True if an entry with only a score will not do.
+    * @return The entry, or null.
+    */
+   private synchronized Entry get(Key key, boolean needsAlignment) {
+      Entry entry = recent.get(key);
+      if (entry == null && stored.containsKey(key)) {
+         entry = read(stored.get(key));
+         recent.put(key, entry);
+      }
+      if (entry == null || (needsAlignment && entry.cigar == null)) {
+         misses++;
+         return null;
+      }
+      hits++;
+      return entry;
+   }
+
+   private synchronized void put(Key key, Entry entry) {
+      recent.put(key, entry);
+      if (channel == null) {
+         return;
+      }
+
+      byte[] cigar = entry.cigar == null ? new byte[0] : entry.cigar.getBytes(StandardCharsets.US_ASCII);
+      ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES + cigar.length).order(ByteOrder.LITTLE_ENDIAN);
+      record.putLong(key.first).putLong(key.second).putInt(entry.score);
+      record.putInt(entry.cigar == null ? SCORE_ONLY : cigar.length).put(cigar).flip();
+      try {
+         if (fileSize + record.remaining() > maxBytes) {
+            throw new IOException("Alignment cache would exceed " + maxBytes + " bytes: " + path);
+         }
+         long position = fileSize;
+         write(record);
+         stored.put(key, (int) position);
+      }
+      catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private void write(ByteBuffer bytes) throws IOException {
+      while (bytes.hasRemaining()) {
+         fileSize += channel.write(bytes, fileSize);
+      }
+   }
+
+   private Entry read(int position) {
+      if (position + RECORD_BYTES > mapping.capacity()) {
+         // Appended since the file was last mapped.
+         try {
+            remap();
+         }
+         catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+      int score = mapping.getInt(position + 16);
+      int cigarLength = mapping.getInt(position + 20);
+      if (cigarLength == SCORE_ONLY) {
+         return new Entry(score, null);
+      }
+      byte[] cigar = new byte[cigarLength];
+      for (int b = 0; b < cigarLength; b++) {
+         cigar[b] = mapping.get(position + RECORD_BYTES + b);
+      }
+      return new Entry(score, new String(cigar, StandardCharsets.US_ASCII));
+   }
+
+   /**
+    * 
+    * @return The number of lookups answered from the cache.
+    */
+   public synchronized long getHitCount() {
+      return hits;
+   }
+
+   /**
+    * 
+    * @return The number of lookups that had to align or score the pair.
+    */
+   public synchronized long getMissCount() {
+      return misses;
+   }
+
+   /**
+    * Closes the file once every caller of {@link #open(int, String)} that got this instance has closed it.
+    */
+   @Override
+   public void close() throws IOException {
+      if (file == null) {
+         return;
+      }
+      synchronized (OPEN) {
+         if (--references > 0) {
+            return;
+         }
+         OPEN.remove(path);
+      }
+      synchronized (this) {
+         try {
+            channel.force(false);
+         }
+         finally {
+            file.close();
+         }
+      }
+   }
+
+   /**
+    * A cached score and, unless only the score was asked for, the alignment as a CIGAR string.
+    */
+   private static final class Entry {
+
+      final int    score;
+      final String cigar;
+
+      Entry(int score, String cigar) {
+         this.score = score;
+         this.cigar = cigar;
+      }
+   }
+
+   /**
+    * Two 64-bit hashes: of the costs and the first sequence, and of that hash and the second sequence.
+    */
+   private static final class Key {
+
+      final long first;
+      final long second;
+
+      Key(long first, long second) {
+         this.first = first;
+         this.second = second;
+      }
+
+      Key(SequenceAligner aligner, CharSequence seq1, CharSequence seq2) {
+         long costs = mix(aligner.getInsertionCost());
+         costs = mix(costs ^ aligner.getDeletionCost());
+         costs = mix(costs ^ aligner.getMatchedSubstitutionCost());
+         costs = mix(costs ^ aligner.getUnmatchedSubstitutionCost());
+         this.first = hash(costs, seq1);
+         this.second = hash(first, seq2);
+      }
+
+      /**
+       * FNV-1a over the characters, with the length and a final mix.
+       */
+      private static long hash(long seed, CharSequence seq) {
+         long h = 0xCBF29CE484222325L ^ seed;
+         for (int i = 0; i < seq.length(); i++) {
+            h = (h ^ seq.charAt(i)) * 0x100000001B3L;
+         }
+         return mix(h ^ seq.length());
+      }
+
+      /**
+       * The finalizer of MurmurHash3.
+       */
+      private static long mix(long h) {
+         h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+         h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+         return h ^ (h >>> 33);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof Key)) {
+            return false;
+         }
+         Key other = (Key) o;
+         return first == other.first && second == other.second;
+      }
+
+      @Override
+      public int hashCode() {
+         return (int) (first ^ (first >>> 32) ^ second);
+      }
+   }
+
+}
@@ -0,0 +1,50 @@
+package com.example.rob.bio_uima.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only view of single-byte characters in a buffer.
+ */
+final class AsciiSequence implements CharSequence {
+
+   private final ByteBuffer buffer;
+   private final int        offset;
+   private final int        length;
+
+   AsciiSequence(ByteBuffer buffer, int offset, int length) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.length = length;
+   }
+
+   @Override
+   public int length() {
+      return length;
+   }
+
+   @Override
+   public char charAt(int index) {
+      if (index < 0 || index >= length) {
+         throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+      }
+      return (char) (buffer.get(offset + index) & 0xFF);
+   }
+
+   @Override
+   public CharSequence subSequence(int start, int end) {
+      if (start < 0 || end > length || start > end) {
+         throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + length);
+      }
+      return new AsciiSequence(buffer, offset + start, end - start);
+   }
+
+   @Override
+   public String toString() {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+         bytes[i] = buffer.get(offset + i);
+      }
+      return new String(bytes, StandardCharsets.ISO_8859_1);
+   }
+}
@@ -0,0 +1,173 @@
+package com.example.rob.bio_uima.core;
+
+/**
+ * Computes global alignment scores within a band of diagonals around the main diagonal, which takes O(n * k) time for
+ * a band of width 'k'. After each pass the score is compared against an upper bound on every path that leaves the
+ * band; if some such path could still score higher the band is doubled and the pass repeated (Ukkonen), so the result
+ * is always the same as the full Needleman-Wunsch score.
+ * 
+ * <p>
+ * An optional score cutoff abandons a pair as soon as no path through the current row can reach the cutoff, using an
+ * upper bound on the score of the remaining suffixes.
+ * 
+ * <p>
+ * The rolling row is kept between calls, so an instance is not thread-safe.
+ * 
+ * <p>
+ * <ul>
+ * <li>See: <a href="http://dx.doi.org/10.1016/S0019-9958(85)80046-2">Algorithms for approximate string matching
+ * (Ukkonen, 1985)</a></li>
+ * </ul>
+ */
+public class BandedAligner {
+
+   /**
+    * Returned by {@link #score(char[], char[], int, int)} for pairs that cannot reach the cutoff.
+    */
+   public static final int  ABANDONED = Integer.MIN_VALUE;
+
+   /**
+    * Cutoff value that never abandons a pair.
+    */
+   public static final int  NO_CUTOFF = Integer.MIN_VALUE;
+
+   private static final int NEG_INF   = Integer.MIN_VALUE / 2;
+
+   private final int        insertionCost;
+   private final int        deletionCost;
+   private final int        matchedSubstitutionCost;
+   private final int        unmatchedSubstitutionCost;
+   private final int        bestSubstitutionCost;
+
+   private int[]            row       = new int[0];
+
+   /**
+    * Takes the same costs as {@link SequenceAligner#SequenceAligner(int, int, int, int)}.
+    * 
+    * @param insertionCost
+    * @param deletionCost
+    * @param matchedSubstitutionCost
+    * @param unmatchedSubstitutionCost
+    */
+   public BandedAligner(int insertionCost, int deletionCost, int matchedSubstitutionCost, int unmatchedSubstitutionCost) {
+      this.insertionCost = insertionCost;
+      this.deletionCost = deletionCost;
+      this.matchedSubstitutionCost = matchedSubstitutionCost;
+      this.unmatchedSubstitutionCost = unmatchedSubstitutionCost;
+      this.bestSubstitutionCost = Math.max(matchedSubstitutionCost, unmatchedSubstitutionCost);
+   }
+
+   /**
+    * 
+    * @param x
+    * @param y
+    * @param bandWidth The number of diagonals on either side of the band between the main diagonal and the diagonal
+    *           of the bottom-right cell. Widened as needed.
+    * @param cutoff The lowest score worth computing, or {@link #NO_CUTOFF}.
+    * @return The global alignment score, or {@link #ABANDONED} if it is below the cutoff.
+    */
+   public int score(char[] x, char[] y, int bandWidth, int cutoff) {
+      int n = x.length;
+      int m = y.length;
+      int fullWidth = Math.min(n, m);
+      int width = Math.max(0, Math.min(bandWidth, fullWidth));
+
+      if (row.length < m + 1) {
+         row = new int[m + 1];
+      }
+
+      while (true) {
+         int score = band(x, y, width, cutoff);
+         if (width >= fullWidth) {
+            return score;
+         }
+
+         // Any path leaving the band makes at least 'width + 1' extra pairs of insertions and deletions.
+         int outside = upperBound(n, m, width + 1);
+         if (score != ABANDONED && score >= outside) {
+            return score;
+         }
+         if (score == ABANDONED && outside < cutoff) {
+            return ABANDONED;
+         }
+
+         width = Math.min(fullWidth, 2 * width + 1);
+      }
+   }
+
+   /**
+    * One pass over the band.
+    * 
+    * @param x
+    * @param y
+    * @param width
+    * @param cutoff
+    * @return The best score of a path inside the band, or {@link #ABANDONED}.
+    */
+   private int band(char[] x, char[] y, int width, int cutoff) {
+      int n = x.length;
+      int m = y.length;
+      int lo = Math.min(0, m - n) - width;
+      int hi = Math.max(0, m - n) + width;
+      boolean checkCutoff = cutoff != NO_CUTOFF;
+
+      int prevHi = Math.min(m, hi);
+      row[0] = 0;
+      for (int j = 1; j <= prevHi; j++) {
+         row[j] = row[j - 1] + insertionCost;
+      }
+
+      for (int i = 1; i <= n; i++) {
+         char xc = x[i - 1];
+         int jLo = Math.max(0, i + lo);
+         int jHi = Math.min(m, i + hi);
+         int diag = jLo > 0 ? row[jLo - 1] : NEG_INF;
+         int left = NEG_INF;
+         int best = NEG_INF;
+
+         for (int j = jLo; j <= jHi; j++) {
+            int up = j <= prevHi ? row[j] : NEG_INF;
+            int cur = up + deletionCost;
+            if (j > 0) {
+               int costSub = diag + (xc == y[j - 1] ? matchedSubstitutionCost : unmatchedSubstitutionCost);
+               cur = Math.max(Math.max(costSub, cur), left + insertionCost);
+            }
+            row[j] = cur;
+            diag = up;
+            left = cur;
+
+            if (checkCutoff) {
+               best = Math.max(best, cur + upperBound(n - i, m - j, 0));
+            }
+         }
+         prevHi = jHi;
+
+         if (checkCutoff && best < cutoff) {
+            return ABANDONED;
+         }
+      }
+
+      int score = row[m];
+      return checkCutoff && score < cutoff ? ABANDONED : score;
+   }
+
+   /**
+    * Bounds the score of aligning 'p' residues against 'q' residues with at least 'minGapPairs' deletions and
+    * insertions beyond the unavoidable <code>|p - q|</code> gaps. The score is linear in the number of gap pairs, so the
+    * maximum is at one of the two ends of the feasible range.
+    * 
+    * @param p
+    * @param q
+    * @param minGapPairs
+    * @return An upper bound on the alignment score.
+    */
+   private int upperBound(int p, int q, int minGapPairs) {
+      int pairs = Math.min(p, q);
+      int tail = p > q ? (p - q) * deletionCost : (q - p) * insertionCost;
+      int perGapPair = deletionCost + insertionCost - bestSubstitutionCost;
+      int fewest = (pairs - minGapPairs) * bestSubstitutionCost + tail + minGapPairs * (deletionCost + insertionCost);
+      int most = p * deletionCost + q * insertionCost;
+      return perGapPair > 0 ? most : fewest;
+   }
+
+}
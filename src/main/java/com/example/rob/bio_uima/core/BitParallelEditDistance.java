@@ -0,0 +1,228 @@
+package com.example.rob.bio_uima.core;
+
+import java.util.Arrays;
+
+/**
+ * Computes unit-cost edit distances 64 matrix cells at a time by encoding each column of the dynamic programming
+ * matrix as bit-vectors. Sequences longer than 64 characters are split into blocks of 64-bit words that pass their
+ * horizontal carry from one block to the next. Two cost schemes are supported:
+ * <ul>
+ * <li>Levenshtein distance, where insertions, deletions and substitutions all cost 1 (Myers/Hyyro).</li>
+ * <li>Indel distance, where insertions and deletions cost 1 and a substitution costs 2 or more, which makes it
+ * equivalent to <code>n + m - 2 * LCS</code> (Allison-Dix/Crochemore et al.).</li>
+ * </ul>
+ * Only sequences made of 7-bit ASCII characters are handled (see {@link #isAscii(char[])}).
+ * 
+ * <p>
+ * The match bit-vectors and column state are kept between calls, so an instance is not thread-safe and should be
+ * confined to a single thread.
+ * 
+ * <p>
+ * <ul>
+ * <li>See: <a href="http://dx.doi.org/10.1145/316542.316550">A fast bit-vector algorithm for approximate string
+ * matching based on dynamic programming (Myers, 1999)</a></li>
+ * <li>See: <a href="http://www.dcc.uchile.cl/~gnavarro/ps/jea03.pdf">Bit-parallel approximate string matching
+ * algorithms with transposition (Hyyro, 2003)</a></li>
+ * <li>See: <a href="http://dx.doi.org/10.1016/S0020-0190(01)00021-3">A fast and practical bit-vector algorithm for
+ * the longest common subsequence problem (Crochemore et al., 2001)</a></li>
+ * </ul>
+ */
+public class BitParallelEditDistance {
+
+   private static final int  ALPHABET_SIZE = 128;
+   private static final long HIGH_BIT      = 1L << 63;
+   private static final long[] EMPTY        = new long[0];
+
+   private final boolean     substitutions;
+
+   /**
+    * Match bit-vectors, indexed by <code>character * blocks + block</code>.
+    */
+   private long[]            peq           = EMPTY;
+   private long[]            positive      = EMPTY;
+   private long[]            negative      = EMPTY;
+
+   /**
+    * 
+    * @param substitutions True to compute the Levenshtein distance (a substitution costs 1), false to compute the
+    *           indel distance (substitutions are never cheaper than a deletion plus an insertion).
+    */
+   public BitParallelEditDistance(boolean substitutions) {
+      this.substitutions = substitutions;
+   }
+
+   /**
+    * 
+    * @param seq1
+    * @param seq2
+    * @return The edit distance between the two sequences.
+    * @throws IllegalArgumentException If either sequence contains a character outside of the 7-bit ASCII range.
+    */
+   public int distance(CharSequence seq1, CharSequence seq2) {
+      char[] x = seq1.toString().toCharArray();
+      char[] y = seq2.toString().toCharArray();
+      if (!isAscii(x) || !isAscii(y)) {
+         throw new IllegalArgumentException("Bit-parallel edit distance only supports 7-bit ASCII sequences.");
+      }
+      return distance(x, y);
+   }
+
+   /**
+    * Computes the distance for sequences that are already known to be 7-bit ASCII.
+    * 
+    * @param x
+    * @param y
+    * @return The edit distance between the two sequences.
+    */
+   int distance(char[] x, char[] y) {
+      // The shorter sequence is encoded as bit-vectors, the longer one is scanned.
+      char[] pattern = x.length <= y.length ? x : y;
+      char[] text = x.length <= y.length ? y : x;
+
+      if (pattern.length == 0) {
+         return text.length;
+      }
+
+      buildPeq(pattern);
+      if (substitutions) {
+         return levenshtein(pattern.length, text);
+      }
+      else {
+         return pattern.length + text.length - 2 * longestCommonSubsequence(pattern.length, text);
+      }
+   }
+
+   /**
+    * 
+    * @param seq
+    * @return True if every character of the sequence can be handled by this engine.
+    */
+   static boolean isAscii(char[] seq) {
+      for (char c : seq) {
+         if (c >= ALPHABET_SIZE) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Myers' algorithm extended to multiple words: each block reports the horizontal delta on its last row and the
+    * next block takes it as its incoming delta. The distance is tracked on the last row of the last block only.
+    * 
+    * @param m The pattern length.
+    * @param text
+    * @return The Levenshtein distance.
+    */
+   private int levenshtein(int m, char[] text) {
+      int blocks = blocks(m);
+      int lastBlock = blocks - 1;
+      long lastBit = 1L << ((m - 1) & 63);
+      long[] pv = positive;
+      long[] mv = negative;
+      Arrays.fill(pv, 0, blocks, -1L);
+      Arrays.fill(mv, 0, blocks, 0L);
+
+      int score = m;
+      for (char c : text) {
+         int base = c * blocks;
+         int hin = 1;
+         for (int b = 0; b < blocks; b++) {
+            long eq = peq[base + b];
+            long pvb = pv[b];
+            long mvb = mv[b];
+            long xv = eq | mvb;
+            if (hin < 0) {
+               eq |= 1L;
+            }
+            long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+            long ph = mvb | ~(xh | pvb);
+            long mh = pvb & xh;
+
+            long high = b == lastBlock ? lastBit : HIGH_BIT;
+            int hout = (ph & high) != 0 ? 1 : ((mh & high) != 0 ? -1 : 0);
+
+            ph <<= 1;
+            mh <<= 1;
+            if (hin < 0) {
+               mh |= 1L;
+            }
+            else if (hin > 0) {
+               ph |= 1L;
+            }
+            pv[b] = mh | ~(xv | ph);
+            mv[b] = ph & xv;
+            hin = hout;
+         }
+         score += hin;
+      }
+
+      return score;
+   }
+
+   /**
+    * Bit-vector LCS, where <code>V' = (V + (V & M)) | (V & ~M)</code> and the addition carries across blocks. Every
+    * zero bit left in V marks one character of the common subsequence.
+    * 
+    * @param m The pattern length.
+    * @param text
+    * @return The length of the longest common subsequence.
+    */
+   private int longestCommonSubsequence(int m, char[] text) {
+      int blocks = blocks(m);
+      long[] v = positive;
+      Arrays.fill(v, 0, blocks, -1L);
+
+      for (char c : text) {
+         int base = c * blocks;
+         long carry = 0;
+         for (int b = 0; b < blocks; b++) {
+            long match = peq[base + b];
+            long vb = v[b];
+            long u = vb & match;
+            long sum = vb + u;
+            long carryOut = Long.compareUnsigned(sum, vb) < 0 ? 1 : 0;
+            sum += carry;
+            if (carry != 0 && sum == 0) {
+               carryOut = 1;
+            }
+            v[b] = sum | (vb & ~match);
+            carry = carryOut;
+         }
+      }
+
+      int lcs = 0;
+      for (int b = 0; b < blocks; b++) {
+         long valid = b == blocks - 1 && (m & 63) != 0 ? (1L << (m & 63)) - 1 : -1L;
+         lcs += Long.bitCount(~v[b] & valid);
+      }
+      return lcs;
+   }
+
+   /**
+    * Sets bit 'i' of the vector for character 'c' whenever <code>pattern[i] == c</code>.
+    * 
+    * @param pattern
+    */
+   private void buildPeq(char[] pattern) {
+      int blocks = blocks(pattern.length);
+      int size = ALPHABET_SIZE * blocks;
+      if (peq.length < size) {
+         peq = new long[size];
+         positive = new long[blocks];
+         negative = new long[blocks];
+      }
+      else {
+         Arrays.fill(peq, 0, size, 0L);
+      }
+
+      for (int i = 0; i < pattern.length; i++) {
+         peq[pattern[i] * blocks + (i >>> 6)] |= 1L << (i & 63);
+      }
+   }
+
+   private static int blocks(int length) {
+      return (length + 63) >>> 6;
+   }
+
+}
@@ -0,0 +1,273 @@
+package com.example.rob.bio_uima.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A symmetric matrix of pair-wise distances between 'size' sequences, with a zero diagonal. Only the upper triangle is
+ * stored, row by row in a single packed float array: row 'i' holds the distances to the sequences after it, so a row
+ * is read and written sequentially. For 50,000 sequences that is 5 GB, half of a full <code>float[][]</code>, in a
+ * single block without per-row arrays.
+ * 
+ * <p>
+ * Small matrices are kept in a float array. Large ones are memory-mapped from a scratch file of raw little-endian
+ * floats, in segments of up to 1 GB (see {@link #allocate(int)}). Reads and writes of different entries can be done
+ * from different threads.
+ */
+public class DistanceMatrix implements Closeable {
+
+   /**
+    * Entries per mapped segment (1 GB).
+    */
+   private static final int        SEGMENT_ENTRIES   = 1 << 28;
+
+   /**
+    * Largest float array the JVM will allocate.
+    */
+   private static final long       MAX_ARRAY_ENTRIES = Integer.MAX_VALUE - 8;
+
+   /**
+    * Number of pairs below which the fill no longer splits rows between tasks.
+    */
+   private static final int        PAIRS_PER_TASK    = 1024;
+
+   private final int               size;
+   private final float[]           entries;
+   private final FloatBuffer[]     segments;
+   private final RandomAccessFile  file;
+   private final File              scratch;
+
+   /**
+    * Creates a matrix in a float array.
+    * 
+    * @param size The number of sequences.
+    */
+   public DistanceMatrix(int size) {
+      long count = entryCount(size);
+      if (count > MAX_ARRAY_ENTRIES) {
+         throw new IllegalArgumentException("Too many sequences for an in-memory distance matrix: " + size);
+      }
+      this.size = size;
+      this.entries = new float[(int) count];
+      this.segments = null;
+      this.file = null;
+      this.scratch = null;
+   }
+
+   /**
+    * Creates a matrix memory-mapped from a file, which is overwritten.
+    * 
+    * @param size The number of sequences.
+    * @param fileName
+    * @throws IOException If the file cannot be created or mapped.
+    */
+   public DistanceMatrix(int size, String fileName) throws IOException {
+      this(size, new File(fileName), false);
+   }
+
+   private DistanceMatrix(int size, File fileName, boolean deleteOnClose) throws IOException {
+      if (size < 0) {
+         throw new IllegalArgumentException("Size must not be negative: " + size);
+      }
+      long count = entryCount(size);
+      this.size = size;
+      this.entries = null;
+      this.scratch = deleteOnClose ? fileName : null;
+      this.file = new RandomAccessFile(fileName, "rw");
+      try {
+         file.setLength(0);
+         file.setLength(4 * count);
+         FileChannel channel = file.getChannel();
+         this.segments = new FloatBuffer[(int) ((count + SEGMENT_ENTRIES - 1) / SEGMENT_ENTRIES)];
+         for (int s = 0; s < segments.length; s++) {
+            long first = (long) s * SEGMENT_ENTRIES;
+            segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, 4 * first, 4 * Math.min(SEGMENT_ENTRIES,
+                  count - first)).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+         }
+      }
+      catch (IOException e) {
+         file.close();
+         throw e;
+      }
+   }
+
+   /**
+    * Creates a matrix in a float array if it fits in a quarter of the maximum heap, and otherwise maps it from a
+    * temporary file that is deleted when the matrix is closed.
+    * 
+    * @param size The number of sequences.
+    * @return The matrix.
+    * @throws IOException If the temporary file cannot be created or mapped.
+    */
+   public static DistanceMatrix allocate(int size) throws IOException {
+      long count = entryCount(size);
+      if (count <= MAX_ARRAY_ENTRIES && 4 * count <= Runtime.getRuntime().maxMemory() / 4) {
+         return new DistanceMatrix(size);
+      }
+      File scratch = File.createTempFile("distances", ".bin");
+      scratch.deleteOnExit();
+      return new DistanceMatrix(size, scratch, true);
+   }
+
+   /**
+    * 
+    * @param size
+    * @return The number of stored entries of a matrix for 'size' sequences.
+    */
+   static long entryCount(int size) {
+      return (long) size * (size - 1) / 2;
+   }
+
+   public int size() {
+      return size;
+   }
+
+   /**
+    * 
+    * @param size
+    * @param i
+    * @param j
+    * @return The position of the entry for sequences 'i' &lt; 'j' in the packed triangle.
+    */
+   static long index(int size, int i, int j) {
+      return (long) i * (2L * size - i - 1) / 2 + (j - i - 1);
+   }
+
+   /**
+    * 
+    * @param i
+    * @param j
+    * @return The distance between sequences 'i' and 'j', in either order.
+    */
+   public float get(int i, int j) {
+      if (i == j) {
+         return 0;
+      }
+      long k = i < j ? index(size, i, j) : index(size, j, i);
+      return entries != null ? entries[(int) k] : segments[(int) (k >>> 28)].get((int) k & (SEGMENT_ENTRIES - 1));
+   }
+
+   /**
+    * Sets the distance between two different sequences, in either order.
+    * 
+    * @param i
+    * @param j
+    * @param distance
+    */
+   public void set(int i, int j, float distance) {
+      if (i == j) {
+         throw new IllegalArgumentException("The diagonal of a distance matrix is zero.");
+      }
+      long k = i < j ? index(size, i, j) : index(size, j, i);
+      if (entries != null) {
+         entries[(int) k] = distance;
+      }
+      else {
+         segments[(int) (k >>> 28)].put((int) k & (SEGMENT_ENTRIES - 1), distance);
+      }
+   }
+
+   /**
+    * Fills the matrix with the distances between every pair of sequences, computed from the scores of 'template' as
+    * the score lost against aligning each sequence with itself:
+    * <code>(maxScore(x, x) + maxScore(y, y)) / 2 - score(x, y)</code> (see {@link SequenceAligner#maxScore(int, int)}).
+    * With free matches this is the edit distance; identical sequences are always at distance 0.
+    * 
+    * <p>
+    * Rows are split between tasks on the pool, each with its own copy of the template, so that a task scores one
+    * sequence against all those after it and writes the row in order. Pairs the template abandons (see
+    * {@link SequenceAligner#setScoreCutoff(int)}) are set to {@link Float#MAX_VALUE}.
+    * 
+    * @param template
+    * @param seqs The sequences, as many as the size of the matrix.
+    * @param pool
+    */
+   public void fill(SequenceAligner template, List<? extends CharSequence> seqs, ForkJoinPool pool) {
+      if (seqs.size() != size) {
+         throw new IllegalArgumentException("Expected " + size + " sequences, got " + seqs.size() + ".");
+      }
+      pool.invoke(new FillTask(this, template, seqs, 0, size));
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (file != null) {
+         file.close();
+         if (scratch != null && !scratch.delete()) {
+            scratch.deleteOnExit();
+         }
+      }
+   }
+
+   /**
+    * Fills a range of rows, splitting it where it holds half of the pairs until it is small enough to fill with a
+    * single aligner.
+    */
+   private static final class FillTask extends RecursiveAction {
+
+      private static final long                 serialVersionUID = 1L;
+
+      private final DistanceMatrix              matrix;
+      private final SequenceAligner             template;
+      private final List<? extends CharSequence> seqs;
+      private final int                         from;
+      private final int                         to;
+
+      FillTask(DistanceMatrix matrix, SequenceAligner template, List<? extends CharSequence> seqs, int from, int to) {
+         this.matrix = matrix;
+         this.template = template;
+         this.seqs = seqs;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+         int n = matrix.size;
+         long first = index(n, from, from + 1);
+         long pairs = to >= n ? entryCount(n) - first : index(n, to, to + 1) - first;
+         if (to - from == 1 || pairs <= PAIRS_PER_TASK) {
+            fill();
+            return;
+         }
+
+         // The first row that starts at or after the middle pair.
+         long middle = first + pairs / 2;
+         int lo = from + 1;
+         int hi = to - 1;
+         while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index(n, mid, mid + 1) < middle) {
+               lo = mid + 1;
+            }
+            else {
+               hi = mid;
+            }
+         }
+         invokeAll(new FillTask(matrix, template, seqs, from, lo), new FillTask(matrix, template, seqs, lo, to));
+      }
+
+      private void fill() {
+         SequenceAligner aligner = new SequenceAligner(template);
+         for (int i = from; i < to; i++) {
+            CharSequence x = seqs.get(i);
+            int xSelf = aligner.maxScore(x.length(), x.length());
+            for (int j = i + 1; j < seqs.size(); j++) {
+               CharSequence y = seqs.get(j);
+               int score = aligner.score(x, y);
+               float distance = score == SequenceAligner.ABANDONED ? Float.MAX_VALUE
+                     : ((float) xSelf + aligner.maxScore(y.length(), y.length())) / 2 - score;
+               matrix.set(i, j, distance);
+            }
+         }
+      }
+   }
+}
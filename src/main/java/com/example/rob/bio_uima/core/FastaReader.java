@@ -0,0 +1,207 @@
+package com.example.rob.bio_uima.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.example.rob.bio_uima.metrics.Metrics;
+
+/**
+ * Reads FASTA and multi-FASTA files one record at a time. Header lines start with '>' or, as in the bundled
+ * <code>data/dna.txt</code>, with '#'; every other non-blank line up to the next header is part of the sequence.
+ * 
+ * <p>
+ * The file is memory-mapped a window at a time, so the heap used does not depend on the size of the file. A sequence
+ * stored on a single line is returned as a view into the mapping without copying; sequences split over several lines
+ * are copied once, without their line breaks. A window is remapped at the start of the next record when that record
+ * runs past its end, and grown if a single record does not fit.
+ * 
+ * <p>
+ * Sequences are read as single-byte (ASCII) characters. An instance is not thread-safe.
+ */
+public class FastaReader implements Closeable {
+
+   private static final int    DEFAULT_WINDOW_SIZE = 64 << 20;
+
+   private final FileChannel   channel;
+   private final long          fileSize;
+   private final int           windowSize;
+
+   private MappedByteBuffer    window;
+   private long                windowStart;
+   private long                position;
+
+   /**
+    * 
+    * @param fileName
+    * @throws IOException If the file cannot be opened.
+    */
+   public FastaReader(String fileName) throws IOException {
+      this(fileName, DEFAULT_WINDOW_SIZE);
+   }
+
+   /**
+    * 
+    * @param fileName
+    * @param windowSize The number of bytes to map at a time.
+    * @throws IOException If the file cannot be opened.
+    */
+   FastaReader(String fileName, int windowSize) throws IOException {
+      RandomAccessFile file = new RandomAccessFile(fileName, "r");
+      this.channel = file.getChannel();
+      this.fileSize = channel.size();
+      this.windowSize = Math.max(1, windowSize);
+   }
+
+   /**
+    * Reads the next record.
+    * 
+    * @return The next record, or null at the end of the file.
+    * @throws IOException If the file cannot be read or a record is larger than 2 GB.
+    */
+   public FastaRecord read() throws IOException {
+      int size = windowSize;
+      long start = position;
+      while (position < fileSize) {
+         if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+            map(position, size);
+         }
+
+         FastaRecord record = parse();
+         if (record != null) {
+            if (Metrics.ENABLED) {
+               Metrics.Counter.BYTES_READ.add(position - start);
+            }
+            return record;
+         }
+         if (position >= windowStart + window.limit()) {
+            // Only blank lines were left in the window.
+            continue;
+         }
+
+         // The record runs past the end of the window: map it again from its start, growing the window if the
+         // current one already starts there.
+         if (windowStart == position) {
+            if (size == Integer.MAX_VALUE) {
+               throw new IOException("FASTA record at offset " + position + " is larger than 2 GB.");
+            }
+            size = (int) Math.min(Integer.MAX_VALUE, Math.max((long) size, window.limit()) * 2);
+         }
+         map(position, size);
+      }
+      return null;
+   }
+
+   @Override
+   public void close() throws IOException {
+      window = null;
+      channel.close();
+   }
+
+   private void map(long start, int size) throws IOException {
+      window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, fileSize - start));
+      windowStart = start;
+   }
+
+   /**
+    * Parses the record at the current position.
+    * 
+    * @return The record, or null if the end of the window is reached before the end of the record or if only blank
+    *         lines are left in it.
+    */
+   private FastaRecord parse() {
+      ByteBuffer b = window;
+      int limit = b.limit();
+      boolean lastWindow = windowStart + limit == fileSize;
+      int i = (int) (position - windowStart);
+
+      while (i < limit && isSpace(b.get(i))) {
+         i++;
+      }
+      if (i == limit) {
+         position = windowStart + i;
+         return null;
+      }
+
+      String id = "";
+      if (isHeader(b.get(i))) {
+         int lineEnd = i;
+         while (lineEnd < limit && b.get(lineEnd) != '\n') {
+            lineEnd++;
+         }
+         if (lineEnd == limit && !lastWindow) {
+            return null;
+         }
+         id = headerId(b, i + 1, lineEnd);
+         i = lineEnd;
+      }
+
+      // Scan the sequence lines up to the next header.
+      int first = -1;
+      int last = -1;
+      int residues = 0;
+      boolean lineStart = true;
+      for (; i < limit; i++) {
+         byte c = b.get(i);
+         if (lineStart && isHeader(c)) {
+            break;
+         }
+         lineStart = c == '\n';
+         if (!isSpace(c)) {
+            if (first < 0) {
+               first = i;
+            }
+            last = i;
+            residues++;
+         }
+      }
+      if (i == limit && !lastWindow) {
+         return null;
+      }
+      position = windowStart + i;
+
+      if (residues == 0) {
+         return new FastaRecord(id, "");
+      }
+      if (last - first + 1 == residues) {
+         return new FastaRecord(id, new AsciiSequence(b, first, residues));
+      }
+
+      byte[] copy = new byte[residues];
+      for (int j = first, k = 0; j <= last; j++) {
+         byte c = b.get(j);
+         if (!isSpace(c)) {
+            copy[k++] = c;
+         }
+      }
+      return new FastaRecord(id, new AsciiSequence(ByteBuffer.wrap(copy), 0, residues));
+   }
+
+   private static String headerId(ByteBuffer b, int from, int to) {
+      while (from < to && isSpace(b.get(from))) {
+         from++;
+      }
+      int end = from;
+      while (end < to && !isSpace(b.get(end))) {
+         end++;
+      }
+      byte[] id = new byte[end - from];
+      for (int j = 0; j < id.length; j++) {
+         id[j] = b.get(from + j);
+      }
+      return new String(id, StandardCharsets.US_ASCII);
+   }
+
+   private static boolean isHeader(byte c) {
+      return c == '>' || c == '#';
+   }
+
+   private static boolean isSpace(byte c) {
+      return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+   }
+
+}
@@ -0,0 +1,34 @@
+package com.example.rob.bio_uima.core;
+
+/**
+ * One named sequence read by {@link FastaReader}.
+ */
+public class FastaRecord {
+
+   private final String       id;
+   private final CharSequence sequence;
+
+   /**
+    * 
+    * @param id The first word of the header line, or an empty string if the sequence had no header.
+    * @param sequence The residues, without line breaks.
+    */
+   public FastaRecord(String id, CharSequence sequence) {
+      this.id = id;
+      this.sequence = sequence;
+   }
+
+   public String getId() {
+      return id;
+   }
+
+   public CharSequence getSequence() {
+      return sequence;
+   }
+
+   @Override
+   public String toString() {
+      return ">" + id + " (" + sequence.length() + ")";
+   }
+
+}
@@ -0,0 +1,402 @@
+package com.example.rob.bio_uima.core;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A rooted binary tree over the sequences of a {@link DistanceMatrix}, built by UPGMA or neighbor joining, e.g. as a
+ * guide tree for progressive multiple alignment or as a clustering of the sequences.
+ * 
+ * <p>
+ * Leaves are numbered as the sequences (0 to n - 1) and internal nodes in the order they are joined (n to 2n - 2), so
+ * the root is the last node. Both builders work in place on the matrix: a joined cluster takes over the row and column
+ * of its first member. Each step updates or scans the matrix on the pool, a range of rows per task, while the choice
+ * of the pair to join is made on the calling thread, so the tree does not depend on the number of threads.
+ * 
+ * <ul>
+ * <li>See: <a href="http://en.wikipedia.org/wiki/UPGMA">UPGMA (Wikipedia)</a></li>
+ * <li>See: <a href="http://en.wikipedia.org/wiki/Neighbor_joining">Neighbor joining (Wikipedia)</a></li>
+ * </ul>
+ */
+public class GuideTree {
+
+   /**
+    * How the tree is built.
+    */
+   public enum Method {
+      /**
+       * Average linkage, for an ultrametric tree. Each row keeps its nearest cluster, so a step only rescans the rows
+       * whose nearest cluster was joined, which is O(n) per step for most inputs.
+       */
+      UPGMA,
+      /**
+       * Neighbor joining, for an additive tree rooted at its last join. Each step scans the whole matrix, so building
+       * takes O(n^3) time.
+       */
+      NEIGHBOR_JOINING
+   }
+
+   /**
+    * Number of matrix entries below which a row range is no longer split between tasks.
+    */
+   private static final int ENTRIES_PER_TASK = 1 << 14;
+
+   private final int        leafCount;
+   private final int[]      left;
+   private final int[]      right;
+   private final float[]    leftLength;
+   private final float[]    rightLength;
+   private int              joined;
+
+   private GuideTree(int leafCount) {
+      this.leafCount = leafCount;
+      this.left = new int[leafCount - 1];
+      this.right = new int[leafCount - 1];
+      this.leftLength = new float[leafCount - 1];
+      this.rightLength = new float[leafCount - 1];
+   }
+
+   /**
+    * Builds a tree from a matrix, overwriting the matrix.
+    * 
+    * @param matrix The distances between at least one sequence.
+    * @param method
+    * @param pool
+    * @return The tree.
+    */
+   public static GuideTree build(DistanceMatrix matrix, Method method, ForkJoinPool pool) {
+      if (matrix.size() == 0) {
+         throw new IllegalArgumentException("A guide tree needs at least one sequence.");
+      }
+      GuideTree tree = new GuideTree(matrix.size());
+      if (method == Method.UPGMA) {
+         tree.upgma(matrix, pool);
+      }
+      else {
+         tree.neighborJoining(matrix, pool);
+      }
+      return tree;
+   }
+
+   public int getLeafCount() {
+      return leafCount;
+   }
+
+   /**
+    * 
+    * @return The root node, which is leaf 0 for a single sequence.
+    */
+   public int getRoot() {
+      return 2 * leafCount - 2;
+   }
+
+   public boolean isLeaf(int node) {
+      return node < leafCount;
+   }
+
+   public int getLeft(int node) {
+      return left[node - leafCount];
+   }
+
+   public int getRight(int node) {
+      return right[node - leafCount];
+   }
+
+   public float getLeftLength(int node) {
+      return leftLength[node - leafCount];
+   }
+
+   public float getRightLength(int node) {
+      return rightLength[node - leafCount];
+   }
+
+   /**
+    * Renders the tree in the Newick format, e.g. <code>((a:1.0,b:1.0):0.5,c:1.5);</code>. Names with characters that
+    * are special in Newick are quoted.
+    * 
+    * @param names The name of each sequence.
+    * @return The tree on one line.
+    */
+   public String toNewick(List<String> names) {
+      StringBuilder newick = new StringBuilder();
+
+      // Depth-first, with an explicit stack as the tree may be as deep as it has leaves.
+      int[] nodes = new int[leafCount];
+      int[] stages = new int[leafCount];
+      int top = 0;
+      nodes[0] = getRoot();
+      while (top >= 0) {
+         int node = nodes[top];
+         if (isLeaf(node)) {
+            appendName(newick, names.get(node));
+            top--;
+         }
+         else if (stages[top] == 0) {
+            newick.append('(');
+            stages[top] = 1;
+            nodes[++top] = getLeft(node);
+            stages[top] = 0;
+         }
+         else if (stages[top] == 1) {
+            newick.append(':').append(getLeftLength(node)).append(',');
+            stages[top] = 2;
+            nodes[++top] = getRight(node);
+            stages[top] = 0;
+         }
+         else {
+            newick.append(':').append(getRightLength(node)).append(')');
+            top--;
+         }
+      }
+      return newick.append(';').toString();
+   }
+
+   private static void appendName(StringBuilder newick, String name) {
+      boolean plain = !name.isEmpty();
+      for (int i = 0; i < name.length() && plain; i++) {
+         plain = " \t\n()[]':;,".indexOf(name.charAt(i)) < 0;
+      }
+      if (plain) {
+         newick.append(name);
+      }
+      else {
+         newick.append('\'').append(name.replace("'", "''")).append('\'');
+      }
+   }
+
+   /**
+    * Records the next internal node.
+    */
+   private int join(int leftNode, float leftBranch, int rightNode, float rightBranch) {
+      left[joined] = leftNode;
+      right[joined] = rightNode;
+      leftLength[joined] = leftBranch;
+      rightLength[joined] = rightBranch;
+      return leafCount + joined++;
+   }
+
+   private void upgma(final DistanceMatrix d, ForkJoinPool pool) {
+      final int n = leafCount;
+      final boolean[] active = new boolean[n];
+      final int[] nearest = new int[n];
+      final float[] nearestDistance = new float[n];
+      int[] node = new int[n];
+      int[] members = new int[n];
+      float[] height = new float[n];
+      for (int i = 0; i < n; i++) {
+         active[i] = true;
+         node[i] = i;
+         members[i] = 1;
+      }
+
+      RowFunction findNearest = new RowFunction() {
+         @Override
+         public void row(int i) {
+            int best = -1;
+            float bestDistance = Float.POSITIVE_INFINITY;
+            for (int j = 0; j < n; j++) {
+               if (j != i && active[j]) {
+                  float distance = d.get(i, j);
+                  if (best < 0 || distance < bestDistance) {
+                     best = j;
+                     bestDistance = distance;
+                  }
+               }
+            }
+            nearest[i] = best;
+            nearestDistance[i] = bestDistance;
+         }
+      };
+      forEach(pool, null, n, rowGrain(n), findNearest);
+
+      int[] stale = new int[n];
+      for (int step = 0; step < n - 1; step++) {
+         int a = -1;
+         for (int i = 0; i < n; i++) {
+            if (active[i] && (a < 0 || nearestDistance[i] < nearestDistance[a])) {
+               a = i;
+            }
+         }
+         final int first = Math.min(a, nearest[a]);
+         final int second = Math.max(a, nearest[a]);
+         float h = d.get(first, second) / 2;
+         int parent = join(node[first], h - height[first], node[second], h - height[second]);
+
+         // The distance to the joined cluster is the average over its members.
+         final float firstWeight = (float) members[first] / (members[first] + members[second]);
+         active[second] = false;
+         forEach(pool, null, n, ENTRIES_PER_TASK, new RowFunction() {
+            @Override
+            public void row(int k) {
+               if (k != first && active[k]) {
+                  d.set(first, k, firstWeight * d.get(first, k) + (1 - firstWeight) * d.get(second, k));
+               }
+            }
+         });
+         node[first] = parent;
+         members[first] += members[second];
+         height[first] = h;
+
+         // An average is no nearer than the nearer of the two clusters, so only rows that pointed at them change.
+         int staleCount = 0;
+         for (int k = 0; k < n; k++) {
+            if (active[k] && (k == first || nearest[k] == first || nearest[k] == second)) {
+               stale[staleCount++] = k;
+            }
+         }
+         forEach(pool, stale, staleCount, rowGrain(n), findNearest);
+      }
+   }
+
+   private void neighborJoining(final DistanceMatrix d, ForkJoinPool pool) {
+      final int n = leafCount;
+      final boolean[] active = new boolean[n];
+      final double[] rowSums = new double[n];
+      final double[] rowBest = new double[n];
+      final int[] rowBestColumn = new int[n];
+      int[] node = new int[n];
+      for (int i = 0; i < n; i++) {
+         active[i] = true;
+         node[i] = i;
+      }
+
+      forEach(pool, null, n, rowGrain(n), new RowFunction() {
+         @Override
+         public void row(int i) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+               sum += d.get(i, j);
+            }
+            rowSums[i] = sum;
+         }
+      });
+
+      for (int remaining = n; remaining > 2; remaining--) {
+         // Each row finds its best pair to the right, minimizing Q(i, j) = (r - 2) d(i, j) - sum(i) - sum(j).
+         final int others = remaining - 2;
+         forEach(pool, null, n, rowGrain(n), new RowFunction() {
+            @Override
+            public void row(int i) {
+               rowBestColumn[i] = -1;
+               if (!active[i]) {
+                  return;
+               }
+               for (int j = i + 1; j < n; j++) {
+                  if (active[j]) {
+                     double q = (double) others * d.get(i, j) - rowSums[i] - rowSums[j];
+                     if (rowBestColumn[i] < 0 || q < rowBest[i]) {
+                        rowBest[i] = q;
+                        rowBestColumn[i] = j;
+                     }
+                  }
+               }
+            }
+         });
+         int best = -1;
+         for (int i = 0; i < n; i++) {
+            if (rowBestColumn[i] >= 0 && (best < 0 || rowBest[i] < rowBest[best])) {
+               best = i;
+            }
+         }
+         final int first = best;
+         final int second = rowBestColumn[best];
+         final float distance = d.get(first, second);
+         float firstBranch = (float) (distance / 2 + (rowSums[first] - rowSums[second]) / (2 * others));
+         node[first] = join(node[first], firstBranch, node[second], distance - firstBranch);
+
+         active[second] = false;
+         forEach(pool, null, n, ENTRIES_PER_TASK, new RowFunction() {
+            @Override
+            public void row(int k) {
+               if (k != first && active[k]) {
+                  float toFirst = d.get(first, k);
+                  float toSecond = d.get(second, k);
+                  float toJoined = (toFirst + toSecond - distance) / 2;
+                  d.set(first, k, toJoined);
+                  rowSums[k] += toJoined - toFirst - toSecond;
+               }
+            }
+         });
+         double sum = 0;
+         for (int k = 0; k < n; k++) {
+            if (k != first && active[k]) {
+               sum += d.get(first, k);
+            }
+         }
+         rowSums[first] = sum;
+      }
+
+      // Root the last edge at its midpoint.
+      if (n > 1) {
+         int first = 0;
+         while (!active[first]) {
+            first++;
+         }
+         int second = first + 1;
+         while (!active[second]) {
+            second++;
+         }
+         float half = d.get(first, second) / 2;
+         join(node[first], half, node[second], half);
+      }
+   }
+
+   /**
+    * 
+    * @param n
+    * @return The number of rows of 'n' entries per task.
+    */
+   private static int rowGrain(int n) {
+      return Math.max(1, ENTRIES_PER_TASK / n);
+   }
+
+   private static void forEach(ForkJoinPool pool, int[] rows, int count, int grain, RowFunction function) {
+      if (count > 0) {
+         pool.invoke(new RowTask(function, rows, 0, count, grain));
+      }
+   }
+
+   /**
+    * Work done for one row of the matrix.
+    */
+   private interface RowFunction {
+      void row(int i);
+   }
+
+   /**
+    * Applies a function to a range of rows (or of the rows listed in an array), splitting it in half until it is no
+    * larger than the grain.
+    */
+   private static final class RowTask extends RecursiveAction {
+
+      private static final long serialVersionUID = 1L;
+
+      private final RowFunction function;
+      private final int[]       rows;
+      private final int         from;
+      private final int         to;
+      private final int         grain;
+
+      RowTask(RowFunction function, int[] rows, int from, int to, int grain) {
+         this.function = function;
+         this.rows = rows;
+         this.from = from;
+         this.to = to;
+         this.grain = grain;
+      }
+
+      @Override
+      protected void compute() {
+         if (to - from <= grain) {
+            for (int i = from; i < to; i++) {
+               function.row(rows != null ? rows[i] : i);
+            }
+         }
+         else {
+            int mid = (from + to) >>> 1;
+            invokeAll(new RowTask(function, rows, from, mid, grain), new RowTask(function, rows, mid, to, grain));
+         }
+      }
+   }
+}
@@ -0,0 +1,178 @@
+package com.example.rob.bio_uima.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory index of the k-mers (words of 'k' residues) of a set of sequences, used to find the pairs that share
+ * enough k-mers to be worth aligning. Each k-mer is counted once per sequence.
+ * 
+ * <p>
+ * Residues are encoded with 5 bits each and k-mers longer than 8 residues hashed to 40 bits, so that a k-mer and a
+ * sequence number fit in one <code>long</code>; the index is a single sorted array of those. Candidate pairs are found
+ * by listing the pairs of sequences under each k-mer and counting equal pairs after sorting them, which takes time
+ * proportional to the number of shared k-mer occurrences rather than to the square of the number of sequences. K-mers
+ * found in more than a given number of sequences (low-complexity repeats) can be skipped.
+ */
+public class KmerIndex {
+
+   /**
+    * Receives candidate pairs.
+    */
+   public interface Handler {
+      /**
+       * 
+       * @param first The position of the first sequence.
+       * @param second The position of the second sequence, always greater than 'first'.
+       * @param shared The number of distinct k-mers the two sequences share.
+       */
+      void pair(int first, int second, int shared);
+   }
+
+   /**
+    * Longest supported k-mer, which uses 60 bits before hashing.
+    */
+   public static final int  MAX_K          = 12;
+
+   private static final int SEQUENCE_BITS  = 23;
+   private static final int MAX_SEQUENCES  = 1 << SEQUENCE_BITS;
+   private static final int RESIDUE_BITS   = 5;
+   private static final int KMER_BITS      = 63 - SEQUENCE_BITS;
+
+   private final int        k;
+
+   /**
+    * Sorted, distinct <code>kmer &lt;&lt; 23 | sequence</code> entries.
+    */
+   private final long[]     entries;
+
+   /**
+    * 
+    * @param seqs
+    * @param k The k-mer length, from 1 to {@link #MAX_K}.
+    */
+   public KmerIndex(List<? extends CharSequence> seqs, int k) {
+      if (k < 1 || k > MAX_K) {
+         throw new IllegalArgumentException("K-mer length must be between 1 and " + MAX_K + ".");
+      }
+      if (seqs.size() > MAX_SEQUENCES) {
+         throw new IllegalArgumentException("Cannot index more than " + MAX_SEQUENCES + " sequences.");
+      }
+      this.k = k;
+
+      int total = 0;
+      for (CharSequence seq : seqs) {
+         total += Math.max(0, seq.length() - k + 1);
+      }
+
+      long[] all = new long[total];
+      int n = 0;
+      long mask = (1L << (RESIDUE_BITS * k)) - 1;
+      for (int s = 0; s < seqs.size(); s++) {
+         CharSequence seq = seqs.get(s);
+         long kmer = 0;
+         for (int p = 0; p < seq.length(); p++) {
+            kmer = ((kmer << RESIDUE_BITS) | (seq.charAt(p) & 31)) & mask;
+            if (p >= k - 1) {
+               all[n++] = key(kmer) << SEQUENCE_BITS | s;
+            }
+         }
+      }
+
+      Arrays.sort(all);
+      this.entries = distinct(all, total);
+   }
+
+   public int getK() {
+      return k;
+   }
+
+   /**
+    * 
+    * @return The number of distinct (k-mer, sequence) entries.
+    */
+   public int size() {
+      return entries.length;
+   }
+
+   /**
+    * Reports every pair of sequences that shares at least 'minShared' k-mers, ordered by first and then second
+    * sequence.
+    * 
+    * @param minShared The lowest number of shared k-mers (at least 1). Higher values trade recall for speed.
+    * @param maxOccurrences K-mers found in more sequences than this are ignored, or 0 to use every k-mer.
+    * @param handler
+    */
+   public void findCandidates(int minShared, int maxOccurrences, Handler handler) {
+      int threshold = Math.max(1, minShared);
+      long[] pairs = new long[16];
+      int n = 0;
+
+      for (int start = 0; start < entries.length;) {
+         long kmer = entries[start] >>> SEQUENCE_BITS;
+         int end = start + 1;
+         while (end < entries.length && entries[end] >>> SEQUENCE_BITS == kmer) {
+            end++;
+         }
+
+         int occurrences = end - start;
+         if (occurrences > 1 && (maxOccurrences <= 0 || occurrences <= maxOccurrences)) {
+            long needed = n + (long) occurrences * (occurrences - 1) / 2;
+            if (needed > Integer.MAX_VALUE - 8) {
+               throw new IllegalStateException("Too many k-mer matches; use a longer k-mer or fewer occurrences.");
+            }
+            if (needed > pairs.length) {
+               pairs = Arrays.copyOf(pairs, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * pairs.length)));
+            }
+            for (int a = start; a < end; a++) {
+               long first = entries[a] & (MAX_SEQUENCES - 1);
+               for (int b = a + 1; b < end; b++) {
+                  pairs[n++] = first << 32 | (entries[b] & (MAX_SEQUENCES - 1));
+               }
+            }
+         }
+         start = end;
+      }
+
+      Arrays.sort(pairs, 0, n);
+      for (int start = 0; start < n;) {
+         int end = start + 1;
+         while (end < n && pairs[end] == pairs[start]) {
+            end++;
+         }
+         if (end - start >= threshold) {
+            handler.pair((int) (pairs[start] >>> 32), (int) pairs[start], end - start);
+         }
+         start = end;
+      }
+   }
+
+   /**
+    * 
+    * @param sorted
+    * @param length
+    * @return The distinct values of the sorted array.
+    */
+   private static long[] distinct(long[] sorted, int length) {
+      int n = 0;
+      for (int i = 0; i < length; i++) {
+         if (n == 0 || sorted[i] != sorted[n - 1]) {
+            sorted[n++] = sorted[i];
+         }
+      }
+      return n == length ? sorted : Arrays.copyOf(sorted, n);
+   }
+
+   /**
+    * 
+    * @param kmer
+    * @return The k-mer itself if it fits in 40 bits, otherwise a 40-bit hash of it.
+    */
+   private long key(long kmer) {
+      if (RESIDUE_BITS * k <= KMER_BITS) {
+         return kmer;
+      }
+      return (kmer * 0x9E3779B97F4A7C15L) >>> (64 - KMER_BITS);
+   }
+
+}
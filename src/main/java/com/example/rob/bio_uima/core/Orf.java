@@ -0,0 +1,75 @@
+package com.example.rob.bio_uima.core;
+
+/**
+ * An open reading frame found by {@link OrfFinder}. Coordinates are 0-based, half-open and always on the forward
+ * strand, and cover the stop codon when there is one.
+ */
+public class Orf {
+
+   public enum Strand {
+      FORWARD, REVERSE
+   }
+
+   private final int    start;
+   private final int    end;
+   private final int    frame;
+   private final Strand strand;
+   private final boolean complete;
+   private final String protein;
+
+   /**
+    * 
+    * @param start The forward-strand position of the first nucleotide.
+    * @param end The forward-strand position after the last nucleotide.
+    * @param frame The reading frame (0, 1 or 2), counted from the 5' end of the strand the ORF is on.
+    * @param strand
+    * @param complete False if the sequence ends before a stop codon is reached.
+    * @param protein The translated ORF, starting with the initial methionine and without the stop codon.
+    */
+   public Orf(int start, int end, int frame, Strand strand, boolean complete, String protein) {
+      this.start = start;
+      this.end = end;
+      this.frame = frame;
+      this.strand = strand;
+      this.complete = complete;
+      this.protein = protein;
+   }
+
+   public int getStart() {
+      return start;
+   }
+
+   public int getEnd() {
+      return end;
+   }
+
+   public int getFrame() {
+      return frame;
+   }
+
+   public Strand getStrand() {
+      return strand;
+   }
+
+   public boolean isComplete() {
+      return complete;
+   }
+
+   public String getProtein() {
+      return protein;
+   }
+
+   /**
+    * 
+    * @return The number of amino acids in the protein.
+    */
+   public int getLength() {
+      return protein.length();
+   }
+
+   @Override
+   public String toString() {
+      return strand + "[" + frame + "] " + start + ".." + end + (complete ? " " : " (partial) ") + protein;
+   }
+
+}
@@ -0,0 +1,247 @@
+package com.example.rob.bio_uima.core;
+
+import static com.example.rob.bio_uima.core.ProteinSequencer.CODON_TABLE;
+import static com.example.rob.bio_uima.core.ProteinSequencer.START_CODON;
+import static com.example.rob.bio_uima.core.ProteinSequencer.STOP;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds every open reading frame in all six frames of a DNA sequence in a single pass. Each codon is looked up both as
+ * read on the forward strand and as its reverse complement, from the same rolling 2-bit window.
+ * 
+ * <p>
+ * On the forward strand an ORF runs from the first start codon after a stop codon to the next stop codon. The reverse
+ * strand is read right to left, so while scanning left to right its ORFs are closed by the stop codon seen first and
+ * opened by the right-most start codon seen before the following stop codon. ORFs that run off either end of the
+ * sequence are reported as partial.
+ * 
+ * <p>
+ * ORFs shorter than the minimum length are dropped before they are translated, and {@link #findOrfs(String, int)}
+ * only keeps the best 'k' while scanning. Sequences are scanned in their {@link PackedDnaSequence} form, a word at a
+ * time.
+ */
+public class OrfFinder {
+
+   /**
+    * Receives ORFs as soon as they are found.
+    */
+   public interface Handler {
+      void orf(Orf orf);
+   }
+
+   /**
+    * Orders ORFs from longest to shortest, then by position.
+    */
+   public static final Comparator<Orf> LONGEST_FIRST = new Comparator<Orf>() {
+                                                        @Override
+                                                        public int compare(Orf a, Orf b) {
+                                                           if (a.getLength() != b.getLength()) {
+                                                              return a.getLength() > b.getLength() ? -1 : 1;
+                                                           }
+                                                           if (a.getStart() != b.getStart()) {
+                                                              return a.getStart() < b.getStart() ? -1 : 1;
+                                                           }
+                                                           return a.getStrand().compareTo(b.getStrand());
+                                                        }
+                                                     };
+
+   private static final int            CODON_LENGTH  = 3;
+
+   private final int                   minLength;
+
+   /**
+    * 
+    * @param minLength The minimum number of amino acids an ORF must code for to be reported.
+    */
+   public OrfFinder(int minLength) {
+      this.minLength = minLength;
+   }
+
+   /**
+    * Scans the sequence and passes every ORF that is long enough to the handler, in the order in which their ends are
+    * reached.
+    * 
+    * @param dnaSeq A sequence of nucleotide characters (A, C, G, T, either case).
+    * @param handler
+    */
+   public void scan(String dnaSeq, Handler handler) {
+      if (!dnaSeq.isEmpty()) {
+         scan(PackedDnaSequence.pack(dnaSeq), handler);
+      }
+   }
+
+   /**
+    * Same as {@link #scan(String, Handler)}, for a sequence that has already been packed.
+    * 
+    * @param dnaSeq
+    * @param handler
+    */
+   public void scan(PackedDnaSequence dnaSeq, final Handler handler) {
+      scan(dnaSeq, new Sink() {
+         @Override
+         boolean wants(int codons) {
+            return true;
+         }
+
+         @Override
+         void add(Orf orf) {
+            handler.orf(orf);
+         }
+      });
+   }
+
+   /**
+    * 
+    * @param dnaSeq A sequence of nucleotide characters (A, C, G, T, either case).
+    * @param k The number of ORFs to keep, or 0 to keep all of them.
+    * @return The 'k' longest ORFs, longest first.
+    */
+   public List<Orf> findOrfs(String dnaSeq, int k) {
+      if (dnaSeq.isEmpty()) {
+         return new ArrayList<Orf>();
+      }
+      return findOrfs(PackedDnaSequence.pack(dnaSeq), k);
+   }
+
+   /**
+    * Same as {@link #findOrfs(String, int)}, for a sequence that has already been packed.
+    * 
+    * @param dnaSeq
+    * @param k The number of ORFs to keep, or 0 to keep all of them.
+    * @return The 'k' longest ORFs, longest first.
+    */
+   public List<Orf> findOrfs(PackedDnaSequence dnaSeq, final int k) {
+      final PriorityQueue<Orf> best = new PriorityQueue<Orf>(Math.max(1, k), Collections.reverseOrder(LONGEST_FIRST));
+      scan(dnaSeq, new Sink() {
+         @Override
+         boolean wants(int codons) {
+            return k <= 0 || best.size() < k || codons >= best.peek().getLength();
+         }
+
+         @Override
+         void add(Orf orf) {
+            best.add(orf);
+            if (k > 0 && best.size() > k) {
+               best.poll();
+            }
+         }
+      });
+
+      List<Orf> orfs = new ArrayList<Orf>(best);
+      Collections.sort(orfs, LONGEST_FIRST);
+      return orfs;
+   }
+
+   /**
+    * Collects ORFs; {@link #wants(int)} is asked before an ORF is translated.
+    */
+   private abstract static class Sink {
+      abstract boolean wants(int codons);
+
+      abstract void add(Orf orf);
+   }
+
+   private void scan(PackedDnaSequence dnaSeq, Sink sink) {
+      int len = dnaSeq.length();
+
+      // Indexed by codon start position modulo 3.
+      int[] forwardStarts = { -1, -1, -1 };
+      int[] reverseStops = { -1, -1, -1 };
+      int[] reverseStarts = { -1, -1, -1 };
+
+      int codon = 0;
+      int reverseCodon = 0;
+      int phase = 0;
+      long word = 0;
+      for (int p = 0; p < len; p++, word >>>= 2) {
+         if ((p & (PackedDnaSequence.BASES_PER_WORD - 1)) == 0) {
+            word = dnaSeq.word(p / PackedDnaSequence.BASES_PER_WORD);
+         }
+         int code = (int) (word & 3);
+         codon = ((codon << 2) | code) & 63;
+         reverseCodon = (reverseCodon >>> 2) | ((3 - code) << 4);
+         if (p < CODON_LENGTH - 1) {
+            continue;
+         }
+
+         int s = p - 2;
+         if (codon == START_CODON) {
+            if (forwardStarts[phase] < 0) {
+               forwardStarts[phase] = s;
+            }
+         }
+         else if (CODON_TABLE[codon] == STOP && forwardStarts[phase] >= 0) {
+            emitForward(dnaSeq, forwardStarts[phase], (s - forwardStarts[phase]) / CODON_LENGTH, true, sink);
+            forwardStarts[phase] = -1;
+         }
+
+         if (reverseCodon == START_CODON) {
+            reverseStarts[phase] = s + CODON_LENGTH;
+         }
+         else if (CODON_TABLE[reverseCodon] == STOP) {
+            if (reverseStarts[phase] >= 0) {
+               emitReverse(dnaSeq, reverseStops[phase], reverseStarts[phase], phase, sink);
+            }
+            reverseStops[phase] = s;
+            reverseStarts[phase] = -1;
+         }
+
+         phase = phase == 2 ? 0 : phase + 1;
+      }
+
+      // ORFs still open at the ends of the sequence.
+      for (int f = 0; f < CODON_LENGTH; f++) {
+         if (forwardStarts[f] >= 0) {
+            emitForward(dnaSeq, forwardStarts[f], (len - forwardStarts[f]) / CODON_LENGTH, false, sink);
+         }
+      }
+      for (int f = 0; f < CODON_LENGTH; f++) {
+         if (reverseStarts[f] >= 0) {
+            emitReverse(dnaSeq, reverseStops[f], reverseStarts[f], f, sink);
+         }
+      }
+   }
+
+   private void emitForward(PackedDnaSequence dnaSeq, int start, int codons, boolean complete, Sink sink) {
+      if (codons < minLength || !sink.wants(codons)) {
+         return;
+      }
+      char[] protein = new char[codons];
+      for (int i = 0, p = start; i < codons; i++, p += CODON_LENGTH) {
+         protein[i] = CODON_TABLE[dnaSeq.codon(p)];
+      }
+      int end = start + CODON_LENGTH * (complete ? codons + 1 : codons);
+      sink.add(new Orf(start, end, start % CODON_LENGTH, Orf.Strand.FORWARD, complete, new String(protein)));
+   }
+
+   /**
+    * 
+    * @param dnaSeq
+    * @param stop The forward-strand position of the reverse stop codon, or -1 if the ORF runs off the start.
+    * @param end The forward-strand position after the reverse start codon.
+    * @param phase The codon start positions modulo 3.
+    * @param sink
+    */
+   private void emitReverse(PackedDnaSequence dnaSeq, int stop, int end, int phase, Sink sink) {
+      boolean complete = stop >= 0;
+      int codons = complete ? (end - stop - CODON_LENGTH) / CODON_LENGTH : (end - phase) / CODON_LENGTH;
+      if (codons < minLength || !sink.wants(codons)) {
+         return;
+      }
+      char[] protein = new char[codons];
+      for (int i = 0, p = end - CODON_LENGTH; i < codons; i++, p -= CODON_LENGTH) {
+         // Complementing every base of a codon complements its 6-bit index; the bases are then read in reverse.
+         int codon = 63 - dnaSeq.codon(p);
+         protein[i] = CODON_TABLE[(codon & 3) << 4 | (codon & 12) | codon >>> 4];
+      }
+      int start = complete ? stop : end - CODON_LENGTH * codons;
+      int frame = (dnaSeq.length() - end) % CODON_LENGTH;
+      sink.add(new Orf(start, end, frame, Orf.Strand.REVERSE, complete, new String(protein)));
+   }
+
+}
@@ -0,0 +1,170 @@
+package com.example.rob.bio_uima.core;
+
+/**
+ * An immutable DNA sequence stored as 2-bit nucleotide codes (A = 0, C = 1, G = 2, T = 3), 32 to a <code>long</code>.
+ * Base 'i' is held in bits <code>2 * (i % 32)</code> and up of word <code>i / 32</code>. Since the codes of
+ * complementary bases add up to 3, complementing a word is a single bitwise NOT, and reversing it is a handful of mask
+ * and shift steps.
+ * 
+ * <p>
+ * Implements {@link CharSequence} (always upper-case) so that packed sequences can be used wherever text is expected.
+ */
+public class PackedDnaSequence implements CharSequence {
+
+   static final int            BASES_PER_WORD = 32;
+   private static final String BASES          = "ACGT";
+
+   private final long[]        words;
+   private final int           length;
+
+   PackedDnaSequence(long[] words, int length) {
+      this.words = words;
+      this.length = length;
+   }
+
+   /**
+    * Packs and validates a sequence of nucleotide characters.
+    * 
+    * @param seq A non-empty sequence of 'A', 'C', 'G' and 'T' characters, in either case.
+    * @return The packed sequence.
+    * @throws IllegalArgumentException If the sequence is empty or contains any other character.
+    */
+   public static PackedDnaSequence pack(CharSequence seq) {
+      int length = seq.length();
+      if (length == 0) {
+         throw new IllegalArgumentException("DNA sequence string must not be null or empty.");
+      }
+
+      long[] words = new long[wordCount(length)];
+      for (int w = 0, i = 0; w < words.length; w++) {
+         long word = 0;
+         int end = Math.min(length, i + BASES_PER_WORD);
+         for (int shift = 0; i < end; i++, shift += 2) {
+            char c = seq.charAt(i);
+            int code = c < ProteinSequencer.NUCLEOTIDE_CODES.length ? ProteinSequencer.NUCLEOTIDE_CODES[c] : -1;
+            if (code < 0) {
+               throw new IllegalArgumentException(
+                     "DNA sequence contains invalid characters.  Sequences should only contain 'A', 'C', 'G', & 'T'.");
+            }
+            word |= (long) code << shift;
+         }
+         words[w] = word;
+      }
+
+      return new PackedDnaSequence(words, length);
+   }
+
+   /**
+    * 
+    * @param i
+    * @return The 2-bit code of the base at position 'i'.
+    */
+   public int base(int i) {
+      return (int) (words[i >>> 5] >>> ((i & 31) << 1)) & 3;
+   }
+
+   /**
+    * 
+    * @param i
+    * @return The 6-bit codon table index (<code>16 * first + 4 * second + third</code>) of the codon starting at 'i'.
+    */
+   public int codon(int i) {
+      return base(i) << 4 | base(i + 1) << 2 | base(i + 2);
+   }
+
+   /**
+    * 
+    * @param w
+    * @return The packed word holding bases <code>32 * w</code> to <code>32 * w + 31</code>; unused high bits of the
+    *         last word are zero.
+    */
+   public long word(int w) {
+      return words[w];
+   }
+
+   /**
+    * 
+    * @return The number of packed words.
+    */
+   public int wordCount() {
+      return words.length;
+   }
+
+   /**
+    * 
+    * @return The reverse complement of this sequence, computed a word at a time.
+    */
+   public PackedDnaSequence reverseComplement() {
+      int n = words.length;
+      long[] reversed = new long[n];
+      for (int w = 0; w < n; w++) {
+         reversed[n - 1 - w] = reverseBases(~words[w]);
+      }
+
+      // The bases now end at the top of the last word; shift the whole array down over the padding.
+      int padBits = (n * BASES_PER_WORD - length) << 1;
+      if (padBits > 0) {
+         for (int w = 0; w < n; w++) {
+            long next = w + 1 < n ? reversed[w + 1] : 0;
+            reversed[w] = (reversed[w] >>> padBits) | (next << (64 - padBits));
+         }
+      }
+      int tailBits = (length & 31) << 1;
+      if (tailBits != 0) {
+         reversed[n - 1] &= (1L << tailBits) - 1;
+      }
+
+      return new PackedDnaSequence(reversed, length);
+   }
+
+   /**
+    * Reverses the order of the 32 2-bit fields of a word.
+    * 
+    * @param x
+    * @return
+    */
+   private static long reverseBases(long x) {
+      x = ((x >>> 2) & 0x3333333333333333L) | ((x & 0x3333333333333333L) << 2);
+      x = ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((x & 0x0F0F0F0F0F0F0F0FL) << 4);
+      return Long.reverseBytes(x);
+   }
+
+   private static int wordCount(int length) {
+      return (length + BASES_PER_WORD - 1) / BASES_PER_WORD;
+   }
+
+   @Override
+   public int length() {
+      return length;
+   }
+
+   @Override
+   public char charAt(int index) {
+      if (index < 0 || index >= length) {
+         throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+      }
+      return BASES.charAt(base(index));
+   }
+
+   @Override
+   public CharSequence subSequence(int start, int end) {
+      return toString(start, end);
+   }
+
+   @Override
+   public String toString() {
+      return toString(0, length);
+   }
+
+   private String toString(int start, int end) {
+      if (start < 0 || end > length || start > end) {
+         throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + length);
+      }
+      char[] chars = new char[end - start];
+      for (int i = start; i < end; i++) {
+         chars[i - start] = BASES.charAt(base(i));
+      }
+      return new String(chars);
+   }
+
+}
@@ -1,15 +1,20 @@
 package com.example.rob.bio_uima.core;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Converts a DNA sequence into a protein sequence using the conversions found on the Wikipedia <a
  * href="http://en.wikipedia.org/wiki/DNA_codon_table">DNA codon table</a> article.
- * This implementation works by iterating through the sequence, performing HashMap look-ups to match codons to proteins.
+ * This implementation works by encoding each nucleotide as a 2-bit code and keeping a rolling 6-bit index of the last
+ * three, which is looked up in a 64-entry codon table. All three reading frames are scanned in a single pass over the
+ * sequence, using index arithmetic only.
+ * 
+ * <p>
+ * Long sequences can also be scanned on a fork-join pool (see
+ * {@link #findLongestOrf(PackedDnaSequence, ForkJoinPool, int)}): each chunk is reduced to a per-frame summary, and the
+ * summaries of adjacent chunks are merged.
  * 
  * @author Rob
  */
@@ -17,88 +22,43 @@ public class ProteinSequencer {
 
    private static final ProteinSequencer INSTANCE             = new ProteinSequencer();
    private static final int              CODON_LENGTH         = 3;
-   private static final String           START_CODON          = "ATG";
-   private static final String           STOP_CODON_1         = "TAA";
-   private static final String           STOP_CODON_2         = "TGA";
-   private static final String           STOP_CODON_3         = "TAG";
-   private static final Pattern          DNA_SEQUENCE_PATTERN = Pattern.compile("\\b[ACGT]+");
 
-   private final Map<String, String>     codonTable           = buildCodonTable();
+   /**
+    * Amino acid of each codon, indexed by <code>16 * first + 4 * second + third</code> where A = 0, C = 1, G = 2 and
+    * T = 3. Stop codons (TAA, TAG, TGA) are marked with {@link #STOP}.
+    */
+   static final char[]                   CODON_TABLE          = "KNKNTTTTRSRSIIMIQHQHPPPPRRRRLLLLEDEDAAAAGGGGVVVV*Y*YSSSS*CWCLFLF"
+                                                                    .toCharArray();
+   static final char                     STOP                 = '*';
+
+   /**
+    * Codon table index of the start codon (ATG).
+    */
+   static final int                      START_CODON          = 14;
+
+   /**
+    * 2-bit code of each nucleotide character (either case), or -1.
+    */
+   static final byte[]                   NUCLEOTIDE_CODES     = buildNucleotideCodes();
+
+   /**
+    * Default number of codon positions scanned by a single fork-join task.
+    */
+   public static final int               DEFAULT_CHUNK_LENGTH = 1 << 20;
 
    public static ProteinSequencer getInstance() {
       return INSTANCE;
    }
 
-   private static Map<String, String> buildCodonTable() {
-      Map<String, String> table = new HashMap<String, String>();
-      // Standard codons.
-      // TODO: Move to file.
-      table.put("GCA", "A");
-      table.put("GCC", "A");
-      table.put("GCG", "A");
-      table.put("GCT", "A");
-      table.put("TGC", "C");
-      table.put("TGT", "C");
-      table.put("GAC", "D");
-      table.put("GAT", "D");
-      table.put("GAA", "E");
-      table.put("GAG", "E");
-      table.put("TTC", "F");
-      table.put("TTT", "F");
-      table.put("GGA", "G");
-      table.put("GGC", "G");
-      table.put("GGG", "G");
-      table.put("GGT", "G");
-      table.put("CAC", "H");
-      table.put("CAT", "H");
-      table.put("ATA", "I");
-      table.put("ATC", "I");
-      table.put("ATT", "I");
-      table.put("AAA", "K");
-      table.put("AAG", "K");
-      table.put("CTA", "L");
-      table.put("CTC", "L");
-      table.put("CTG", "L");
-      table.put("CTT", "L");
-      table.put("TTA", "L");
-      table.put("TTG", "L");
-      table.put("ATG", "M"); // Start codon.
-      table.put("AAC", "N");
-      table.put("AAT", "N");
-      table.put("CCA", "P");
-      table.put("CCC", "P");
-      table.put("CCG", "P");
-      table.put("CCT", "P");
-      table.put("CAA", "Q");
-      table.put("CAG", "Q");
-      table.put("AGA", "R");
-      table.put("AGG", "R");
-      table.put("CGA", "R");
-      table.put("CGC", "R");
-      table.put("CGG", "R");
-      table.put("CGT", "R");
-      table.put("AGC", "S");
-      table.put("AGT", "S");
-      table.put("TCA", "S");
-      table.put("TCC", "S");
-      table.put("TCG", "S");
-      table.put("TCT", "S");
-      table.put("ACA", "T");
-      table.put("ACC", "T");
-      table.put("ACG", "T");
-      table.put("ACT", "T");
-      table.put("GTA", "V");
-      table.put("GTC", "V");
-      table.put("GTG", "V");
-      table.put("GTT", "V");
-      table.put("TGG", "W");
-      table.put("TAC", "Y");
-      table.put("TAT", "Y");
-      // Stop codons (Do not have a value).
-      table.put(STOP_CODON_1, "");
-      table.put(STOP_CODON_2, "");
-      table.put(STOP_CODON_3, "");
-      return table;
+   private static byte[] buildNucleotideCodes() {
+      byte[] codes = new byte[128];
+      Arrays.fill(codes, (byte) -1);
+      String nucleotides = "ACGT";
+      for (byte code = 0; code < nucleotides.length(); code++) {
+         codes[nucleotides.charAt(code)] = code;
+         codes[Character.toLowerCase(nucleotides.charAt(code))] = code;
+      }
+      return codes;
    }
 
    private ProteinSequencer() {
@@ -108,114 +68,199 @@ public class ProteinSequencer {
    /**
     * Converts a DNA sequences into a protein sequence.
     * 
-    * @param dnaSeq A non-null, upper-case string that is a multiple of the condon size (3) and contains only valid
-    *           nucleotide characters (A, C, G, T).
+    * <p>
+    * For each of the three forward frames the open reading frame still open at the end of the sequence is kept (an ORF
+    * opens at the first start codon after a stop codon), and the longest of the three is returned. See
+    * {@link OrfFinder} for every complete ORF in all six frames.
+    * 
+    * @param dnaSeq A non-null string that contains only valid nucleotide characters (A, C, G, T, either case), with
+    *           optional surrounding whitespace.
     * @return The corresponding protein sequence as a string.
     */
-   public String findLongestProteinOrf(String dnaSeq) { // TODO: Other strand.
-      dnaSeq = checkAndClean(dnaSeq);
-      List<String> orfs = new ArrayList<String>();
-      orfs.add(getProteinOrfs(dnaSeq)); // Frame 1.
-      orfs.add(getProteinOrfs(dnaSeq.substring(1))); // Frame 2.
-      orfs.add(getProteinOrfs(dnaSeq.substring(2))); // Frame 3.
-      return findLongest(orfs);
+   public String findLongestProteinOrf(String dnaSeq) {
+      if (dnaSeq == null || dnaSeq.isEmpty()) {
+         throw new IllegalArgumentException("DNA sequence string must not be null or empty.");
+      }
+      return findLongestPackedProteinOrf(PackedDnaSequence.pack(dnaSeq.trim()));
    }
 
    /**
+    * Same as {@link #findLongestProteinOrf(String)}, for a sequence that has already been packed.
     * 
-    * @param dnaSeq A DNA sequence.
-    * @return The longest open-reading frame of the protein sequence generated by the given DNA sequence.
+    * @param dnaSeq
+    * @return The corresponding protein sequence as a string.
     */
-   private String getProteinOrfs(String dnaSeq) {
-      // Split into groups of three w/ possible leftovers in final group.
-      String[] codons = dnaSeq.split("(?<=\\G.{" + CODON_LENGTH + "})");
-      List<String> orfs = new ArrayList<String>();
-      StringBuilder orfBuf = new StringBuilder();
-      boolean inFrame = false;
-
-      for (String codon : codons) {
-         if (codon.length() != CODON_LENGTH) {
-            // Leftover characters from the grouping can be ignored.
-            continue;
-         }
-         else if (isStartCodon(codon)) {
-            // Add start codon & open the frame.
-            String protein = codonTable.get(codon);
-            orfBuf.append(protein);
-            inFrame = true;
-         }
-         else if (inFrame && isStopCodon(codon)) {
-            // Clear the buffer, & close the frame.
-            orfBuf.setLength(0);
-            inFrame = false;
-         }
-         else if (inFrame) {
-            // Add value to the ORF.
-            String protein = codonTable.get(codon);
-            orfBuf.append(protein);
-         }
-      }
-
-      // Add remaining codons in ORF buffer to ORF list.
-      orfs.add(orfBuf.toString());
+   public String findLongestPackedProteinOrf(PackedDnaSequence dnaSeq) {
+      Orf orf = findLongestOrf(dnaSeq);
+      return orf == null ? "" : orf.getProtein();
+   }
 
-      return findLongest(orfs);
+   /**
+    * Finds the same ORF as {@link #findLongestProteinOrf(String)}, along with its position. Only the forward strand
+    * is scanned, by design: the reverse strand is left to {@link OrfFinder}, which reports the ORFs of both.
+    * 
+    * @param dnaSeq
+    * @return The longest ORF still open at the end of the sequence, or null if there is none. Its end is the end of
+    *         the last whole codon.
+    */
+   public Orf findLongestOrf(PackedDnaSequence dnaSeq) {
+      int[] orfStarts = { -1, -1, -1 };
+      scan(dnaSeq, 0, dnaSeq.length(), orfStarts, new boolean[CODON_LENGTH]);
+      return longestOrf(dnaSeq, orfStarts);
    }
 
    /**
+    * Finds the same ORF as {@link #findLongestOrf(PackedDnaSequence)}, splitting the sequence into chunks of codon
+    * positions that are scanned in parallel. Each chunk reads the two bases before it, so that it sees every codon
+    * ending in it.
     * 
-    * @param strCol A list of strings.
-    * @return The longest string in a list of strings.
+    * @param dnaSeq
+    * @param pool The pool to scan the chunks on.
+    * @param chunkLength The number of codon positions to scan in a single task, e.g. {@link #DEFAULT_CHUNK_LENGTH}.
+    *           Sequences no longer than this are scanned on the calling thread.
+    * @return The longest ORF still open at the end of the sequence, or null if there is none.
     */
-   private String findLongest(List<String> strCol) {
-      String longestStr = "";
-      for (String str : strCol) {
-         // TODO: ORF length ties?
-         if (str.length() > longestStr.length()) {
-            longestStr = str;
-         }
+   public Orf findLongestOrf(PackedDnaSequence dnaSeq, ForkJoinPool pool, int chunkLength) {
+      if (chunkLength <= 0) {
+         throw new IllegalArgumentException("Chunk length must be positive.");
       }
-
-      return longestStr;
+      if (dnaSeq.length() <= chunkLength) {
+         return findLongestOrf(dnaSeq);
+      }
+      ScanTask task = new ScanTask(dnaSeq, 0, dnaSeq.length(), chunkLength);
+      pool.invoke(task);
+      return longestOrf(dnaSeq, task.orfStarts);
    }
 
    /**
+    * Scans the codons ending at positions 'from' (inclusive) to 'to' (exclusive) and summarizes each frame (as
+    * <code>start % 3</code>) of the range.
     * 
-    * @param codon
-    * @return True if the codon is a valid start codon (ATG).
+    * @param dnaSeq
+    * @param from
+    * @param to
+    * @param orfStarts Set to the start of the ORF open at the end of the range in each frame: the first start codon
+    *           after the last stop codon, or the first start codon if there is no stop codon. -1 if there is none.
+    * @param stops Set to true for each frame that has a stop codon in the range.
     */
-   private boolean isStartCodon(String codon) {
-      return (START_CODON.equals(codon));
+   private static void scan(PackedDnaSequence dnaSeq, int from, int to, int[] orfStarts, boolean[] stops) {
+      int first = Math.max(from, CODON_LENGTH - 1);
+      int p = first - (CODON_LENGTH - 1);
+      int frame = p % CODON_LENGTH;
+      int codon = 0;
+
+      // Bases are shifted out of each packed word in turn, starting mid-word for the first.
+      for (int w = p / PackedDnaSequence.BASES_PER_WORD; p < to; w++) {
+         long word = dnaSeq.word(w) >>> (2 * (p % PackedDnaSequence.BASES_PER_WORD));
+         for (int end = Math.min(to, (w + 1) * PackedDnaSequence.BASES_PER_WORD); p < end; p++, word >>>= 2) {
+            codon = ((codon << 2) | (int) (word & 3)) & 63;
+            if (p < first) {
+               continue;
+            }
+
+            // The codon ending at 'p' starts at 'p - 2', which is in frame (p - 2) % 3.
+            if (codon == START_CODON) {
+               if (orfStarts[frame] < 0) {
+                  orfStarts[frame] = p - 2;
+               }
+            }
+            else if (CODON_TABLE[codon] == STOP) {
+               orfStarts[frame] = -1;
+               stops[frame] = true;
+            }
+            frame = frame == 2 ? 0 : frame + 1;
+         }
+      }
    }
 
    /**
     * 
-    * @param codon
-    * @return True if the codon is a valid stop codon (TAA, TGA, TAG).
+    * @param dnaSeq
+    * @param orfStarts The start of the ORF open at the end of the sequence in each frame, or -1.
+    * @return The longest of the ORFs, or null if there is none.
     */
-   private boolean isStopCodon(String codon) {
-      return (STOP_CODON_1.equals(codon) || STOP_CODON_2.equals(codon) || STOP_CODON_3.equals(codon));
+   private Orf longestOrf(PackedDnaSequence dnaSeq, int[] orfStarts) {
+      int len = dnaSeq.length();
+
+      // Find the longest ORF (the earliest frame wins ties).
+      int longestStart = -1;
+      int longestCodons = 0;
+      for (int f = 0; f < CODON_LENGTH; f++) {
+         int codons = orfStarts[f] < 0 ? 0 : (len - orfStarts[f]) / CODON_LENGTH;
+         if (codons > longestCodons) {
+            longestStart = orfStarts[f];
+            longestCodons = codons;
+         }
+      }
+
+      if (longestStart < 0) {
+         return null;
+      }
+      return new Orf(longestStart, longestStart + CODON_LENGTH * longestCodons, longestStart % CODON_LENGTH,
+            Orf.Strand.FORWARD, false, translate(dnaSeq, longestStart, longestCodons));
    }
 
    /**
-    * Ensures the DNA sequence exists in all caps with no padding and contains only valid nucleotide characters (A, C,
-    * G, T).
-    * 
-    * @param dnaSeq The sequence string.
-    * @return The sequence string in proper format or an exception.
+    * Summarizes a range of codon positions, splitting it in half until it is no longer than the chunk length. The
+    * summary of two adjacent ranges is the right one's in the frames where it has a stop codon; in the others the ORF
+    * stays open from the left range, or opens in the right one.
     */
-   private String checkAndClean(String dnaSeq) {
-      if (dnaSeq == null || dnaSeq.isEmpty()) {
-         throw new IllegalArgumentException("DNA sequence string must not be null or empty.");
+   private static final class ScanTask extends RecursiveAction {
+
+      private static final long       serialVersionUID = 1L;
+
+      private final PackedDnaSequence dnaSeq;
+      private final int               from;
+      private final int               to;
+      private final int               chunkLength;
+
+      final int[]                     orfStarts        = { -1, -1, -1 };
+      final boolean[]                 stops            = new boolean[CODON_LENGTH];
+
+      ScanTask(PackedDnaSequence dnaSeq, int from, int to, int chunkLength) {
+         this.dnaSeq = dnaSeq;
+         this.from = from;
+         this.to = to;
+         this.chunkLength = chunkLength;
       }
 
-      dnaSeq = dnaSeq.toUpperCase().trim();
+      @Override
+      protected void compute() {
+         if (to - from <= chunkLength) {
+            scan(dnaSeq, from, to, orfStarts, stops);
+            return;
+         }
 
-      if (!DNA_SEQUENCE_PATTERN.matcher(dnaSeq).matches()) {
-         throw new IllegalArgumentException("DNA sequence contains invalid characters.  Sequences should only contain 'A', 'C', 'G', & 'T'.");
+         int mid = (from + to) >>> 1;
+         ScanTask left = new ScanTask(dnaSeq, from, mid, chunkLength);
+         ScanTask right = new ScanTask(dnaSeq, mid, to, chunkLength);
+         invokeAll(left, right);
+         for (int f = 0; f < CODON_LENGTH; f++) {
+            if (right.stops[f]) {
+               orfStarts[f] = right.orfStarts[f];
+               stops[f] = true;
+            }
+            else {
+               orfStarts[f] = left.orfStarts[f] >= 0 ? left.orfStarts[f] : right.orfStarts[f];
+               stops[f] = left.stops[f];
+            }
+         }
       }
+   }
 
-      return dnaSeq;
+   /**
+    * 
+    * @param dnaSeq
+    * @param start The position of the first codon.
+    * @param codons The number of codons to translate.
+    * @return The protein sequence coded by the given codons.
+    */
+   private String translate(PackedDnaSequence dnaSeq, int start, int codons) {
+      char[] protein = new char[codons];
+      for (int i = 0, p = start; i < codons; i++, p += CODON_LENGTH) {
+         protein[i] = CODON_TABLE[dnaSeq.codon(p)];
+      }
+      return new String(protein);
    }
 
 }
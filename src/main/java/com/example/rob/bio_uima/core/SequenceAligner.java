@@ -1,9 +1,20 @@
 package com.example.rob.bio_uima.core;
 
+import java.nio.CharBuffer;
+
+import com.example.rob.bio_uima.metrics.Metrics;
+
 /**
  * Computes the minimum cost for alignment between two strings using the costs for each operation outlined in the
  * constructor. Currently all operations have a fixed integer cost. The alignments are computed using Hirschberg's
- * algorithm, which runs in O(nm) time and requires O(min{n,m}) space.
+ * algorithm, which runs in O(nm) time and requires O(min{n,m}) space, or with a single full cost matrix when it fits in
+ * the memory budget (see {@link #plan(CharSequence, CharSequence, boolean)}).
+ * 
+ * <p>
+ * The forward and reverse passes of Hirschberg's algorithm each keep a single rolling row of the Needleman-Wunsch cost
+ * matrix, and the recursion works on index ranges of the original sequences rather than on copies. The path is recorded
+ * as runs of edit operations (see {@link Alignment}) and the gapped rows are only rendered at the end. The rows are
+ * kept between calls, so an instance is not thread-safe and should be confined to a single thread.
  * 
  * <p>
  * <ul>
@@ -19,10 +30,99 @@ package com.example.rob.bio_uima.core;
  */
 public class SequenceAligner {
 
-   private final int insertionCost;
-   private final int deletionCost;
-   private final int matchedSubstitutionCost;
-   private final int unmatchedSubstitutionCost;
+   /**
+    * The dynamic programming kernel used for score-only passes.
+    */
+   public enum Kernel {
+      /**
+       * One cell at a time, row by row.
+       */
+      SCALAR,
+      /**
+       * Farrar's striped layout with a reusable query profile (see {@link StripedAligner}).
+       */
+      STRIPED
+   }
+
+   /**
+    * How a pair is aligned or scored, as chosen by {@link SequenceAligner#plan(CharSequence, CharSequence, boolean)}.
+    */
+   public enum Strategy {
+      /**
+       * A single full Needleman-Wunsch cost matrix and traceback.
+       */
+      FULL_MATRIX,
+      /**
+       * Linear-space Hirschberg recursion, switching to a full matrix below the cutoff.
+       */
+      HIRSCHBERG,
+      /**
+       * Score only, with the bit-parallel edit distance engine.
+       */
+      BIT_PARALLEL,
+      /**
+       * Score only, with the banded pass.
+       */
+      BANDED,
+      /**
+       * Score only, with the striped kernel.
+       */
+      STRIPED,
+      /**
+       * Score only, with a single rolling row.
+       */
+      SCALAR
+   }
+
+   /**
+    * Default limit on the size of a full cost matrix, in bytes.
+    */
+   public static final long   DEFAULT_MEMORY_BUDGET     = 16L << 20;
+
+   /**
+    * Default number of cells below which the Hirschberg recursion fills a full cost matrix.
+    */
+   public static final int    DEFAULT_HIRSCHBERG_CUTOFF = 4096;
+
+   private static final int[] EMPTY_ROW = new int[0];
+
+   private final int          insertionCost;
+   private final int          deletionCost;
+   private final int          matchedSubstitutionCost;
+   private final int          unmatchedSubstitutionCost;
+
+   /**
+    * Bit-parallel engine used by {@link #score(CharSequence, CharSequence)} when the costs reduce to a scaled unit-cost
+    * edit distance, or null when they do not.
+    */
+   private final BitParallelEditDistance bitParallel;
+   private final int          bitParallelScale;
+
+   /**
+    * Returned by {@link #score(CharSequence, CharSequence)} for pairs that cannot reach the score cutoff.
+    */
+   public static final int    ABANDONED  = BandedAligner.ABANDONED;
+
+   private Kernel             kernel     = Kernel.SCALAR;
+   private StripedAligner     striped;
+
+   private long               memoryBudget = DEFAULT_MEMORY_BUDGET;
+   private int                hirschbergCutoff = DEFAULT_HIRSCHBERG_CUTOFF;
+   private Strategy           lastStrategy;
+
+   private int                bandWidth;
+   private int                scoreCutoff = BandedAligner.NO_CUTOFF;
+   private BandedAligner      banded;
+
+   /**
+    * Rolling row for the forward (prefix) pass.
+    */
+   private int[]              forwardRow = EMPTY_ROW;
+
+   /**
+    * Rolling row for the reverse (suffix) pass.
+    */
+   private int[]              reverseRow = EMPTY_ROW;
 
    /**
     * 
@@ -37,6 +137,60 @@ public class SequenceAligner {
       this.deletionCost = deletionCost;
       this.matchedSubstitutionCost = matchedSubstitutionCost;
       this.unmatchedSubstitutionCost = unmatchedSubstitutionCost;
+
+      // Free matches and equal gap penalties make the score a multiple of a unit-cost edit distance.
+      boolean unitGaps = matchedSubstitutionCost == 0 && insertionCost < 0 && insertionCost == deletionCost;
+      if (unitGaps && unmatchedSubstitutionCost == insertionCost) {
+         this.bitParallel = new BitParallelEditDistance(true);
+      }
+      else if (unitGaps && unmatchedSubstitutionCost <= 2 * insertionCost) {
+         this.bitParallel = new BitParallelEditDistance(false);
+      }
+      else {
+         this.bitParallel = null;
+      }
+      this.bitParallelScale = -insertionCost;
+   }
+
+   /**
+    * Creates an aligner with the same costs, kernel, band and cutoff as 'template', but with its own working memory, so
+    * that it can be confined to another thread.
+    * 
+    * @param template
+    */
+   public SequenceAligner(SequenceAligner template) {
+      this(template.insertionCost, template.deletionCost, template.matchedSubstitutionCost,
+            template.unmatchedSubstitutionCost);
+      setKernel(template.kernel);
+      this.memoryBudget = template.memoryBudget;
+      this.hirschbergCutoff = template.hirschbergCutoff;
+      this.bandWidth = template.bandWidth;
+      this.scoreCutoff = template.scoreCutoff;
+   }
+
+   public int getInsertionCost() {
+      return insertionCost;
+   }
+
+   public int getDeletionCost() {
+      return deletionCost;
+   }
+
+   public int getMatchedSubstitutionCost() {
+      return matchedSubstitutionCost;
+   }
+
+   public int getUnmatchedSubstitutionCost() {
+      return unmatchedSubstitutionCost;
+   }
+
+   /**
+    * 
+    * @return True if insertions and deletions cost the same, in which case aligning 'b' with 'a' gives the alignment of
+    *         'a' with 'b' with its two rows swapped.
+    */
+   public boolean isSymmetric() {
+      return insertionCost == deletionCost;
    }
 
    /**
@@ -44,58 +198,352 @@ public class SequenceAligner {
     * 
     * @param seq1
     * @param seq2
-    * @return
+    * @return The two gapped rows of the alignment.
     */
    public String[] computeAlignments(String seq1, String seq2) {
-      StringBuilder[] res = hirschberg(seq1, seq2);
-      return new String[] { res[0].toString(), res[1].toString() };
+      Alignment alignment = align(seq1, seq2);
+      return new String[] { alignment.getFirstRow(), alignment.getSecondRow() };
    }
 
-   protected StringBuilder[] hirschberg(String sequence1, String sequence2) {
-      StringBuilder seqX = new StringBuilder(sequence1);
-      StringBuilder seqY = new StringBuilder(sequence2);
-      StringBuilder alignmentX = new StringBuilder();
-      StringBuilder alignmentY = new StringBuilder();
+   /**
+    * Computes the alignment of two text sequences as a list of edit operations, with a single full cost matrix when it
+    * fits in the {@link #setMemoryBudget(long) memory budget} and with Hirschberg's algorithm otherwise.
+    * 
+    * @param seq1
+    * @param seq2
+    * @return The alignment, which renders its gapped rows on request.
+    */
+   public Alignment align(CharSequence seq1, CharSequence seq2) {
+      char[] x = toCharArray(seq1);
+      char[] y = toCharArray(seq2);
+      Alignment.Builder ops = new Alignment.Builder();
+      Metrics.Span span = Metrics.ENABLED ? Metrics.beginPair(x.length, y.length, true) : null;
 
-      if (seqX.length() == 0) {
-         for (int i = 0; i < seqY.length(); i++) {
-            alignmentX.append('-');
-            alignmentY.append(seqY.charAt(i));
+      lastStrategy = plan(x, y, true);
+      if (lastStrategy == Strategy.FULL_MATRIX) {
+         needlemanWunsch(x, 0, x.length, y, 0, y.length, ops);
+      }
+      else {
+         ensureRowCapacity(y.length + 1);
+         hirschberg(x, 0, x.length, y, 0, y.length, ops);
+      }
+      Alignment alignment = ops.build(seq1, seq2, score(ops));
+
+      if (span != null) {
+         span.end(1);
+      }
+      return alignment;
+   }
+
+   /**
+    * Chooses how a pair would be handled, from the sequence lengths, the memory budget, the cost scheme and the
+    * score-only settings:
+    * <ul>
+    * <li>With a traceback, a full cost matrix if it fits in the memory budget, since Hirschberg's algorithm computes
+    * about twice as many cells; Hirschberg otherwise.</li>
+    * <li>Without one, the bit-parallel engine if the costs reduce to a unit-cost distance and both sequences are ASCII;
+    * the banded pass if a band or cutoff is set; otherwise the selected {@link Kernel}.</li>
+    * </ul>
+    * 
+    * @param seq1
+    * @param seq2
+    * @param traceback True for {@link #align(CharSequence, CharSequence)}, false for
+    *           {@link #score(CharSequence, CharSequence)}.
+    * @return The strategy.
+    */
+   public Strategy plan(CharSequence seq1, CharSequence seq2, boolean traceback) {
+      return plan(toCharArray(seq1), toCharArray(seq2), traceback);
+   }
+
+   private Strategy plan(char[] x, char[] y, boolean traceback) {
+      if (traceback) {
+         return matrixBytes(x.length, y.length) <= memoryBudget ? Strategy.FULL_MATRIX : Strategy.HIRSCHBERG;
+      }
+      if (bitParallel != null && BitParallelEditDistance.isAscii(x) && BitParallelEditDistance.isAscii(y)) {
+         return Strategy.BIT_PARALLEL;
+      }
+      if (bandWidth > 0 || scoreCutoff != BandedAligner.NO_CUTOFF) {
+         return Strategy.BANDED;
+      }
+      return kernel == Kernel.STRIPED ? Strategy.STRIPED : Strategy.SCALAR;
+   }
+
+   /**
+    * 
+    * @return The strategy used by the last call to {@link #align(CharSequence, CharSequence)} or
+    *         {@link #score(CharSequence, CharSequence)}, or null if there has been none.
+    */
+   public Strategy getLastStrategy() {
+      return lastStrategy;
+   }
+
+   /**
+    * 
+    * @param xLen
+    * @param yLen
+    * @return The approximate size of a full cost matrix, in bytes.
+    */
+   private static long matrixBytes(int xLen, int yLen) {
+      return 4L * (xLen + 1) * (yLen + 1);
+   }
+
+   /**
+    * 
+    * @param ops
+    * @return The score of the operations under this aligner's costs.
+    */
+   private int score(Alignment.Builder ops) {
+      return ops.total(Alignment.Op.MATCH) * matchedSubstitutionCost
+            + ops.total(Alignment.Op.MISMATCH) * unmatchedSubstitutionCost
+            + ops.total(Alignment.Op.INSERTION) * insertionCost + ops.total(Alignment.Op.DELETION) * deletionCost;
+   }
+
+   /**
+    * 
+    * @param alignmentX The first row of an alignment, with '-' for gaps.
+    * @param alignmentY The second row of the alignment.
+    * @return The score of the alignment under this aligner's costs.
+    */
+   public int scoreAlignment(CharSequence alignmentX, CharSequence alignmentY) {
+      int score = 0;
+      for (int i = 0; i < alignmentX.length(); i++) {
+         char xc = alignmentX.charAt(i);
+         char yc = alignmentY.charAt(i);
+         if (yc == '-') {
+            score += deletionCost(xc);
+         }
+         else if (xc == '-') {
+            score += insertionCost(yc);
          }
+         else {
+            score += substitutionCost(xc, yc);
+         }
+      }
+      return score;
+   }
+
+   /**
+    * Selects the kernel used by {@link #score(CharSequence, CharSequence)} for cost schemes that are not routed to the
+    * bit-parallel engine.
+    * 
+    * @param kernel
+    * @throws IllegalArgumentException If the striped kernel is requested and the deletion cost is not negative.
+    */
+   public void setKernel(Kernel kernel) {
+      if (kernel == Kernel.STRIPED && striped == null) {
+         striped = new StripedAligner(insertionCost, deletionCost, matchedSubstitutionCost, unmatchedSubstitutionCost);
+      }
+      this.kernel = kernel;
+   }
+
+   public Kernel getKernel() {
+      return kernel;
+   }
+
+   /**
+    * Limits the memory a full cost matrix may take. Alignments that do not fit use Hirschberg's algorithm instead.
+    * 
+    * @param bytes
+    */
+   public void setMemoryBudget(long bytes) {
+      if (bytes < 0) {
+         throw new IllegalArgumentException("Memory budget must not be negative.");
       }
-      else if (seqY.length() == 0) {
-         for (int i = 0; i < seqX.length(); i++) {
-            alignmentX.append(seqX.charAt(i));
-            alignmentY.append('-');
+      this.memoryBudget = bytes;
+   }
+
+   public long getMemoryBudget() {
+      return memoryBudget;
+   }
+
+   /**
+    * Sets the size at which the Hirschberg recursion stops and fills a full cost matrix instead, which is cheaper for
+    * small sub-problems. Sub-problems with a single row or column always use a full matrix.
+    * 
+    * @param cells The largest number of cost matrix cells to fill directly (also bounded by the memory budget).
+    */
+   public void setHirschbergCutoff(int cells) {
+      if (cells < 0) {
+         throw new IllegalArgumentException("Hirschberg cutoff must not be negative.");
+      }
+      this.hirschbergCutoff = cells;
+   }
+
+   public int getHirschbergCutoff() {
+      return hirschbergCutoff;
+   }
+
+   /**
+    * Restricts score-only passes to a band of diagonals, for pairs that are expected to be similar. The band is widened
+    * automatically whenever a path outside of it could still be optimal, so scores are unchanged.
+    * 
+    * @param bandWidth The initial number of diagonals on either side of the band, or 0 to fill the whole matrix.
+    */
+   public void setBandWidth(int bandWidth) {
+      if (bandWidth < 0) {
+         throw new IllegalArgumentException("Band width must not be negative.");
+      }
+      this.bandWidth = bandWidth;
+   }
+
+   public int getBandWidth() {
+      return bandWidth;
+   }
+
+   /**
+    * Makes score-only passes give up on a pair as soon as its score can no longer reach 'minScore'. Such pairs are
+    * reported as {@link #ABANDONED}.
+    * 
+    * @param minScore
+    */
+   public void setScoreCutoff(int minScore) {
+      this.scoreCutoff = minScore;
+   }
+
+   /**
+    * Makes {@link #distance(CharSequence, CharSequence)} give up on a pair as soon as its distance can no longer be
+    * within 'maxDistance'. Such pairs are reported as {@link Integer#MAX_VALUE}.
+    * 
+    * @param maxDistance
+    */
+   public void setDistanceCutoff(int maxDistance) {
+      setScoreCutoff(-maxDistance);
+   }
+
+   /**
+    * Removes any score or distance cutoff.
+    */
+   public void clearCutoff() {
+      this.scoreCutoff = BandedAligner.NO_CUTOFF;
+   }
+
+   /**
+    * Computes only the optimal alignment score of two text sequences. This makes a single rolling-row pass over the
+    * cost matrix and does no traceback. Cost schemes that are equivalent to a (scaled) Levenshtein or indel distance
+    * are routed to a {@link BitParallelEditDistance} engine instead. With the {@link Kernel#STRIPED striped kernel},
+    * the query profile for 'seq1' is kept until a different 'seq1' is scored. A {@link #setBandWidth(int) band} or a
+    * {@link #setScoreCutoff(int) cutoff} otherwise selects the {@link BandedAligner banded} pass.
+    * 
+    * @param seq1
+    * @param seq2
+    * @return The score of the best alignment, as reported by the bottom-right cell of the Needleman-Wunsch cost matrix,
+    *         or {@link #ABANDONED}.
+    */
+   public int score(CharSequence seq1, CharSequence seq2) {
+      return score(seq1, toCharArray(seq1), toCharArray(seq2));
+   }
+
+   /**
+    * Same as {@link #score(CharSequence, CharSequence)}, for callers that keep the characters of the sequences.
+    * 
+    * @param seq1
+    * @param x The characters of 'seq1'.
+    * @param y The characters of the second sequence.
+    * @return The score, or {@link #ABANDONED}.
+    */
+   int score(CharSequence seq1, char[] x, char[] y) {
+      int score;
+      Metrics.Span span = Metrics.ENABLED ? Metrics.beginPair(x.length, y.length, false) : null;
+
+      lastStrategy = plan(x, y, false);
+      if (lastStrategy == Strategy.BIT_PARALLEL) {
+         score = -bitParallelScale * bitParallel.distance(x, y);
+      }
+      else if (lastStrategy == Strategy.BANDED) {
+         if (banded == null) {
+            banded = new BandedAligner(insertionCost, deletionCost, matchedSubstitutionCost, unmatchedSubstitutionCost);
          }
+         // Without a band the whole matrix is filled, which still allows abandoning early.
+         score = banded.score(x, y, bandWidth > 0 ? bandWidth : Integer.MAX_VALUE, scoreCutoff);
+      }
+      else if (lastStrategy == Strategy.STRIPED) {
+         striped.setQuery(seq1);
+         score = striped.score(CharBuffer.wrap(y));
+      }
+      else {
+         ensureRowCapacity(y.length + 1);
+         forwardCost(x, 0, x.length, y, 0, y.length, forwardRow);
+         score = forwardRow[y.length];
+      }
+
+      if (span != null) {
+         span.end(1);
+      }
+      return score < scoreCutoff ? ABANDONED : score;
+   }
+
+   /**
+    * 
+    * @param xLength
+    * @param yLength
+    * @return An upper bound on the score of any alignment of sequences of these lengths, whatever their residues.
+    */
+   public int maxScore(int xLength, int yLength) {
+      // With 's' substitution columns the score is at most s * best + (yLength - s) * ins + (xLength - s) * del, which
+      // is linear in 's', so one of the two ends is the maximum.
+      int best = Math.max(matchedSubstitutionCost, unmatchedSubstitutionCost);
+      long gapsOnly = (long) yLength * insertionCost + (long) xLength * deletionCost;
+      long mostSubstitutions = gapsOnly + (long) Math.min(xLength, yLength) * (best - insertionCost - deletionCost);
+      return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, Math.max(gapsOnly, mostSubstitutions)));
+   }
+
+   /**
+    * Computes the edit distance of two text sequences, i.e. the negated {@link #score(CharSequence, CharSequence)
+    * score}. This is only meaningful when matches cost nothing and every other operation has a negative cost (e.g.
+    * <code>new SequenceAligner(-1, -1, 0, -2)</code> for Levenshtein distance with a substitution cost of 2).
+    * 
+    * @param seq1
+    * @param seq2
+    * @return The minimum total cost of the edits needed to turn 'seq1' into 'seq2', or {@link Integer#MAX_VALUE} if
+    *         the pair was abandoned.
+    */
+   public int distance(CharSequence seq1, CharSequence seq2) {
+      int score = score(seq1, seq2);
+      return score == ABANDONED ? Integer.MAX_VALUE : -score;
+   }
+
+   /**
+    * Appends the operations aligning <code>x[xFrom, xTo)</code> and <code>y[yFrom, yTo)</code> to 'ops'.
+    * 
+    * @param x
+    * @param xFrom
+    * @param xTo
+    * @param y
+    * @param yFrom
+    * @param yTo
+    * @param ops
+    */
+   protected void hirschberg(char[] x, int xFrom, int xTo, char[] y, int yFrom, int yTo, Alignment.Builder ops) {
+      int xLen = xTo - xFrom;
+      int yLen = yTo - yFrom;
+
+      if (xLen == 0) {
+         ops.add(Alignment.Op.INSERTION, yLen);
+      }
+      else if (yLen == 0) {
+         ops.add(Alignment.Op.DELETION, xLen);
       }
-      else if (seqX.length() == 1 || seqY.length() == 1) {
-         StringBuilder[] res = needlemanWunsch(seqX, seqY);
-         alignmentX = res[0];
-         alignmentY = res[1];
+      else if (xLen == 1 || yLen == 1 || ((long) (xLen + 1) * (yLen + 1) <= hirschbergCutoff
+            && matrixBytes(xLen, yLen) <= memoryBudget)) {
+         needlemanWunsch(x, xFrom, xTo, y, yFrom, yTo, ops);
       }
       else {
-         int xLen = seqX.length();
-         int xMid = xLen / 2;
-         int yLen = seqY.length();
+         int xMid = xFrom + xLen / 2;
 
          // Find where to split Y.
-         int[] leftCost = cost(seqX.substring(0, xMid), seqY); // Check bounds.
-         int[] rightCost = cost(reverse(seqX.substring(xMid, xLen)), reverse(seqY)); // Check bounds
-         int ySplit = partitionY(leftCost, rightCost, yLen);
+         forwardCost(x, xFrom, xMid, y, yFrom, yTo, forwardRow);
+         reverseCost(x, xMid, xTo, y, yFrom, yTo, reverseRow);
+         int ySplit = yFrom + partitionY(forwardRow, reverseRow, yLen);
 
          // Find the alignments.
-         StringBuilder[] left = hirschberg(seqX.substring(0, xMid), seqY.substring(0, ySplit));
-         StringBuilder[] right = hirschberg(seqX.substring(xMid, xLen), seqY.substring(ySplit, yLen));
-         alignmentX = left[0].append(right[0]);
-         alignmentY = left[1].append(right[1]);
+         hirschberg(x, xFrom, xMid, y, yFrom, ySplit, ops);
+         hirschberg(x, xMid, xTo, y, ySplit, yTo, ops);
       }
-
-      return new StringBuilder[] { alignmentX, alignmentY };
    }
 
    /**
-    * Returns a position 'p' such that <code>p = arg_max(leftCost + reverse(rightCost))</code>.
+    * Returns a position 'p' such that <code>p = arg_max(leftCost + rightCost)</code>, where <code>rightCost</code> is
+    * indexed by the same split position as <code>leftCost</code>.
     * 
     * @param leftCost
     * @param rightCost
@@ -103,11 +551,11 @@ public class SequenceAligner {
     * @return
     */
    private int partitionY(int[] leftCost, int[] rightCost, int yLen) {
-      int maxScore = 0;
+      int maxScore = Integer.MIN_VALUE;
       int partitionIndex = 0;
 
       for (int i = 0; i <= yLen; i++) {
-         int currentScore = leftCost[i] + rightCost[yLen - i];
+         int currentScore = leftCost[i] + rightCost[i];
          if (currentScore >= maxScore) { // TODO: Deal w/ multiple optimal alignments?
             maxScore = currentScore;
             partitionIndex = i;
@@ -125,36 +573,54 @@ public class SequenceAligner {
     * @return
     */
    protected StringBuilder[] needlemanWunsch(StringBuilder seqX, StringBuilder seqY) {
-      StringBuilder alignmentX = new StringBuilder();
-      StringBuilder alignmentY = new StringBuilder();
-      int i = seqX.length();
-      int j = seqY.length();
-      int[][] cost = computeCostMatrix(seqX, seqY);
+      char[] x = toCharArray(seqX);
+      char[] y = toCharArray(seqY);
+      Alignment.Builder ops = new Alignment.Builder();
+      needlemanWunsch(x, 0, x.length, y, 0, y.length, ops);
+      Alignment alignment = ops.build(seqX, seqY, score(ops));
+      return new StringBuilder[] { new StringBuilder(alignment.getFirstRow()),
+            new StringBuilder(alignment.getSecondRow()) };
+   }
+
+   /**
+    * Appends the operations aligning <code>x[xFrom, xTo)</code> and <code>y[yFrom, yTo)</code> to 'ops' using the full
+    * Needleman-Wunsch cost matrix. The traceback is appended backwards and then flipped in place.
+    * 
+    * @param x
+    * @param xFrom
+    * @param xTo
+    * @param y
+    * @param yFrom
+    * @param yTo
+    * @param ops
+    */
+   private void needlemanWunsch(char[] x, int xFrom, int xTo, char[] y, int yFrom, int yTo, Alignment.Builder ops) {
+      int i = xTo - xFrom;
+      int j = yTo - yFrom;
+      int[][] cost = computeCostMatrix(x, xFrom, xTo, y, yFrom, yTo);
 
+      ops.beginReversed();
       while (i > 0 || j > 0) {
+         char xc = i > 0 ? x[xFrom + i - 1] : 0;
+         char yc = j > 0 ? y[yFrom + j - 1] : 0;
          // X_i & Y_j are aligned.
-         if (i > 0 && j > 0 && cost[i][j] == cost[i - 1][j - 1] + substitutionCost(seqX.charAt(i - 1), seqY.charAt(j - 1))) {
-            // Prepend characters to the front of the alignments.
-            alignmentX.insert(0, seqX.charAt(i - 1));
-            alignmentY.insert(0, seqY.charAt(j - 1));
+         if (i > 0 && j > 0 && cost[i][j] == cost[i - 1][j - 1] + substitutionCost(xc, yc)) {
+            ops.add(xc == yc ? Alignment.Op.MATCH : Alignment.Op.MISMATCH, 1);
             i = i - 1;
             j = j - 1;
          }
          // X_i is aligned with a gap in Y.
-         else if (i > 0 && cost[i][j] == cost[i - 1][j] + deletionCost(seqX.charAt(i - 1))) {
-            alignmentX.insert(0, seqX.charAt(i - 1));
-            alignmentY.insert(0, '-');
+         else if (i > 0 && cost[i][j] == cost[i - 1][j] + deletionCost(xc)) {
+            ops.add(Alignment.Op.DELETION, 1);
             i = i - 1;
          }
          // Y_j is aligned with a gap in X.
-         else if (j > 0 && cost[i][j] == cost[i][j - 1] + deletionCost(seqY.charAt(j - 1))) {
-            alignmentX.insert(0, '-');
-            alignmentY.insert(0, seqY.charAt(j - 1));
+         else {
+            ops.add(Alignment.Op.INSERTION, 1);
             j = j - 1;
          }
       }
-
-      return new StringBuilder[] { alignmentX, alignmentY };
+      ops.endReversed();
    }
 
    /**
@@ -165,19 +631,38 @@ public class SequenceAligner {
     * @return
     */
    protected int[][] computeCostMatrix(CharSequence seqX, CharSequence seqY) {
-      int rows = seqX.length() + 1;
-      int cols = seqY.length() + 1;
-      int[][] score = new int[rows][cols];
-
-      for (int j = 1; j <= seqY.length(); j++) {
-         score[0][j] = score[0][j - 1] + insertionCost(seqY.charAt(j - 1));
-      }
-      for (int i = 1; i <= seqX.length(); i++) {
-         score[i][0] = score[i - 1][0] + deletionCost(seqX.charAt(i - 1));
-         for (int j = 1; j <= seqY.length(); j++) {
-            int costSub = score[i - 1][j - 1] + substitutionCost(seqX.charAt(i - 1), seqY.charAt(j - 1));
-            int costDel = score[i - 1][j] + deletionCost(seqX.charAt(i - 1));
-            int costIns = score[i][j - 1] + insertionCost(seqY.charAt(j - 1));
+      char[] x = toCharArray(seqX);
+      char[] y = toCharArray(seqY);
+      return computeCostMatrix(x, 0, x.length, y, 0, y.length);
+   }
+
+   /**
+    * Builds the cost matrix for Needleman-Wunsch over <code>x[xFrom, xTo)</code> and <code>y[yFrom, yTo)</code>.
+    * 
+    * @param x
+    * @param xFrom
+    * @param xTo
+    * @param y
+    * @param yFrom
+    * @param yTo
+    * @return
+    */
+   private int[][] computeCostMatrix(char[] x, int xFrom, int xTo, char[] y, int yFrom, int yTo) {
+      int xLen = xTo - xFrom;
+      int yLen = yTo - yFrom;
+      int[][] score = new int[xLen + 1][yLen + 1];
+
+      for (int j = 1; j <= yLen; j++) {
+         score[0][j] = score[0][j - 1] + insertionCost(y[yFrom + j - 1]);
+      }
+      for (int i = 1; i <= xLen; i++) {
+         char xc = x[xFrom + i - 1];
+         score[i][0] = score[i - 1][0] + deletionCost(xc);
+         for (int j = 1; j <= yLen; j++) {
+            char yc = y[yFrom + j - 1];
+            int costSub = score[i - 1][j - 1] + substitutionCost(xc, yc);
+            int costDel = score[i - 1][j] + deletionCost(xc);
+            int costIns = score[i][j - 1] + insertionCost(yc);
             // max(costSub, costDel, costIns)
             score[i][j] = Math.max(Math.max(costSub, costDel), costIns);
          }
@@ -187,15 +672,88 @@ public class SequenceAligner {
    }
 
    /**
-    * Returns the last row of Needleman-Wunsch cost matrix.
+    * Fills <code>row[0, yLen]</code> with the last row of the Needleman-Wunsch cost matrix for
+    * <code>x[xFrom, xTo)</code> and <code>y[yFrom, yTo)</code>, i.e. <code>row[j]</code> is the best score for
+    * aligning the X range with the first 'j' characters of the Y range.
     * 
-    * @param seqX
-    * @param seqY
-    * @return
+    * @param x
+    * @param xFrom
+    * @param xTo
+    * @param y
+    * @param yFrom
+    * @param yTo
+    * @param row
+    */
+   private void forwardCost(char[] x, int xFrom, int xTo, char[] y, int yFrom, int yTo, int[] row) {
+      int yLen = yTo - yFrom;
+
+      row[0] = 0;
+      for (int j = 1; j <= yLen; j++) {
+         row[j] = row[j - 1] + insertionCost(y[yFrom + j - 1]);
+      }
+      for (int i = xFrom; i < xTo; i++) {
+         char xc = x[i];
+         int diag = row[0];
+         row[0] = diag + deletionCost(xc);
+         for (int j = 1; j <= yLen; j++) {
+            char yc = y[yFrom + j - 1];
+            int up = row[j];
+            int costSub = diag + substitutionCost(xc, yc);
+            int costDel = up + deletionCost(xc);
+            int costIns = row[j - 1] + insertionCost(yc);
+            row[j] = Math.max(Math.max(costSub, costDel), costIns);
+            diag = up;
+         }
+      }
+   }
+
+   /**
+    * Fills <code>row[0, yLen]</code> with the first row of the Needleman-Wunsch cost matrix computed backwards from
+    * the end of <code>x[xFrom, xTo)</code> and <code>y[yFrom, yTo)</code>, i.e. <code>row[j]</code> is the best score
+    * for aligning the X range with the Y range minus its first 'j' characters. This is the same as running
+    * {@link #forwardCost} over the reversed ranges, without having to build the reversed copies.
+    * 
+    * @param x
+    * @param xFrom
+    * @param xTo
+    * @param y
+    * @param yFrom
+    * @param yTo
+    * @param row
+    */
+   private void reverseCost(char[] x, int xFrom, int xTo, char[] y, int yFrom, int yTo, int[] row) {
+      int yLen = yTo - yFrom;
+
+      row[yLen] = 0;
+      for (int j = yLen - 1; j >= 0; j--) {
+         row[j] = row[j + 1] + insertionCost(y[yFrom + j]);
+      }
+      for (int i = xTo - 1; i >= xFrom; i--) {
+         char xc = x[i];
+         int diag = row[yLen];
+         row[yLen] = diag + deletionCost(xc);
+         for (int j = yLen - 1; j >= 0; j--) {
+            char yc = y[yFrom + j];
+            int down = row[j];
+            int costSub = diag + substitutionCost(xc, yc);
+            int costDel = down + deletionCost(xc);
+            int costIns = row[j + 1] + insertionCost(yc);
+            row[j] = Math.max(Math.max(costSub, costDel), costIns);
+            diag = down;
+         }
+      }
+   }
+
+   /**
+    * Makes sure both rolling rows hold at least 'size' cells.
+    * 
+    * @param size
     */
-   private int[] cost(CharSequence seqX, CharSequence seqY) {
-      int[][] cost = computeCostMatrix(seqX, seqY);
-      return cost[seqX.length()];
+   private void ensureRowCapacity(int size) {
+      if (forwardRow.length < size) {
+         forwardRow = new int[size];
+         reverseRow = new int[size];
+      }
    }
 
    /**
@@ -235,13 +793,12 @@ public class SequenceAligner {
    }
 
    /**
-    * Reverses the given character sequence.
     * 
     * @param cs
-    * @return
+    * @return The characters of 'cs' as an array.
     */
-   private String reverse(CharSequence cs) {
-      return new StringBuilder(cs).reverse().toString();
+   private static char[] toCharArray(CharSequence cs) {
+      return cs.toString().toCharArray();
    }
 
 }
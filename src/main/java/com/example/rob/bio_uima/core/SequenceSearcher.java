@@ -0,0 +1,224 @@
+package com.example.rob.bio_uima.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the database sequences that align best with a query, keeping only the best 'k' hits in a bounded min-heap.
+ * 
+ * <p>
+ * Candidates are visited in decreasing order of {@link SequenceAligner#maxScore(int, int) the best score their length
+ * allows}. Until the heap is full each one is scored with the {@link SequenceAligner.Kernel#STRIPED striped kernel},
+ * whose query profile is built once per query (or with the scalar kernel if the deletion cost is not negative, which
+ * the striped kernel does not support); after that the score of the worst hit kept is used as a
+ * {@link SequenceAligner#setScoreCutoff(int) cutoff}, so that candidates that cannot beat it are abandoned part-way,
+ * and the search stops as soon as the length bound of the next candidate is below it. A hit is reported as soon as no
+ * remaining candidate can outscore it, so hits stream back best first while the search is still running.
+ * 
+ * <p>
+ * The aligner, the query and the candidate order are kept between calls, so an instance is not thread-safe.
+ */
+public class SequenceSearcher {
+
+   /**
+    * Receives hits, best first.
+    */
+   public interface Handler {
+      /**
+       * 
+       * @param rank The position of the hit, from 0.
+       * @param index The position of the sequence in the database.
+       * @param score Its alignment score with the query.
+       */
+      void hit(int rank, int index, int score);
+   }
+
+   private final SequenceAligner aligner;
+   private final int             maxHits;
+
+   /**
+    * Min-heap of <code>score &lt;&lt; 32 | (MAX_VALUE - index)</code>, so the worst hit (lowest score, then highest
+    * index) is at the top.
+    */
+   private final long[]          heap;
+   private int                   heapSize;
+
+   private String                query;
+   private char[]                queryChars;
+   private long[]                order = new long[0];
+   private int                   scoredCount;
+
+   /**
+    * 
+    * @param template The costs and settings to align with; the searcher uses its own copy.
+    * @param maxHits The number of hits to keep ('k').
+    */
+   public SequenceSearcher(SequenceAligner template, int maxHits) {
+      if (maxHits < 1) {
+         throw new IllegalArgumentException("Number of hits must be at least 1.");
+      }
+      this.aligner = new SequenceAligner(template);
+      this.aligner.setKernel(aligner.getDeletionCost() < 0 ? SequenceAligner.Kernel.STRIPED
+            : SequenceAligner.Kernel.SCALAR);
+      this.maxHits = maxHits;
+      this.heap = new long[maxHits];
+   }
+
+   public int getMaxHits() {
+      return maxHits;
+   }
+
+   /**
+    * Reports the best hits of the query in the database, ranked by score and then by position.
+    * 
+    * @param query
+    * @param database
+    * @param handler
+    * @return The number of hits, at most {@link #getMaxHits()}.
+    */
+   public int search(CharSequence query, List<? extends CharSequence> database, Handler handler) {
+      setQuery(query);
+      int n = database.size();
+
+      // Visit candidates by decreasing bound, then by position.
+      if (order.length < n) {
+         order = new long[n];
+      }
+      for (int i = 0; i < n; i++) {
+         long bound = aligner.maxScore(queryChars.length, database.get(i).length());
+         order[i] = -bound << 32 | i;
+      }
+      Arrays.sort(order, 0, n);
+
+      heapSize = 0;
+      scoredCount = 0;
+      int reported = 0;
+      int best = Integer.MIN_VALUE;
+      aligner.clearCutoff();
+      for (int c = 0; c < n; c++) {
+         int index = (int) order[c];
+         int bound = (int) -(order[c] >> 32);
+         boolean full = reported + heapSize == maxHits;
+         if (full && (heapSize == 0 || bound < scoreOf(heap[0]))) {
+            break;
+         }
+
+         int score = aligner.score(query, queryChars, database.get(index).toString().toCharArray());
+         scoredCount++;
+         if (score != SequenceAligner.ABANDONED) {
+            long entry = (long) score << 32 | (Integer.MAX_VALUE - index);
+            if (!full || entry > heap[0]) {
+               if (full) {
+                  replaceTop(entry);
+               }
+               else {
+                  push(entry);
+               }
+               best = Math.max(best, score);
+               if (reported + heapSize == maxHits) {
+                  aligner.setScoreCutoff(scoreOf(heap[0]));
+               }
+            }
+         }
+
+         // Hits that no remaining candidate can outscore are final.
+         int nextBound = c + 1 < n ? (int) -(order[c + 1] >> 32) : Integer.MIN_VALUE;
+         if (best > nextBound) {
+            reported = report(nextBound, reported, handler);
+            best = highestScore();
+         }
+      }
+      return report(Integer.MIN_VALUE, reported, handler);
+   }
+
+   /**
+    * 
+    * @return The number of candidates scored (fully or until abandoned) by the last search.
+    */
+   public int getScoredCount() {
+      return scoredCount;
+   }
+
+   private void setQuery(CharSequence seq) {
+      String q = seq.toString();
+      if (!q.equals(query)) {
+         query = q;
+         queryChars = q.toCharArray();
+      }
+   }
+
+   /**
+    * Removes the hits scoring above 'bound' from the heap and reports them, best first.
+    * 
+    * @param bound
+    * @param reported The number of hits reported so far.
+    * @param handler
+    * @return The new number of hits reported.
+    */
+   private int report(int bound, int reported, Handler handler) {
+      long[] hits = new long[heapSize];
+      int count = 0;
+      int kept = 0;
+      for (int h = 0; h < heapSize; h++) {
+         if (scoreOf(heap[h]) > bound) {
+            hits[count++] = heap[h];
+         }
+         else {
+            heap[kept++] = heap[h];
+         }
+      }
+      heapSize = kept;
+      for (int h = heapSize / 2 - 1; h >= 0; h--) {
+         siftDown(h);
+      }
+
+      Arrays.sort(hits, 0, count);
+      for (int h = count - 1; h >= 0; h--) {
+         handler.hit(reported++, Integer.MAX_VALUE - (int) hits[h], scoreOf(hits[h]));
+      }
+      return reported;
+   }
+
+   private int highestScore() {
+      int best = Integer.MIN_VALUE;
+      for (int h = 0; h < heapSize; h++) {
+         best = Math.max(best, scoreOf(heap[h]));
+      }
+      return best;
+   }
+
+   private static int scoreOf(long entry) {
+      return (int) (entry >> 32);
+   }
+
+   private void push(long entry) {
+      int h = heapSize++;
+      while (h > 0 && heap[(h - 1) / 2] > entry) {
+         heap[h] = heap[(h - 1) / 2];
+         h = (h - 1) / 2;
+      }
+      heap[h] = entry;
+   }
+
+   private void replaceTop(long entry) {
+      heap[0] = entry;
+      siftDown(0);
+   }
+
+   private void siftDown(int h) {
+      long entry = heap[h];
+      while (2 * h + 1 < heapSize) {
+         int child = 2 * h + 1;
+         if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+            child++;
+         }
+         if (heap[child] >= entry) {
+            break;
+         }
+         heap[h] = heap[child];
+         h = child;
+      }
+      heap[h] = entry;
+   }
+
+}
@@ -0,0 +1,195 @@
+package com.example.rob.bio_uima.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.example.rob.bio_uima.metrics.Metrics;
+
+/**
+ * A read-only database of DNA sequences and their translated proteins, as written by {@link SequenceStoreBuilder}.
+ * The file is memory-mapped when opened, so opening it does not depend on its size and the sequences stay off the
+ * heap until they are used; proteins are returned as views into the mapping.
+ * 
+ * <p>
+ * The file is little-endian and made of:
+ * <ul>
+ * <li>A header: the magic number, the number of sequences (int) and the position of the index (long).</li>
+ * <li>For each sequence, its DNA as {@link PackedDnaSequence} words (8-byte aligned), its protein (one ASCII byte per
+ * residue) and its name (UTF-8).</li>
+ * <li>The index: one entry per sequence holding the positions and lengths of the three, and the coordinates of the
+ * ORF the protein was translated from (see {@link ProteinSequencer#findLongestOrf(PackedDnaSequence)}).</li>
+ * </ul>
+ * 
+ * <p>
+ * Reads use absolute positions only, so an instance can be shared between threads. Files are limited to 2 GB.
+ */
+public class SequenceStore implements Closeable {
+
+   static final int               MAGIC            = 0x31515342; // "BSQ1"
+   static final int               HEADER_BYTES     = 16;
+   static final long              MAX_BYTES        = Integer.MAX_VALUE;
+
+   // Layout of an index entry.
+   static final int               ENTRY_BYTES      = 48;
+   static final int               DNA_POSITION     = 0;
+   static final int               PROTEIN_POSITION = 8;
+   static final int               NAME_POSITION    = 16;
+   static final int               DNA_LENGTH       = 24;
+   static final int               PROTEIN_LENGTH   = 28;
+   static final int               NAME_LENGTH      = 32;
+   static final int               ORF_START        = 36;
+   static final int               ORF_END          = 40;
+
+   private final RandomAccessFile file;
+   private final MappedByteBuffer buffer;
+   private final int              count;
+   private final int              index;
+
+   /**
+    * Opens and maps a sequence store.
+    * 
+    * @param fileName
+    * @throws IOException If the file cannot be opened or is not a sequence store.
+    */
+   public SequenceStore(String fileName) throws IOException {
+      this.file = new RandomAccessFile(fileName, "r");
+      try {
+         FileChannel channel = file.getChannel();
+         long size = channel.size();
+         if (size > MAX_BYTES) {
+            throw new IOException("Sequence store is too large to map: " + fileName);
+         }
+         if (size < HEADER_BYTES) {
+            throw new IOException("Not a sequence store: " + fileName);
+         }
+         this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+         buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+         this.count = buffer.getInt(4);
+         long indexPosition = buffer.getLong(8);
+         if (buffer.getInt(0) != MAGIC || count < 0 || indexPosition < HEADER_BYTES
+               || indexPosition + (long) count * ENTRY_BYTES != size) {
+            throw new IOException("Not a sequence store: " + fileName);
+         }
+         this.index = (int) indexPosition;
+      }
+      catch (IOException e) {
+         file.close();
+         throw e;
+      }
+   }
+
+   /**
+    * 
+    * @return The number of sequences.
+    */
+   public int size() {
+      return count;
+   }
+
+   public String getName(int i) {
+      byte[] name = new byte[entryInt(i, NAME_LENGTH)];
+      int position = entryPosition(i, NAME_POSITION);
+      for (int b = 0; b < name.length; b++) {
+         name[b] = buffer.get(position + b);
+      }
+      return new String(name, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * 
+    * @param i
+    * @return The number of nucleotides of DNA sequence 'i'.
+    */
+   public int getDnaLength(int i) {
+      return entryInt(i, DNA_LENGTH);
+   }
+
+   /**
+    * 
+    * @param i
+    * @return DNA sequence 'i', copied a packed word at a time.
+    */
+   public PackedDnaSequence getDna(int i) {
+      int length = getDnaLength(i);
+      int position = entryPosition(i, DNA_POSITION);
+      long[] words = new long[(length + PackedDnaSequence.BASES_PER_WORD - 1) / PackedDnaSequence.BASES_PER_WORD];
+      for (int w = 0; w < words.length; w++) {
+         words[w] = buffer.getLong(position + 8 * w);
+      }
+      if (Metrics.ENABLED) {
+         Metrics.Counter.BYTES_READ.add(8L * words.length);
+      }
+      return new PackedDnaSequence(words, length);
+   }
+
+   /**
+    * 
+    * @param i
+    * @return The protein translated from DNA sequence 'i' (empty if it has no ORF), as a view into the mapping.
+    */
+   public CharSequence getProtein(int i) {
+      return new AsciiSequence(buffer, entryPosition(i, PROTEIN_POSITION), entryInt(i, PROTEIN_LENGTH));
+   }
+
+   /**
+    * 
+    * @param i
+    * @return The residues of {@link #getProtein(int)} as ASCII bytes.
+    */
+   public byte[] getProteinBytes(int i) {
+      byte[] protein = new byte[entryInt(i, PROTEIN_LENGTH)];
+      int position = entryPosition(i, PROTEIN_POSITION);
+      for (int b = 0; b < protein.length; b++) {
+         protein[b] = buffer.get(position + b);
+      }
+      if (Metrics.ENABLED) {
+         Metrics.Counter.BYTES_READ.add(protein.length);
+      }
+      return protein;
+   }
+
+   /**
+    * 
+    * @param i
+    * @return The position in DNA sequence 'i' of the first nucleotide of the translated ORF, or -1 if there is none.
+    */
+   public int getOrfStart(int i) {
+      return entryInt(i, ORF_START);
+   }
+
+   /**
+    * 
+    * @param i
+    * @return The position in DNA sequence 'i' after the last translated codon, or -1 if there is no ORF.
+    */
+   public int getOrfEnd(int i) {
+      return entryInt(i, ORF_END);
+   }
+
+   private int entryInt(int i, int field) {
+      return buffer.getInt(entry(i) + field);
+   }
+
+   private int entryPosition(int i, int field) {
+      return (int) buffer.getLong(entry(i) + field);
+   }
+
+   private int entry(int i) {
+      if (i < 0 || i >= count) {
+         throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+      }
+      return index + i * ENTRY_BYTES;
+   }
+
+   @Override
+   public void close() throws IOException {
+      file.close();
+   }
+
+}
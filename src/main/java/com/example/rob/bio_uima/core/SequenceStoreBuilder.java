@@ -0,0 +1,208 @@
+package com.example.rob.bio_uima.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a {@link SequenceStore} one sequence at a time, translating each with
+ * {@link ProteinSequencer#findLongestOrf(PackedDnaSequence)}. Sequences are appended to the file as they are added and
+ * only the index is kept in memory, so stores larger than the heap can be built. The header is written on
+ * {@link #close()}. A store is limited to 2 GB, the most {@link SequenceStore} maps: a sequence that would take the
+ * file past it is refused before any of it is written.
+ * 
+ * <p>
+ * Run as a program to convert a FASTA file (or the bundled <code>data/dna.txt</code> format) to a store:
+ * 
+ * <pre>
+ * java com.example.rob.bio_uima.core.SequenceStoreBuilder data/dna.txt data/dna.store
+ * </pre>
+ */
+public class SequenceStoreBuilder implements Closeable {
+
+   private static final int  BUFFER_BYTES = 1 << 16;
+
+   private final FileChannel channel;
+   private final ByteBuffer  out;
+   private final long        maxBytes;
+   private ByteBuffer        index;
+   private long              position;
+   private int               count;
+
+   /**
+    * Creates (or truncates) a store.
+    * 
+    * @param fileName
+    * @throws IOException If the file cannot be written.
+    */
+   public SequenceStoreBuilder(String fileName) throws IOException {
+      this(fileName, SequenceStore.MAX_BYTES);
+   }
+
+   /**
+    * 
+    * @param fileName
+    * @param maxBytes The largest file to write, index and header included.
+    * @throws IOException If the file cannot be written.
+    */
+   SequenceStoreBuilder(String fileName, long maxBytes) throws IOException {
+      this.maxBytes = maxBytes;
+      RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+      file.setLength(0);
+      this.channel = file.getChannel();
+      this.out = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      this.index = ByteBuffer.allocate(64 * SequenceStore.ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+      // Room for the header, which is filled in on close.
+      out.put(new byte[SequenceStore.HEADER_BYTES]);
+      position = SequenceStore.HEADER_BYTES;
+   }
+
+   /**
+    * Adds a DNA sequence and its translation.
+    * 
+    * @param name
+    * @param dna A non-empty sequence of nucleotide characters (see {@link PackedDnaSequence#pack(CharSequence)}).
+    * @throws IOException If the file cannot be written, or if the sequence would take it past 2 GB; the sequences added
+    *            before are kept and written on {@link #close()}.
+    */
+   public void add(String name, CharSequence dna) throws IOException {
+      PackedDnaSequence packed = PackedDnaSequence.pack(dna);
+      Orf orf = ProteinSequencer.getInstance().findLongestOrf(packed);
+      byte[] protein = orf == null ? new byte[0] : orf.getProtein().getBytes(StandardCharsets.US_ASCII);
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      long end = (position + 7 & ~7L) + 8L * packed.wordCount() + protein.length + nameBytes.length
+            + (count + 1L) * SequenceStore.ENTRY_BYTES;
+      if (end > maxBytes) {
+         throw new IOException("Sequence store would exceed " + maxBytes + " bytes with sequence " + name + ".");
+      }
+
+      // Words are aligned so that they can be read as longs from the mapping.
+      while (position % 8 != 0) {
+         write((byte) 0);
+      }
+      long dnaPosition = position;
+      for (int w = 0; w < packed.wordCount(); w++) {
+         ensureSpace(8);
+         out.putLong(packed.word(w));
+         position += 8;
+      }
+      long proteinPosition = position;
+      write(protein);
+      long namePosition = position;
+      write(nameBytes);
+
+      if (index.remaining() < SequenceStore.ENTRY_BYTES) {
+         ByteBuffer grown = ByteBuffer.allocate(2 * index.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+         index.flip();
+         grown.put(index);
+         index = grown;
+      }
+      int entry = index.position();
+      index.putLong(entry + SequenceStore.DNA_POSITION, dnaPosition);
+      index.putLong(entry + SequenceStore.PROTEIN_POSITION, proteinPosition);
+      index.putLong(entry + SequenceStore.NAME_POSITION, namePosition);
+      index.putInt(entry + SequenceStore.DNA_LENGTH, packed.length());
+      index.putInt(entry + SequenceStore.PROTEIN_LENGTH, protein.length);
+      index.putInt(entry + SequenceStore.NAME_LENGTH, nameBytes.length);
+      index.putInt(entry + SequenceStore.ORF_START, orf == null ? -1 : orf.getStart());
+      index.putInt(entry + SequenceStore.ORF_END, orf == null ? -1 : orf.getEnd());
+      index.position(entry + SequenceStore.ENTRY_BYTES);
+      count++;
+   }
+
+   /**
+    * 
+    * @return The number of sequences added so far.
+    */
+   public int size() {
+      return count;
+   }
+
+   private void write(byte b) throws IOException {
+      ensureSpace(1);
+      out.put(b);
+      position++;
+   }
+
+   private void write(byte[] bytes) throws IOException {
+      for (int from = 0; from < bytes.length;) {
+         ensureSpace(1);
+         int n = Math.min(out.remaining(), bytes.length - from);
+         out.put(bytes, from, n);
+         from += n;
+      }
+      position += bytes.length;
+   }
+
+   private void ensureSpace(int bytes) throws IOException {
+      if (out.remaining() < bytes) {
+         flush();
+      }
+   }
+
+   private void flush() throws IOException {
+      out.flip();
+      while (out.hasRemaining()) {
+         channel.write(out);
+      }
+      out.clear();
+   }
+
+   /**
+    * Writes the index and the header, and closes the file.
+    */
+   @Override
+   public void close() throws IOException {
+      try {
+         flush();
+         long indexPosition = position;
+         index.flip();
+         while (index.hasRemaining()) {
+            channel.write(index);
+         }
+
+         ByteBuffer header = ByteBuffer.allocate(SequenceStore.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+         header.putInt(SequenceStore.MAGIC).putInt(count).putLong(indexPosition).flip();
+         while (header.hasRemaining()) {
+            channel.write(header, header.position());
+         }
+      }
+      finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Converts a FASTA file to a sequence store, skipping records without residues.
+    * 
+    * @param args The FASTA file and the store to write.
+    * @throws IOException
+    */
+   public static void main(String[] args) throws IOException {
+      if (args.length != 2) {
+         System.err.println("Usage: SequenceStoreBuilder <FASTA file> <store file>");
+         System.exit(1);
+      }
+
+      FastaReader reader = new FastaReader(args[0]);
+      SequenceStoreBuilder builder = new SequenceStoreBuilder(args[1]);
+      try {
+         for (FastaRecord record = reader.read(); record != null; record = reader.read()) {
+            if (record.getSequence().length() > 0) {
+               builder.add(record.getId(), record.getSequence());
+            }
+         }
+      }
+      finally {
+         builder.close();
+         reader.close();
+      }
+      System.out.println("Wrote " + builder.size() + " sequences to " + args[1] + ".");
+   }
+
+}
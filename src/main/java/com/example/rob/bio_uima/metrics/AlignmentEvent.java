@@ -0,0 +1,31 @@
+package com.example.rob.bio_uima.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering the alignment or scoring of a pair with at least
+ * {@link Metrics#LARGE_ALIGNMENT_CELLS} cells.
+ */
+@Name("com.example.rob.bio_uima.Alignment")
+@Label("Large Alignment")
+@Category("BioUIMA")
+@Description("Alignment or scoring of a large pair of sequences")
+public class AlignmentEvent extends Event {
+
+   @Label("First Length")
+   int     firstLength;
+
+   @Label("Second Length")
+   int     secondLength;
+
+   @Label("Cells")
+   long    cells;
+
+   @Label("Traceback")
+   boolean traceback;
+
+}
@@ -0,0 +1,74 @@
+package com.example.rob.bio_uima.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A lock-free latency histogram with one bucket per power of two nanoseconds, so recording is a few atomic adds and
+ * percentiles are accurate to within a factor of two.
+ */
+public class Histogram {
+
+   private final AtomicLongArray buckets = new AtomicLongArray(64);
+   private final LongAdder       count   = new LongAdder();
+   private final LongAdder       total   = new LongAdder();
+   private final LongAccumulator max     = new LongAccumulator(new LongBinaryOperator() {
+                                            @Override
+                                            public long applyAsLong(long left, long right) {
+                                               return Math.max(left, right);
+                                            }
+                                         }, 0);
+
+   public void record(long nanos) {
+      long value = Math.max(0, nanos);
+      buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(value | 1));
+      count.increment();
+      total.add(value);
+      max.accumulate(value);
+   }
+
+   public long getCount() {
+      return count.sum();
+   }
+
+   public long getTotalNanos() {
+      return total.sum();
+   }
+
+   public long getMaxNanos() {
+      return max.get();
+   }
+
+   /**
+    * 
+    * @param fraction Between 0 and 1, e.g. 0.99.
+    * @return The upper bound of the bucket holding that fraction of the recorded values, or 0 if there are none.
+    */
+   public long getPercentileNanos(double fraction) {
+      long n = getCount();
+      if (n == 0) {
+         return 0;
+      }
+      long rank = (long) Math.ceil(fraction * n);
+      long seen = 0;
+      for (int b = 0; b < 64; b++) {
+         seen += buckets.get(b);
+         if (seen >= rank) {
+            return Math.min(getMaxNanos(), b == 63 ? Long.MAX_VALUE : (2L << b) - 1);
+         }
+      }
+      return getMaxNanos();
+   }
+
+   void reset() {
+      for (int b = 0; b < 64; b++) {
+         buckets.set(b, 0);
+      }
+      count.reset();
+      total.reset();
+      max.reset();
+   }
+
+}
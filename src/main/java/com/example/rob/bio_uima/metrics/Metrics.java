@@ -0,0 +1,326 @@
+package com.example.rob.bio_uima.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counters and latency histograms for the pipeline stages, with Flight Recorder events for each stage
+ * call and for each large alignment.
+ * 
+ * <p>
+ * Collection is switched on with the system property {@value #PROPERTY} (e.g. <code>-Dbio_uima.metrics=true</code>)
+ * and is read once into {@link #ENABLED}. Instrumented code guards its calls with that constant, so that with
+ * collection off the JIT removes them and the hot loops pay nothing. When on, the metrics are also registered as the
+ * MXBean {@value #OBJECT_NAME} (see {@link MetricsMXBean}).
+ */
+public final class Metrics {
+
+   /**
+    * Name of the system property that switches collection on.
+    */
+   public static final String  PROPERTY              = "bio_uima.metrics";
+
+   /**
+    * True if metrics are collected.
+    */
+   public static final boolean ENABLED               = Boolean.getBoolean(PROPERTY);
+
+   /**
+    * Name under which the metrics are registered with the platform MBean server.
+    */
+   public static final String  OBJECT_NAME           = "com.example.rob.bio_uima:type=Metrics";
+
+   /**
+    * Number of cells from which an alignment is recorded as an {@link AlignmentEvent}.
+    */
+   public static final long    LARGE_ALIGNMENT_CELLS = 1L << 20;
+
+   /**
+    * Cumulative counts.
+    */
+   public enum Counter {
+      /**
+       * DNA sequences translated to proteins.
+       */
+      SEQUENCES_TRANSLATED,
+      /**
+       * Bases of the translated DNA sequences.
+       */
+      BASES_TRANSLATED,
+      /**
+       * Pairs aligned or scored.
+       */
+      ALIGNMENTS,
+      /**
+       * Dynamic programming cells of the aligned or scored pairs, i.e. the product of their lengths. Pairs that are
+       * abandoned early or scored within a band are counted in full.
+       */
+      CELLS,
+      /**
+       * Bytes of input read by the collection readers.
+       */
+      BYTES_READ;
+
+      private final LongAdder adder = new LongAdder();
+
+      public void add(long n) {
+         adder.add(n);
+      }
+
+      public long get() {
+         return adder.sum();
+      }
+   }
+
+   /**
+    * Timed stages. All but {@link #PAIR} are timed once per CAS.
+    */
+   public enum Timer {
+      /**
+       * Filling a CAS in a collection reader.
+       */
+      READ,
+      /**
+       * Translating the DNA sequences of a CAS.
+       */
+      TRANSLATION,
+      /**
+       * Aligning the proteins of a CAS, over all threads.
+       */
+      ALIGNMENT,
+      /**
+       * Printing the results of a CAS.
+       */
+      OUTPUT,
+      /**
+       * Aligning or scoring a single pair.
+       */
+      PAIR;
+
+      private final Histogram histogram = new Histogram();
+
+      public Histogram getHistogram() {
+         return histogram;
+      }
+   }
+
+   /**
+    * A timed call, ended with {@link #end(long)}.
+    */
+   public static final class Span {
+
+      private final Timer          timer;
+      private final long           start;
+      private final ProcessEvent   processEvent;
+      private final AlignmentEvent alignmentEvent;
+
+      private Span(Timer timer, ProcessEvent processEvent, AlignmentEvent alignmentEvent) {
+         this.timer = timer;
+         this.processEvent = processEvent;
+         this.alignmentEvent = alignmentEvent;
+         this.start = System.nanoTime();
+      }
+
+      /**
+       * Records the time since the span began and commits its event, if any.
+       * 
+       * @param items The number of sequences, proteins or pairs handled, for the event.
+       */
+      public void end(long items) {
+         if (timer == null) {
+            return;
+         }
+         timer.histogram.record(System.nanoTime() - start);
+         if (processEvent != null) {
+            processEvent.items = items;
+            processEvent.commit();
+         }
+         if (alignmentEvent != null) {
+            alignmentEvent.commit();
+         }
+      }
+   }
+
+   /**
+    * Returned by {@link #begin(Timer, String)} when collection is off.
+    */
+   private static final Span DISABLED = new Span(null, null, null);
+
+   static {
+      if (ENABLED) {
+         try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+         }
+         catch (JMException e) {
+            e.printStackTrace();
+         }
+      }
+   }
+
+   private Metrics() {
+   }
+
+   /**
+    * Begins timing a pipeline stage, with a {@link ProcessEvent}.
+    * 
+    * @param timer
+    * @param stage The name of the component, for the event.
+    * @return The span to end, which does nothing if collection is off.
+    */
+   public static Span begin(Timer timer, String stage) {
+      if (!ENABLED) {
+         return DISABLED;
+      }
+      ProcessEvent event = new ProcessEvent();
+      event.stage = stage;
+      event.begin();
+      return new Span(timer, event, null);
+   }
+
+   /**
+    * Counts a pair and begins timing it, with an {@link AlignmentEvent} if it has at least
+    * {@link #LARGE_ALIGNMENT_CELLS} cells. Callers should only call this if {@link #ENABLED}.
+    * 
+    * @param firstLength
+    * @param secondLength
+    * @param traceback True for an alignment, false for a score.
+    * @return The span to end.
+    */
+   public static Span beginPair(int firstLength, int secondLength, boolean traceback) {
+      long cells = (long) firstLength * secondLength;
+      Counter.ALIGNMENTS.add(1);
+      Counter.CELLS.add(cells);
+
+      AlignmentEvent event = null;
+      if (cells >= LARGE_ALIGNMENT_CELLS) {
+         event = new AlignmentEvent();
+         event.firstLength = firstLength;
+         event.secondLength = secondLength;
+         event.cells = cells;
+         event.traceback = traceback;
+         event.begin();
+      }
+      return new Span(Timer.PAIR, null, event);
+   }
+
+   /**
+    * 
+    * @return Cells per nanosecond (i.e. billions of cell updates per second) of a single thread, over the time spent
+    *         in the aligner.
+    */
+   public static double getGcups() {
+      long nanos = Timer.PAIR.histogram.getTotalNanos();
+      return nanos == 0 ? 0 : (double) Counter.CELLS.get() / nanos;
+   }
+
+   /**
+    * 
+    * @return Cells per nanosecond over the time spent in the alignment stage, i.e. across all alignment threads.
+    */
+   public static double getStageGcups() {
+      long nanos = Timer.ALIGNMENT.histogram.getTotalNanos();
+      return nanos == 0 ? 0 : (double) Counter.CELLS.get() / nanos;
+   }
+
+   /**
+    * 
+    * @return Bases translated per second of the translation stage.
+    */
+   public static double getBasesPerSecond() {
+      long nanos = Timer.TRANSLATION.histogram.getTotalNanos();
+      return nanos == 0 ? 0 : 1e9 * Counter.BASES_TRANSLATED.get() / nanos;
+   }
+
+   /**
+    * Clears all counters and histograms.
+    */
+   public static void reset() {
+      for (Counter counter : Counter.values()) {
+         counter.adder.reset();
+      }
+      for (Timer timer : Timer.values()) {
+         timer.histogram.reset();
+      }
+   }
+
+   /**
+    * 
+    * @return A summary of the counters, the rates and the latency of each stage, one per line.
+    */
+   public static String report() {
+      StringBuilder report = new StringBuilder("=== Metrics ===\n");
+      for (Counter counter : Counter.values()) {
+         report.append(String.format(Locale.ROOT, "%-20s %,d%n", counter.name().toLowerCase(Locale.ROOT),
+               counter.get()));
+      }
+      report.append(String.format(Locale.ROOT, "%-20s %,.0f%n", "bases/s", getBasesPerSecond()));
+      report.append(String.format(Locale.ROOT, "%-20s %.3f%n", "gcups (per thread)", getGcups()));
+      report.append(String.format(Locale.ROOT, "%-20s %.3f%n", "gcups (stage)", getStageGcups()));
+      report.append(String.format(Locale.ROOT, "%-20s %10s %10s %10s %10s %10s%n", "timer (us)", "count", "total",
+            "p50", "p99", "max"));
+      for (Timer timer : Timer.values()) {
+         Histogram h = timer.histogram;
+         report.append(String.format(Locale.ROOT, "%-20s %10d %10d %10d %10d %10d%n",
+               timer.name().toLowerCase(Locale.ROOT), h.getCount(), h.getTotalNanos() / 1000,
+               h.getPercentileNanos(0.5) / 1000, h.getPercentileNanos(0.99) / 1000, h.getMaxNanos() / 1000));
+      }
+      return report.toString();
+   }
+
+   private static class Bean implements MetricsMXBean {
+
+      @Override
+      public long getSequencesTranslated() {
+         return Counter.SEQUENCES_TRANSLATED.get();
+      }
+
+      @Override
+      public long getBasesTranslated() {
+         return Counter.BASES_TRANSLATED.get();
+      }
+
+      @Override
+      public long getAlignments() {
+         return Counter.ALIGNMENTS.get();
+      }
+
+      @Override
+      public long getCells() {
+         return Counter.CELLS.get();
+      }
+
+      @Override
+      public long getBytesRead() {
+         return Counter.BYTES_READ.get();
+      }
+
+      @Override
+      public double getBasesPerSecond() {
+         return Metrics.getBasesPerSecond();
+      }
+
+      @Override
+      public double getGcups() {
+         return Metrics.getGcups();
+      }
+
+      @Override
+      public double getStageGcups() {
+         return Metrics.getStageGcups();
+      }
+
+      @Override
+      public String getReport() {
+         return report();
+      }
+
+      @Override
+      public void reset() {
+         Metrics.reset();
+      }
+   }
+}
@@ -0,0 +1,36 @@
+package com.example.rob.bio_uima.metrics;
+
+/**
+ * JMX view of the {@link Metrics}, registered as {@value Metrics#OBJECT_NAME} when collection is on.
+ */
+public interface MetricsMXBean {
+
+   long getSequencesTranslated();
+
+   long getBasesTranslated();
+
+   long getAlignments();
+
+   long getCells();
+
+   long getBytesRead();
+
+   double getBasesPerSecond();
+
+   /**
+    * 
+    * @return See {@link Metrics#getGcups()}.
+    */
+   double getGcups();
+
+   /**
+    * 
+    * @return See {@link Metrics#getStageGcups()}.
+    */
+   double getStageGcups();
+
+   String getReport();
+
+   void reset();
+
+}
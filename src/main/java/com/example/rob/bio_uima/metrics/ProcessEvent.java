@@ -0,0 +1,25 @@
+package com.example.rob.bio_uima.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one pipeline stage over one CAS, e.g. an annotator's <code>process</code> call.
+ */
+@Name("com.example.rob.bio_uima.Process")
+@Label("Process")
+@Category("BioUIMA")
+@Description("A pipeline stage processing one CAS")
+public class ProcessEvent extends Event {
+
+   @Label("Stage")
+   String stage;
+
+   @Label("Items")
+   @Description("Sequences, proteins or alignments handled")
+   long   items;
+
+}
@@ -0,0 +1,97 @@
+package com.example.rob.bio_uima.uima;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.uima.cas.ByteArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.collection.CasConsumer_ImplBase;
+import org.apache.uima.resource.ResourceProcessException;
+
+import com.example.rob.bio_uima.core.Alignment;
+import com.example.rob.bio_uima.metrics.Metrics;
+
+/**
+ * Prints the sequence names and the pair-wise alignments (or alignment scores, in score-only mode) of each CAS to
+ * standard output.
+ */
+public class AlignmentPrinter extends CasConsumer_ImplBase {
+
+   @Override
+   public void processCas(CAS cas) throws ResourceProcessException {
+      Metrics.Span span = Metrics.begin(Metrics.Timer.OUTPUT, getClass().getSimpleName());
+      printNames(cas.getView(CasView.DNA));
+      span.end(printAlignments(cas.getView(CasView.ALIGNMENTS)));
+   }
+
+   /**
+    * Prints the name of each input sequence, in the order in which they are aligned.
+    * 
+    * @param dnaView
+    */
+   private static void printNames(CAS dnaView) {
+      Type sequenceType = dnaView.getTypeSystem().getType(BioTypes.DNA_SEQUENCE);
+      Feature name = sequenceType.getFeatureByBaseName(BioTypes.NAME);
+
+      System.out.println("=== Sequences ===");
+      FSIterator<AnnotationFS> sequences = dnaView.getAnnotationIndex(sequenceType).iterator();
+      for (int i = 1; sequences.hasNext(); i++) {
+         System.out.println(i + ": " + sequences.next().getStringValue(name));
+      }
+      System.out.println();
+   }
+
+   /**
+    * Prints the each pair-wise alignment, or its score, to standard output. The gapped rows are rendered from the
+    * proteins and the edit operations.
+    * 
+    * @param alignmentView
+    * @return The number of alignments printed.
+    */
+   private static int printAlignments(CAS alignmentView) {
+      FSIterator<FeatureStructure> alignments = alignmentView.getIndexRepository().getIndex(BioTypes.ALIGNMENT_INDEX)
+            .iterator();
+      int i = 0;
+      while (alignments.hasNext()) {
+         FeatureStructure alignment = alignments.next();
+         i++;
+         System.out.println("=== Alignment " + i + " ===");
+         System.out.println(render(alignment));
+         System.out.println();
+      }
+      return i;
+   }
+
+   /**
+    * Renders a {@link BioTypes#PAIRWISE_ALIGNMENT} as its two gapped rows, or as its score in score-only mode.
+    * 
+    * @param alignment
+    * @return The rows, separated by a line break, or the score line.
+    */
+   static String render(FeatureStructure alignment) {
+      TypeSystem types = alignment.getCAS().getTypeSystem();
+      Type alignmentType = types.getType(BioTypes.PAIRWISE_ALIGNMENT);
+      Feature first = alignmentType.getFeatureByBaseName(BioTypes.FIRST);
+      Feature second = alignmentType.getFeatureByBaseName(BioTypes.SECOND);
+      Feature score = alignmentType.getFeatureByBaseName(BioTypes.SCORE);
+      Feature cigar = alignmentType.getFeatureByBaseName(BioTypes.CIGAR);
+      Feature residues = types.getType(BioTypes.PROTEIN_ORF).getFeatureByBaseName(BioTypes.RESIDUES);
+
+      String ops = alignment.getStringValue(cigar);
+      if (ops == null) {
+         return "Score: " + alignment.getIntValue(score);
+      }
+      Alignment path = Alignment.fromCigar(ops, protein(alignment.getFeatureValue(first), residues),
+            protein(alignment.getFeatureValue(second), residues), alignment.getIntValue(score));
+      return path.getFirstRow() + "\n" + path.getSecondRow();
+   }
+
+   private static String protein(FeatureStructure orf, Feature residues) {
+      return new String(((ByteArrayFS) orf.getFeatureValue(residues)).toArray(), StandardCharsets.US_ASCII);
+   }
+}
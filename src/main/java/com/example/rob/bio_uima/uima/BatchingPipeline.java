@@ -0,0 +1,406 @@
+package com.example.rob.bio_uima.uima;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.ByteArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.CasCreationUtils;
+
+import com.example.rob.bio_uima.core.FastaRecord;
+import com.example.rob.bio_uima.core.PackedDnaSequence;
+import com.example.rob.bio_uima.core.SequenceAligner;
+import com.example.rob.bio_uima.core.SequenceSearcher;
+
+/**
+ * Keeps warm copies of the translation and alignment annotators, each copy with its own CAS, and processes the
+ * requests of concurrent clients in shared CASes. A worker thread per copy takes the next request off a queue together
+ * with the requests queued behind it (up to the maximum batch size), puts the sequences of all of them in one CAS,
+ * translates them in one pass and then aligns the pairs of all of them in one pass. Requests therefore batch up only
+ * while every worker is busy, and a request arriving at an idle pipeline is processed at once.
+ * 
+ * <p>
+ * The pairs of each request are listed in the {@link CasView#PAIRS} view, so proteins of different requests are never
+ * aligned with each other, and the response to a request is what the command line would print for the same input.
+ * Searches are not run by the alignment annotator: its search mode takes the query names from its configuration,
+ * which is read once and shared by every request of a batch. Each search is instead run on the translated proteins
+ * with a {@link SequenceSearcher}, which scores candidates without traceback and abandons those that cannot make the
+ * best hits. The methods are thread-safe and block until the response is ready.
+ */
+public class BatchingPipeline implements Closeable {
+
+   private final BlockingQueue<Request> queue   = new LinkedBlockingQueue<Request>();
+   private final List<Worker>           workers = new ArrayList<Worker>();
+   private final int                    maxBatchSize;
+   private volatile boolean             closed;
+
+   /**
+    * 
+    * @param workerCount The number of warm copies of the annotators, and of CASes processed at the same time.
+    * @param maxBatchSize The largest number of requests processed in one CAS.
+    * @throws ResourceInitializationException If an annotator cannot be initialized.
+    */
+   public BatchingPipeline(int workerCount, int maxBatchSize) throws ResourceInitializationException {
+      if (workerCount < 1 || maxBatchSize < 1) {
+         throw new IllegalArgumentException("Number of workers and batch size must be at least 1.");
+      }
+      this.maxBatchSize = maxBatchSize;
+      try {
+         for (int w = 0; w < workerCount; w++) {
+            workers.add(new Worker(UIMAFramework.produceAnalysisEngine(BioDescriptors.proteinSequence()),
+                  UIMAFramework.produceAnalysisEngine(BioDescriptors.sequenceAlignment()), w));
+         }
+      }
+      catch (ResourceInitializationException e) {
+         close();
+         throw e;
+      }
+      for (Worker worker : workers) {
+         worker.start();
+      }
+   }
+
+   /**
+    * Translates sequences.
+    * 
+    * @param records
+    * @return The longest ORF of each sequence, as a FASTA record named after it.
+    * @throws IllegalArgumentException If a sequence is empty or not made of nucleotides.
+    * @throws ExecutionException If the batch the request was in failed.
+    * @throws InterruptedException
+    */
+   public String translate(List<FastaRecord> records) throws ExecutionException, InterruptedException {
+      return submit(new Request(Kind.TRANSLATE, records, Collections.<String> emptySet(), 0));
+   }
+
+   /**
+    * Aligns every pair of sequences, as {@link BioUimaMain} does.
+    * 
+    * @param records
+    * @return The names of the sequences followed by the alignments, as printed by {@link AlignmentPrinter}.
+    * @throws IllegalArgumentException If a sequence is empty or not made of nucleotides.
+    * @throws ExecutionException If the batch the request was in failed.
+    * @throws InterruptedException
+    */
+   public String align(List<FastaRecord> records) throws ExecutionException, InterruptedException {
+      return submit(new Request(Kind.ALIGN, records, Collections.<String> emptySet(), 0));
+   }
+
+   /**
+    * Searches the named sequences against all the other ones.
+    * 
+    * @param records
+    * @param queryNames The names of the query sequences.
+    * @param maxHits The number of hits to report for each query.
+    * @return One tab-separated line (query, hit, score) per hit, best first for each query.
+    * @throws IllegalArgumentException If no sequence has a query name, or if a sequence is empty or not made of
+    *            nucleotides.
+    * @throws ExecutionException If the batch the request was in failed.
+    * @throws InterruptedException
+    */
+   public String search(List<FastaRecord> records, Set<String> queryNames, int maxHits) throws ExecutionException,
+         InterruptedException {
+      boolean found = false;
+      for (FastaRecord record : records) {
+         found |= queryNames.contains(record.getId());
+      }
+      if (!found || maxHits < 1) {
+         throw new IllegalArgumentException("No query sequence, or fewer than one hit requested.");
+      }
+      return submit(new Request(Kind.SEARCH, records, queryNames, maxHits));
+   }
+
+   private String submit(Request request) throws ExecutionException, InterruptedException {
+      if (closed) {
+         throw new IllegalStateException("The pipeline is closed.");
+      }
+      if (request.records.isEmpty()) {
+         return "";
+      }
+      // Bad input has to be refused here: in a batch it would fail the requests of the other clients too.
+      for (FastaRecord record : request.records) {
+         try {
+            PackedDnaSequence.pack(record.getSequence());
+         }
+         catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Sequence " + record.getId() + ": " + e.getMessage(), e);
+         }
+      }
+      queue.add(request);
+      // If the pipeline was closed meanwhile, close() may have drained the queue before the request was added.
+      if (closed && queue.remove(request)) {
+         throw new IllegalStateException("The pipeline is closed.");
+      }
+      return request.response.get();
+   }
+
+   /**
+    * Stops the workers, fails the requests still queued and destroys the annotators.
+    */
+   @Override
+   public void close() {
+      closed = true;
+      for (Worker worker : workers) {
+         worker.interrupt();
+      }
+      for (Worker worker : workers) {
+         try {
+            worker.join();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         worker.translator.destroy();
+         worker.aligner.destroy();
+      }
+      Request request;
+      while ((request = queue.poll()) != null) {
+         request.response.completeExceptionally(new IllegalStateException("The pipeline is closed."));
+      }
+   }
+
+   private enum Kind {
+      TRANSLATE, ALIGN, SEARCH
+   }
+
+   /**
+    * One client request and its response. The offset and the response text are filled in by the worker that
+    * processes the batch the request is in.
+    */
+   private static final class Request {
+
+      final Kind                      kind;
+      final List<FastaRecord>         records;
+      final Set<String>               queryNames;
+      final int                       maxHits;
+      final CompletableFuture<String> response = new CompletableFuture<String>();
+
+      /**
+       * Position of the first sequence of the request in the batch CAS.
+       */
+      int                             offset;
+      StringBuilder                   out;
+      int                             alignmentCount;
+
+      Request(Kind kind, List<FastaRecord> records, Set<String> queryNames, int maxHits) {
+         this.kind = kind;
+         this.records = records;
+         this.queryNames = queryNames;
+         this.maxHits = maxHits;
+      }
+
+      boolean isQuery(int k) {
+         return queryNames.contains(records.get(k).getId());
+      }
+   }
+
+   /**
+    * Processes batches of requests on its own copy of the annotators and its own CAS.
+    */
+   private final class Worker extends Thread {
+
+      final AnalysisEngine          translator;
+      final AnalysisEngine          aligner;
+      private final CAS             cas;
+
+      /**
+       * The costs of the alignment annotator, for searches.
+       */
+      private final SequenceAligner costs;
+
+      Worker(AnalysisEngine translator, AnalysisEngine aligner, int number) throws ResourceInitializationException {
+         super("bio-pipeline-" + number);
+         setDaemon(true);
+         this.translator = translator;
+         this.aligner = aligner;
+         this.cas = CasCreationUtils.createCas(Arrays.asList(translator.getAnalysisEngineMetaData(),
+               aligner.getAnalysisEngineMetaData()));
+         this.costs = new SequenceAligner(intParam(SequenceAlignmentAnnotator.PARAM_INSERTION_COST),
+               intParam(SequenceAlignmentAnnotator.PARAM_DELETION_COST),
+               intParam(SequenceAlignmentAnnotator.PARAM_MATCH_COST),
+               intParam(SequenceAlignmentAnnotator.PARAM_MISMATCH_COST));
+      }
+
+      private int intParam(String name) {
+         return ((Integer) aligner.getConfigParameterValue(name)).intValue();
+      }
+
+      @Override
+      public void run() {
+         List<Request> batch = new ArrayList<Request>();
+         while (!closed) {
+            try {
+               batch.add(queue.take());
+            }
+            catch (InterruptedException e) {
+               break;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            try {
+               process(batch);
+               for (Request request : batch) {
+                  request.response.complete(request.out.toString());
+               }
+            }
+            catch (Throwable e) {
+               // Fail this batch only; the worker carries on with the next one.
+               for (Request request : batch) {
+                  request.response.completeExceptionally(e);
+               }
+            }
+            batch.clear();
+         }
+      }
+
+      private void process(List<Request> batch) throws AnalysisEngineProcessException {
+         cas.reset();
+         CAS dnaView = cas.createView(CasView.DNA);
+         TypeSystem types = cas.getTypeSystem();
+         Type sequenceType = types.getType(BioTypes.DNA_SEQUENCE);
+         Feature name = sequenceType.getFeatureByBaseName(BioTypes.NAME);
+
+         // The sequences of all the requests, laid out as the FASTA collection reader does.
+         List<FastaRecord> records = new ArrayList<FastaRecord>();
+         StringBuilder dna = new StringBuilder();
+         for (Request request : batch) {
+            request.offset = records.size();
+            for (FastaRecord record : request.records) {
+               records.add(record);
+               dna.append(record.getSequence()).append(" ");
+            }
+         }
+         dnaView.setDocumentText(dna.toString());
+         int begin = 0;
+         for (FastaRecord record : records) {
+            int end = begin + record.getSequence().length();
+            AnnotationFS sequence = dnaView.createAnnotation(sequenceType, begin, end);
+            sequence.setStringValue(name, record.getId());
+            dnaView.addFsToIndexes(sequence);
+            begin = end + 1;
+         }
+         translator.process(cas);
+
+         // One protein per sequence, in the same order.
+         List<AnnotationFS> proteins = new ArrayList<AnnotationFS>(records.size());
+         FSIterator<AnnotationFS> orfs = dnaView.getAnnotationIndex(types.getType(BioTypes.PROTEIN_ORF)).iterator();
+         while (orfs.hasNext()) {
+            proteins.add(orfs.next());
+         }
+
+         CAS pairsView = null;
+         Request[] owners = new Request[records.size()];
+         for (Request request : batch) {
+            int n = request.records.size();
+            Arrays.fill(owners, request.offset, request.offset + n, request);
+            request.out = new StringBuilder();
+            if (request.kind == Kind.TRANSLATE) {
+               translated(request, proteins);
+               continue;
+            }
+            if (request.kind == Kind.SEARCH) {
+               searched(request, proteins);
+               continue;
+            }
+            if (pairsView == null) {
+               pairsView = cas.createView(CasView.PAIRS);
+            }
+            for (int i = 0; i < n; i++) {
+               for (int j = i + 1; j < n; j++) {
+                  requestPair(pairsView, proteins, request.offset + i, request.offset + j);
+               }
+            }
+            request.out.append("=== Sequences ===\n");
+            for (int i = 0; i < n; i++) {
+               request.out.append(i + 1).append(": ").append(request.records.get(i).getId()).append("\n");
+            }
+            request.out.append("\n");
+         }
+         if (pairsView == null) {
+            return;
+         }
+         aligner.process(cas);
+
+         // The sorted index lists the alignments of each request in the order a CAS of its own would.
+         CAS alignmentView = cas.getView(CasView.ALIGNMENTS);
+         Type alignmentType = types.getType(BioTypes.PAIRWISE_ALIGNMENT);
+         Feature firstIndex = alignmentType.getFeatureByBaseName(BioTypes.FIRST_INDEX);
+         FSIterator<FeatureStructure> alignments = alignmentView.getIndexRepository()
+               .getIndex(BioTypes.ALIGNMENT_INDEX).iterator();
+         while (alignments.hasNext()) {
+            FeatureStructure alignment = alignments.next();
+            Request request = owners[alignment.getIntValue(firstIndex)];
+            request.out.append("=== Alignment ").append(++request.alignmentCount).append(" ===\n");
+            request.out.append(AlignmentPrinter.render(alignment)).append("\n\n");
+         }
+      }
+
+      private void requestPair(CAS pairsView, List<AnnotationFS> proteins, int i, int j) {
+         Type alignmentType = pairsView.getTypeSystem().getType(BioTypes.PAIRWISE_ALIGNMENT);
+         FeatureStructure pair = pairsView.createFS(alignmentType);
+         pair.setFeatureValue(alignmentType.getFeatureByBaseName(BioTypes.FIRST), proteins.get(i));
+         pair.setFeatureValue(alignmentType.getFeatureByBaseName(BioTypes.SECOND), proteins.get(j));
+         pair.setIntValue(alignmentType.getFeatureByBaseName(BioTypes.FIRST_INDEX), i);
+         pair.setIntValue(alignmentType.getFeatureByBaseName(BioTypes.SECOND_INDEX), j);
+         pairsView.addFsToIndexes(pair);
+      }
+
+      private void translated(Request request, List<AnnotationFS> proteins) {
+         for (int i = 0; i < request.records.size(); i++) {
+            request.out.append(">").append(request.records.get(i).getId()).append("\n")
+                  .append(residues(proteins.get(request.offset + i))).append("\n");
+         }
+      }
+
+      private String residues(AnnotationFS protein) {
+         Feature residues = cas.getTypeSystem().getType(BioTypes.PROTEIN_ORF).getFeatureByBaseName(BioTypes.RESIDUES);
+         return new String(((ByteArrayFS) protein.getFeatureValue(residues)).toArray(), StandardCharsets.US_ASCII);
+      }
+
+      /**
+       * Searches each query of a request against its other sequences and writes the best hits: by query, then by
+       * decreasing score, then by position.
+       */
+      private void searched(final Request request, List<AnnotationFS> proteins) {
+         final List<Integer> positions = new ArrayList<Integer>();
+         List<String> database = new ArrayList<String>();
+         for (int k = 0; k < request.records.size(); k++) {
+            if (!request.isQuery(k)) {
+               positions.add(k);
+               database.add(residues(proteins.get(request.offset + k)));
+            }
+         }
+         SequenceSearcher searcher = new SequenceSearcher(costs, request.maxHits);
+         for (int q = 0; q < request.records.size(); q++) {
+            if (request.isQuery(q)) {
+               final String query = request.records.get(q).getId();
+               searcher.search(residues(proteins.get(request.offset + q)), database, new SequenceSearcher.Handler() {
+                  @Override
+                  public void hit(int rank, int index, int score) {
+                     request.out.append(query).append("\t").append(request.records.get(positions.get(index)).getId())
+                           .append("\t").append(score).append("\n");
+                  }
+               });
+            }
+         }
+      }
+   }
+}
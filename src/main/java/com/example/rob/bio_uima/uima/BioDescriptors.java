@@ -0,0 +1,195 @@
+package com.example.rob.bio_uima.uima;
+
+import org.apache.uima.ResourceSpecifierFactory;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CasConsumerDescription;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.resource.metadata.ConfigurationParameter;
+import org.apache.uima.resource.metadata.FsIndexCollection;
+import org.apache.uima.resource.metadata.FsIndexDescription;
+import org.apache.uima.resource.metadata.FsIndexKeyDescription;
+import org.apache.uima.resource.metadata.OperationalProperties;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+
+/**
+ * Builds, in code, the same descriptions as <code>desc/BioTypeSystem.xml</code>, <code>desc/BioDescriptor.xml</code>
+ * and the reader and printer descriptors, so that a short run does not pay for starting the XML parser and reading
+ * descriptors from the working directory. The XML descriptors remain the documented, editable form; a change to one
+ * of them has to be made here as well.
+ */
+public final class BioDescriptors {
+
+   private static final ResourceSpecifierFactory FACTORY = UIMAFramework.getResourceSpecifierFactory();
+
+   private BioDescriptors() {
+   }
+
+   /**
+    * 
+    * @return The type system of <code>desc/BioTypeSystem.xml</code>.
+    */
+   public static TypeSystemDescription typeSystem() {
+      TypeSystemDescription types = FACTORY.createTypeSystemDescription();
+      types.setName("BioTypeSystem");
+      types.setVersion("1.0");
+
+      TypeDescription dnaSequence = types.addType(BioTypes.DNA_SEQUENCE, "", CAS.TYPE_NAME_ANNOTATION);
+      dnaSequence.addFeature(BioTypes.NAME, "", CAS.TYPE_NAME_STRING);
+
+      TypeDescription proteinOrf = types.addType(BioTypes.PROTEIN_ORF, "", CAS.TYPE_NAME_ANNOTATION);
+      proteinOrf.addFeature(BioTypes.SEQUENCE, "", BioTypes.DNA_SEQUENCE);
+      proteinOrf.addFeature(BioTypes.RESIDUES, "", CAS.TYPE_NAME_BYTE_ARRAY);
+
+      TypeDescription alignment = types.addType(BioTypes.PAIRWISE_ALIGNMENT, "", CAS.TYPE_NAME_TOP);
+      alignment.addFeature(BioTypes.FIRST, "", BioTypes.PROTEIN_ORF);
+      alignment.addFeature(BioTypes.SECOND, "", BioTypes.PROTEIN_ORF);
+      alignment.addFeature(BioTypes.FIRST_INDEX, "", CAS.TYPE_NAME_INTEGER);
+      alignment.addFeature(BioTypes.SECOND_INDEX, "", CAS.TYPE_NAME_INTEGER);
+      alignment.addFeature(BioTypes.SCORE, "", CAS.TYPE_NAME_INTEGER);
+      alignment.addFeature(BioTypes.CIGAR, "", CAS.TYPE_NAME_STRING);
+      return types;
+   }
+
+   /**
+    * 
+    * @return The translation annotator of <code>desc/ProteinSequenceDescriptor.xml</code>.
+    */
+   public static AnalysisEngineDescription proteinSequence() {
+      AnalysisEngineDescription desc = primitive(ProteinSequenceAnnotator.class, "ProteinTranslatorDescriptor");
+      ProcessingResourceMetaData metaData = desc.getAnalysisEngineMetaData();
+      param(metaData, ProteinSequenceAnnotator.PARAM_CHUNK_LENGTH, ConfigurationParameter.TYPE_INTEGER, false,
+            Integer.valueOf(1048576));
+      return desc;
+   }
+
+   /**
+    * 
+    * @return The alignment annotator of <code>desc/SequenceAlignmentDescriptor.xml</code>, with its sorted index of
+    *         alignments.
+    */
+   public static AnalysisEngineDescription sequenceAlignment() {
+      AnalysisEngineDescription desc = primitive(SequenceAlignmentAnnotator.class, "SequenceAlignmentDescriptor");
+      ProcessingResourceMetaData metaData = desc.getAnalysisEngineMetaData();
+      param(metaData, SequenceAlignmentAnnotator.PARAM_SCORE_ONLY, ConfigurationParameter.TYPE_BOOLEAN, false,
+            Boolean.FALSE);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_INSERTION_COST, -2);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_DELETION_COST, -2);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_MATCH_COST, 2);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_MISMATCH_COST, -1);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_MEMORY_BUDGET, 16);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_HIRSCHBERG_CUTOFF, 4096);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_WORKERS, 0);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_KMER_LENGTH, 3);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_MIN_SHARED_KMERS, 0);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_MAX_KMER_OCCURRENCES, 0);
+      param(metaData, SequenceAlignmentAnnotator.PARAM_QUERY_NAMES, ConfigurationParameter.TYPE_STRING, true,
+            new String[0]);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_MAX_HITS, 50);
+      intParam(metaData, SequenceAlignmentAnnotator.PARAM_CACHE_SIZE, 0);
+      param(metaData, SequenceAlignmentAnnotator.PARAM_CACHE_FILE, ConfigurationParameter.TYPE_STRING, false, "");
+
+      FsIndexKeyDescription firstIndex = FACTORY.createFsIndexKeyDescription();
+      firstIndex.setFeatureName(BioTypes.FIRST_INDEX);
+      firstIndex.setComparator(FsIndexKeyDescription.STANDARD_COMPARE);
+      FsIndexKeyDescription secondIndex = FACTORY.createFsIndexKeyDescription();
+      secondIndex.setFeatureName(BioTypes.SECOND_INDEX);
+      secondIndex.setComparator(FsIndexKeyDescription.STANDARD_COMPARE);
+      FsIndexDescription index = FACTORY.createFsIndexDescription();
+      index.setLabel(BioTypes.ALIGNMENT_INDEX);
+      index.setTypeName(BioTypes.PAIRWISE_ALIGNMENT);
+      index.setKind(FsIndexDescription.KIND_SORTED);
+      index.setKeys(new FsIndexKeyDescription[] { firstIndex, secondIndex });
+      FsIndexCollection indexes = FACTORY.createFsIndexCollection();
+      indexes.addFsIndex(index);
+      metaData.setFsIndexCollection(indexes);
+      return desc;
+   }
+
+   /**
+    * 
+    * @return The aggregate of <code>desc/BioDescriptor.xml</code>: translation, then alignment.
+    */
+   public static AnalysisEngineDescription bio() {
+      AnalysisEngineDescription desc = FACTORY.createAnalysisEngineDescription();
+      desc.setPrimitive(false);
+      desc.getDelegateAnalysisEngineSpecifiersWithImports().put("ProteinSequenceDescriptor", proteinSequence());
+      desc.getDelegateAnalysisEngineSpecifiersWithImports().put("SequenceAlignmentDescriptor", sequenceAlignment());
+      FixedFlow flow = FACTORY.createFixedFlow();
+      flow.setFixedFlow(new String[] { "ProteinSequenceDescriptor", "SequenceAlignmentDescriptor" });
+      desc.getAnalysisEngineMetaData().setFlowConstraints(flow);
+      metaData(desc.getAnalysisEngineMetaData(), "BioDescriptor", true, true);
+      return desc;
+   }
+
+   /**
+    * 
+    * @param inputFile The path of the FASTA file, e.g. "data/dna.txt".
+    * @param batchSize The number of sequences per CAS (0 for all of them).
+    * @return The reader of <code>desc/FastaCollectionReaderDescriptor.xml</code>.
+    */
+   public static CollectionReaderDescription fastaCollectionReader(String inputFile, int batchSize) {
+      CollectionReaderDescription desc = FACTORY.createCollectionReaderDescription();
+      desc.setImplementationName(FastaCollectionReader.class.getName());
+      ProcessingResourceMetaData metaData = desc.getCollectionReaderMetaData();
+      metaData(metaData, "FastaCollectionReaderDescriptor", true, false);
+      metaData.setTypeSystem(typeSystem());
+      param(metaData, FastaCollectionReader.PARAM_INPUT_FILE, ConfigurationParameter.TYPE_STRING, false, inputFile)
+            .setMandatory(true);
+      intParam(metaData, FastaCollectionReader.PARAM_BATCH_SIZE, batchSize);
+      return desc;
+   }
+
+   /**
+    * 
+    * @return The printer of <code>desc/AlignmentPrinterDescriptor.xml</code>.
+    */
+   public static CasConsumerDescription alignmentPrinter() {
+      CasConsumerDescription desc = FACTORY.createCasConsumerDescription();
+      desc.setImplementationName(AlignmentPrinter.class.getName());
+      ProcessingResourceMetaData metaData = desc.getCasConsumerMetaData();
+      metaData(metaData, "AlignmentPrinterDescriptor", false, false);
+      metaData.setTypeSystem(typeSystem());
+      return desc;
+   }
+
+   private static AnalysisEngineDescription primitive(Class<?> annotator, String name) {
+      AnalysisEngineDescription desc = FACTORY.createAnalysisEngineDescription();
+      desc.setPrimitive(true);
+      desc.setAnnotatorImplementationName(annotator.getName());
+      metaData(desc.getAnalysisEngineMetaData(), name, true, true);
+      desc.getAnalysisEngineMetaData().setTypeSystem(typeSystem());
+      return desc;
+   }
+
+   private static void metaData(ProcessingResourceMetaData metaData, String name, boolean modifiesCas,
+         boolean multipleDeploymentAllowed) {
+      metaData.setName(name);
+      metaData.setVersion("1.0");
+      OperationalProperties properties = FACTORY.createOperationalProperties();
+      properties.setModifiesCas(modifiesCas);
+      properties.setMultipleDeploymentAllowed(multipleDeploymentAllowed);
+      properties.setOutputsNewCASes(false);
+      metaData.setOperationalProperties(properties);
+   }
+
+   private static void intParam(ProcessingResourceMetaData metaData, String name, int value) {
+      param(metaData, name, ConfigurationParameter.TYPE_INTEGER, false, Integer.valueOf(value));
+   }
+
+   private static ConfigurationParameter param(ProcessingResourceMetaData metaData, String name, String type,
+         boolean multiValued, Object value) {
+      ConfigurationParameter param = FACTORY.createConfigurationParameter();
+      param.setName(name);
+      param.setType(type);
+      param.setMultiValued(multiValued);
+      param.setMandatory(false);
+      metaData.getConfigurationParameterDeclarations().addConfigurationParameter(param);
+      metaData.getConfigurationParameterSettings().setParameterValue(name, value);
+      return param;
+   }
+}
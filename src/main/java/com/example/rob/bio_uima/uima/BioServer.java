@@ -0,0 +1,230 @@
+package com.example.rob.bio_uima.uima;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.example.rob.bio_uima.core.FastaRecord;
+import com.example.rob.bio_uima.metrics.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the pipeline over a local HTTP API, so that the JVM and UIMA start-up is paid once rather than per run. The
+ * requests of concurrent clients are batched into shared CASes by a {@link BatchingPipeline}. Every endpoint takes
+ * FASTA sequences as the body of a POST and answers in plain text:
+ * <ul>
+ * <li><code>/translate</code>: the longest ORF of each sequence, as FASTA;</li>
+ * <li><code>/align</code>: every pair of sequences aligned, as printed by {@link BioUimaMain};</li>
+ * <li><code>/search?query=name[,name...]&amp;hits=n</code>: the best hits of the named sequences among the others,
+ * one tab-separated line each;</li>
+ * <li><code>/metrics</code> (GET, with metrics enabled): the {@link Metrics} report.</li>
+ * </ul>
+ * 
+ * <p>
+ * The server only listens on the loopback address. Connections are handled on virtual threads when the JVM has them
+ * (Java 21 and later), and on a cached thread pool otherwise.
+ * 
+ * <p>
+ * Usage: <code>BioServer [port [workers [maxBatchSize]]]</code>.
+ */
+public class BioServer {
+
+   public static final int DEFAULT_PORT           = 8080;
+   public static final int DEFAULT_WORKERS        = 2;
+   public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+   public static final int DEFAULT_MAX_HITS       = 50;
+
+   public static void main(String[] args) throws Exception {
+      int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+      int workers = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WORKERS;
+      int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_BATCH_SIZE;
+
+      final BatchingPipeline pipeline = new BatchingPipeline(workers, maxBatchSize);
+      final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+      final ExecutorService connections = connectionExecutor();
+      server.setExecutor(connections);
+
+      server.createContext("/translate", new PipelineHandler() {
+         @Override
+         String respond(List<FastaRecord> records, Map<String, String> params) throws ExecutionException,
+               InterruptedException {
+            return pipeline.translate(records);
+         }
+      });
+      server.createContext("/align", new PipelineHandler() {
+         @Override
+         String respond(List<FastaRecord> records, Map<String, String> params) throws ExecutionException,
+               InterruptedException {
+            return pipeline.align(records);
+         }
+      });
+      server.createContext("/search", new PipelineHandler() {
+         @Override
+         String respond(List<FastaRecord> records, Map<String, String> params) throws ExecutionException,
+               InterruptedException {
+            String query = params.get("query");
+            if (query == null) {
+               throw new IllegalArgumentException("Missing query parameter.");
+            }
+            String hits = params.get("hits");
+            return pipeline.search(records, new HashSet<String>(Arrays.asList(query.split(","))),
+                  hits != null ? Integer.parseInt(hits) : DEFAULT_MAX_HITS);
+         }
+      });
+      server.createContext("/metrics", new HttpHandler() {
+         @Override
+         public void handle(HttpExchange exchange) throws IOException {
+            if (Metrics.ENABLED) {
+               send(exchange, 200, Metrics.report());
+            }
+            else {
+               send(exchange, 404, "Metrics are disabled; start with -Dbio_uima.metrics=true.\n");
+            }
+         }
+      });
+
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+         @Override
+         public void run() {
+            server.stop(0);
+            connections.shutdown();
+            pipeline.close();
+         }
+      });
+      server.start();
+      System.err.println("Listening on http://" + server.getAddress().getHostString() + ":" + port + "/");
+   }
+
+   /**
+    * 
+    * @return A virtual thread per connection if the JVM supports it, otherwise a cached thread pool.
+    */
+   private static ExecutorService connectionExecutor() {
+      try {
+         return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      }
+      catch (ReflectiveOperationException e) {
+         return Executors.newCachedThreadPool();
+      }
+   }
+
+   /**
+    * Reads FASTA sequences, as {@link com.example.rob.bio_uima.core.FastaReader} does: header lines start with '>' or
+    * '#', and records without any residues are skipped.
+    * 
+    * @param text
+    * @return The records.
+    */
+   static List<FastaRecord> parseFasta(String text) {
+      List<FastaRecord> records = new ArrayList<FastaRecord>();
+      String id = "";
+      StringBuilder sequence = new StringBuilder();
+      for (String line : text.split("\r?\n")) {
+         line = line.trim();
+         if (line.startsWith(">") || line.startsWith("#")) {
+            if (sequence.length() > 0) {
+               records.add(new FastaRecord(id, sequence.toString()));
+            }
+            String[] words = line.substring(1).trim().split("\\s+", 2);
+            id = words[0];
+            sequence.setLength(0);
+         }
+         else {
+            sequence.append(line);
+         }
+      }
+      if (sequence.length() > 0) {
+         records.add(new FastaRecord(id, sequence.toString()));
+      }
+      return records;
+   }
+
+   private static void send(HttpExchange exchange, int status, String body) throws IOException {
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+      OutputStream out = exchange.getResponseBody();
+      try {
+         out.write(bytes);
+      }
+      finally {
+         out.close();
+      }
+   }
+
+   /**
+    * Parses the FASTA body and the query parameters of a POST and sends back the pipeline's response.
+    */
+   private abstract static class PipelineHandler implements HttpHandler {
+
+      abstract String respond(List<FastaRecord> records, Map<String, String> params) throws ExecutionException,
+            InterruptedException;
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+         try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+               send(exchange, 405, "Use POST with FASTA sequences as the body.\n");
+               return;
+            }
+            String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            send(exchange, 200, respond(parseFasta(body), params(exchange.getRequestURI().getRawQuery())));
+         }
+         catch (IllegalArgumentException e) {
+            send(exchange, 400, e.getMessage() + "\n");
+         }
+         catch (IllegalStateException e) {
+            send(exchange, 503, e.getMessage() + "\n");
+         }
+         catch (ExecutionException e) {
+            send(exchange, 500, e.getCause() + "\n");
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "Interrupted.\n");
+         }
+         finally {
+            exchange.close();
+         }
+      }
+
+      private static Map<String, String> params(String query) throws IOException {
+         Map<String, String> params = new HashMap<String, String>();
+         if (query != null) {
+            for (String param : query.split("&")) {
+               int eq = param.indexOf('=');
+               if (eq > 0) {
+                  params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+               }
+            }
+         }
+         return params;
+      }
+
+      private static byte[] readAll(InputStream in) throws IOException {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         for (int read; (read = in.read(buffer)) > 0;) {
+            bytes.write(buffer, 0, read);
+         }
+         return bytes.toByteArray();
+      }
+   }
+}
@@ -0,0 +1,36 @@
+package com.example.rob.bio_uima.uima;
+
+/**
+ * Names of the types, features and indexes declared in <code>desc/BioTypeSystem.xml</code>.
+ */
+public interface BioTypes {
+
+   /**
+    * A DNA sequence, covering its nucleotides in the {@link CasView#DNA} view.
+    */
+   public static String DNA_SEQUENCE       = "com.example.rob.bio_uima.types.DnaSequence";
+   public static String NAME               = "name";
+
+   /**
+    * The ORF a protein is translated from, covering its codons in the {@link CasView#DNA} view.
+    */
+   public static String PROTEIN_ORF        = "com.example.rob.bio_uima.types.ProteinOrf";
+   public static String SEQUENCE           = "sequence";
+   public static String RESIDUES           = "residues";
+
+   /**
+    * The alignment of two proteins, in the {@link CasView#ALIGNMENTS} view.
+    */
+   public static String PAIRWISE_ALIGNMENT = "com.example.rob.bio_uima.types.PairwiseAlignment";
+   public static String FIRST              = "first";
+   public static String SECOND             = "second";
+   public static String FIRST_INDEX        = "firstIndex";
+   public static String SECOND_INDEX       = "secondIndex";
+   public static String SCORE              = "score";
+   public static String CIGAR              = "cigar";
+
+   /**
+    * Sorted index of pairwise alignments, by first and then second protein.
+    */
+   public static String ALIGNMENT_INDEX    = "PairwiseAlignments";
+}
@@ -1,19 +1,42 @@
 package com.example.rob.bio_uima.uima;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
-import org.apache.uima.analysis_engine.AnalysisEngineDescription;
-import org.apache.uima.jcas.JCas;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CasConsumer;
+import org.apache.uima.collection.CollectionProcessingEngine;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.collection.EntityProcessStatus;
+import org.apache.uima.collection.StatusCallbackListener;
+import org.apache.uima.collection.metadata.CpeDescription;
+import org.apache.uima.util.CasCreationUtils;
 import org.apache.uima.util.XMLInputSource;
 
+import com.example.rob.bio_uima.metrics.Metrics;
+
 public class BioUimaMain {
 
-   private static final String INPUT_FILE = "data/dna.txt";
+   /**
+    * Collection Processing Engine that reads the FASTA input (see {@link FastaCollectionReader}), runs the
+    * translation and alignment pipeline over each CAS and prints the results (see {@link AlignmentPrinter}). The CAS
+    * pool size and the number of processing threads are set in the descriptor.
+    */
+   private static final String  CPE_DESCRIPTOR = "desc/BioCpe.xml";
+
+   /**
+    * With -Dbio_uima.direct=true, the pipeline is built from {@link BioDescriptors} and run on the main thread without
+    * a CPE, which starts faster for short runs; the first argument, if any, is the FASTA file to read.
+    */
+   private static final boolean DIRECT         = Boolean.getBoolean("bio_uima.direct");
+
+   /**
+    * FASTA file read in direct mode when none is given, as in <code>desc/FastaCollectionReaderDescriptor.xml</code>.
+    */
+   private static final String  INPUT_FILE     = "data/dna.txt";
 
    /**
     * The main entry point for the BioUIMA application.
@@ -54,64 +77,98 @@ public class BioUimaMain {
     * @param args
     */
    public static void main(String[] args) throws Exception {
-      // Create the AE.
-      XMLInputSource input = new XMLInputSource("desc/BioDescriptor.xml");
-      AnalysisEngineDescription desc = UIMAFramework.getXMLParser().parseAnalysisEngineDescription(input);
-      AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(desc);
-
-      // Init CAS.
-      JCas jCas = ae.newJCas();
-      String dna = readInputFile(INPUT_FILE);
-      JCas dnaView = jCas.createView(CasView.DNA);
-      dnaView.setDocumentText(dna);
-
-      // Process the CAS.
-      ae.process(jCas);
-
-      // Print results.
-      JCas alignment = jCas.getView(CasView.ALIGNMENTS);
-      String[] seqs = alignment.getDocumentText().split(" ");
-      printSeqs(seqs);
+      if (DIRECT) {
+         runDirect(args.length > 0 ? args[0] : INPUT_FILE);
+      }
+      else {
+         runCpe();
+      }
+
+      // With -Dbio_uima.metrics=true, summarize where the time went.
+      if (Metrics.ENABLED) {
+         System.err.print(Metrics.report());
+      }
    }
 
    /**
-    * Prints the each pair-wise alignment to standard output.
+    * Runs the reader, the pipeline and the printer of the CPE one CAS at a time on the calling thread.
     * 
-    * @param seqs
+    * @param inputFile
+    * @throws Exception
     */
-   private static void printSeqs(String[] seqs) {
-      int i = 0;
-      while (i < seqs.length) {
-         System.out.println("=== Alignment " + (i / 2 + 1) + " ===");
-         System.out.println(seqs[i++]);
-         System.out.println(seqs[i++]);
-         System.out.println();
+   private static void runDirect(String inputFile) throws Exception {
+      CollectionReader reader = UIMAFramework.produceCollectionReader(BioDescriptors.fastaCollectionReader(inputFile,
+            0));
+      AnalysisEngine pipeline = UIMAFramework.produceAnalysisEngine(BioDescriptors.bio());
+      CasConsumer printer = UIMAFramework.produceCasConsumer(BioDescriptors.alignmentPrinter());
+      try {
+         CAS cas = CasCreationUtils.createCas(Arrays.asList(reader.getProcessingResourceMetaData(),
+               pipeline.getAnalysisEngineMetaData(), printer.getProcessingResourceMetaData()));
+         while (reader.hasNext()) {
+            reader.getNext(cas);
+            pipeline.process(cas);
+            printer.processCas(cas);
+            cas.reset();
+         }
+      }
+      finally {
+         reader.close();
+         reader.destroy();
+         pipeline.destroy();
+         printer.destroy();
       }
    }
 
-   private static String readInputFile(String fileName) throws IOException {
-      FileInputStream fis = null;
-      BufferedReader br = null;
-      StringBuilder output = new StringBuilder();
+   private static void runCpe() throws Exception {
+      // Create the CPE.
+      XMLInputSource input = new XMLInputSource(CPE_DESCRIPTOR);
+      CpeDescription desc = UIMAFramework.getXMLParser().parseCpeDescription(input);
+      CollectionProcessingEngine cpe = UIMAFramework.produceCollectionProcessingEngine(desc);
 
-      try {
-         fis = new FileInputStream(fileName);
-         br = new BufferedReader(new InputStreamReader(fis));
-         String line = br.readLine();
-         while (line != null) {
-            if (!(line.equals("") || line.charAt(0) == '#')) {
-               output.append(line);
-               output.append(" ");
+      // Process the collection and wait for it to finish.
+      final CountDownLatch done = new CountDownLatch(1);
+      cpe.addStatusCallbackListener(new StatusCallbackListener() {
+         @Override
+         public void entityProcessComplete(CAS cas, EntityProcessStatus status) {
+            if (status.isException()) {
+               List<Exception> exceptions = status.getExceptions();
+               for (Exception e : exceptions) {
+                  e.printStackTrace();
+               }
             }
-            line = br.readLine();
          }
-      }
-      finally {
-         if (br != null) {
-            br.close();
+
+         @Override
+         public void initializationComplete() {
+            // Do nothing.
+         }
+
+         @Override
+         public void batchProcessComplete() {
+            // Do nothing.
          }
-      }
 
-      return output.toString();
+         @Override
+         public void collectionProcessComplete() {
+            done.countDown();
+         }
+
+         @Override
+         public void paused() {
+            // Do nothing.
+         }
+
+         @Override
+         public void resumed() {
+            // Do nothing.
+         }
+
+         @Override
+         public void aborted() {
+            done.countDown();
+         }
+      });
+      cpe.process();
+      done.await();
    }
 }
@@ -3,17 +3,19 @@ package com.example.rob.bio_uima.uima;
 public interface CasView {
 
    /**
-    * View to hold DNA strand as a space-delimited string.
+    * View to hold DNA strand as a space-delimited string, annotated with {@link BioTypes#DNA_SEQUENCE} and
+    * {@link BioTypes#PROTEIN_ORF} annotations.
     */
    public static String DNA        = "dna";
 
    /**
-    * View to hold proteins as space-delimited string.
+    * View to hold the {@link BioTypes#PAIRWISE_ALIGNMENT} feature structures; it has no text.
     */
-   public static String PROTEINS   = "proteins";
+   public static String ALIGNMENTS = "alignments";
 
    /**
-    * View to hold protein alignments as space-delimited string.
+    * View of a CAS produced by a {@link PairSplitter}, holding the pairs to align as {@link BioTypes#PAIRWISE_ALIGNMENT}
+    * feature structures without a score; it has no text.
     */
-   public static String ALIGNMENTS = "alignments";
+   public static String PAIRS      = "pairs";
 }
@@ -0,0 +1,115 @@
+package com.example.rob.bio_uima.uima;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.collection.CollectionReader_ImplBase;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+
+import com.example.rob.bio_uima.core.FastaReader;
+import com.example.rob.bio_uima.core.FastaRecord;
+import com.example.rob.bio_uima.metrics.Metrics;
+
+/**
+ * Streams the records of a FASTA file into one CAS per batch of sequences. The sequences of a batch go to the
+ * {@link CasView#DNA} view, space-delimited, each covered by a {@link BioTypes#DNA_SEQUENCE} annotation holding its
+ * name. Records without any residues are skipped.
+ * 
+ * <p>
+ * Alignments are computed between the sequences of a single CAS, so a batch size of 0 (the whole file in one CAS)
+ * aligns every pair in the file.
+ */
+public class FastaCollectionReader extends CollectionReader_ImplBase {
+
+   /**
+    * Name of the configuration parameter holding the path of the FASTA file.
+    */
+   public static final String PARAM_INPUT_FILE = "InputFile";
+
+   /**
+    * Name of the configuration parameter holding the number of sequences per CAS (0 for all of them).
+    */
+   public static final String PARAM_BATCH_SIZE = "BatchSize";
+
+   private FastaReader        reader;
+   private FastaRecord        next;
+   private int                batchSize;
+   private int                casCount;
+
+   @Override
+   public void initialize() throws ResourceInitializationException {
+      super.initialize();
+      String inputFile = (String) getConfigParameterValue(PARAM_INPUT_FILE);
+      Integer batchSizeParam = (Integer) getConfigParameterValue(PARAM_BATCH_SIZE);
+      batchSize = batchSizeParam != null ? batchSizeParam.intValue() : 0;
+
+      try {
+         reader = new FastaReader(inputFile);
+         next = readNonEmpty();
+      }
+      catch (IOException e) {
+         throw new ResourceInitializationException(e);
+      }
+   }
+
+   @Override
+   public boolean hasNext() throws IOException, CollectionException {
+      return next != null;
+   }
+
+   @Override
+   public void getNext(CAS cas) throws IOException, CollectionException {
+      Metrics.Span span = Metrics.begin(Metrics.Timer.READ, getClass().getSimpleName());
+      CAS dnaView = cas.createView(CasView.DNA);
+      Type sequenceType = cas.getTypeSystem().getType(BioTypes.DNA_SEQUENCE);
+      Feature name = sequenceType.getFeatureByBaseName(BioTypes.NAME);
+
+      List<FastaRecord> batch = new ArrayList<FastaRecord>();
+      StringBuilder dna = new StringBuilder();
+      for (int count = 0; next != null && (batchSize <= 0 || count < batchSize); count++) {
+         batch.add(next);
+         dna.append(next.getSequence()).append(" ");
+         next = readNonEmpty();
+      }
+      dnaView.setDocumentText(dna.toString());
+
+      int begin = 0;
+      for (FastaRecord record : batch) {
+         int end = begin + record.getSequence().length();
+         AnnotationFS sequence = dnaView.createAnnotation(sequenceType, begin, end);
+         sequence.setStringValue(name, record.getId());
+         dnaView.addFsToIndexes(sequence);
+         begin = end + 1;
+      }
+      casCount++;
+      span.end(batch.size());
+   }
+
+   private FastaRecord readNonEmpty() throws IOException {
+      FastaRecord record = reader.read();
+      while (record != null && record.getSequence().length() == 0) {
+         record = reader.read();
+      }
+      return record;
+   }
+
+   @Override
+   public Progress[] getProgress() {
+      return new Progress[] { new ProgressImpl(casCount, -1, Progress.ENTITIES) };
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (reader != null) {
+         reader.close();
+      }
+   }
+}
@@ -0,0 +1,155 @@
+package com.example.rob.bio_uima.uima;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.uima.cas.ByteArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.collection.CasConsumer_ImplBase;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceProcessException;
+
+import com.example.rob.bio_uima.core.DistanceMatrix;
+import com.example.rob.bio_uima.core.GuideTree;
+import com.example.rob.bio_uima.core.SequenceAligner;
+
+/**
+ * Builds a {@link GuideTree} over the proteins of each CAS and writes it in the Newick format, one line per CAS. The
+ * proteins are scored against each other into a {@link DistanceMatrix} on a fork-join pool; the matrix is kept on
+ * the heap when it fits, and otherwise memory-mapped from a scratch file or from the configured matrix file.
+ */
+public class GuideTreeWriter extends CasConsumer_ImplBase {
+
+   /**
+    * Name of the configuration parameter holding the path of the file to write the trees to (standard output if
+    * empty).
+    */
+   public static final String PARAM_OUTPUT_FILE    = "OutputFile";
+
+   /**
+    * Name of the configuration parameter holding the path of a file to map the distance matrix from (a temporary file
+    * if empty and the matrix does not fit on the heap).
+    */
+   public static final String PARAM_MATRIX_FILE    = "MatrixFile";
+
+   /**
+    * Name of the configuration parameter holding the {@link GuideTree.Method}, e.g. "UPGMA".
+    */
+   public static final String PARAM_METHOD         = "Method";
+
+   /**
+    * Name of the configuration parameter holding the number of threads (0 to use the pool shared by
+    * the JVM, see {@link WorkerPools}).
+    */
+   public static final String PARAM_WORKERS        = "Workers";
+
+   /**
+    * Names of the configuration parameters holding the {@link SequenceAligner} costs.
+    */
+   public static final String PARAM_INSERTION_COST = "InsertionCost";
+   public static final String PARAM_DELETION_COST  = "DeletionCost";
+   public static final String PARAM_MATCH_COST     = "MatchCost";
+   public static final String PARAM_MISMATCH_COST  = "MismatchCost";
+
+   private SequenceAligner    aligner;
+   private GuideTree.Method   method;
+   private String             matrixFile;
+   private PrintWriter        out;
+   private boolean            toFile;
+   private ForkJoinPool       pool;
+
+   @Override
+   public void initialize() throws ResourceInitializationException {
+      super.initialize();
+      aligner = new SequenceAligner(intParam(PARAM_INSERTION_COST, -2), intParam(PARAM_DELETION_COST, -2),
+            intParam(PARAM_MATCH_COST, 2), intParam(PARAM_MISMATCH_COST, -1));
+      // The striped kernel does not support a deletion cost that is not negative.
+      aligner.setKernel(aligner.getDeletionCost() < 0 ? SequenceAligner.Kernel.STRIPED
+            : SequenceAligner.Kernel.SCALAR);
+
+      String methodParam = (String) getConfigParameterValue(PARAM_METHOD);
+      try {
+         method = methodParam != null ? GuideTree.Method.valueOf(methodParam) : GuideTree.Method.UPGMA;
+      }
+      catch (IllegalArgumentException e) {
+         throw new ResourceInitializationException(e);
+      }
+      matrixFile = (String) getConfigParameterValue(PARAM_MATRIX_FILE);
+
+      String outputFile = (String) getConfigParameterValue(PARAM_OUTPUT_FILE);
+      toFile = outputFile != null && !outputFile.isEmpty();
+      try {
+         out = toFile ? new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile),
+               StandardCharsets.UTF_8)) : new PrintWriter(System.out);
+      }
+      catch (IOException e) {
+         throw new ResourceInitializationException(e);
+      }
+
+      int workers = intParam(PARAM_WORKERS, 0);
+      pool = WorkerPools.acquire(workers);
+   }
+
+   private int intParam(String name, int defaultValue) {
+      Integer value = (Integer) getConfigParameterValue(name);
+      return value != null ? value.intValue() : defaultValue;
+   }
+
+   @Override
+   public void processCas(CAS cas) throws ResourceProcessException {
+      CAS dnaView = cas.getView(CasView.DNA);
+      Type orfType = dnaView.getTypeSystem().getType(BioTypes.PROTEIN_ORF);
+      Feature sequenceFeature = orfType.getFeatureByBaseName(BioTypes.SEQUENCE);
+      Feature residuesFeature = orfType.getFeatureByBaseName(BioTypes.RESIDUES);
+      Feature nameFeature = dnaView.getTypeSystem().getType(BioTypes.DNA_SEQUENCE)
+            .getFeatureByBaseName(BioTypes.NAME);
+
+      List<String> names = new ArrayList<String>();
+      List<String> proteins = new ArrayList<String>();
+      FSIterator<AnnotationFS> orfs = dnaView.getAnnotationIndex(orfType).iterator();
+      while (orfs.hasNext()) {
+         AnnotationFS orf = orfs.next();
+         names.add(orf.getFeatureValue(sequenceFeature).getStringValue(nameFeature));
+         proteins.add(new String(((ByteArrayFS) orf.getFeatureValue(residuesFeature)).toArray(),
+               StandardCharsets.US_ASCII));
+      }
+      if (proteins.isEmpty()) {
+         return;
+      }
+
+      try {
+         DistanceMatrix matrix = matrixFile == null || matrixFile.isEmpty() ? DistanceMatrix.allocate(proteins.size())
+               : new DistanceMatrix(proteins.size(), matrixFile);
+         try {
+            matrix.fill(aligner, proteins, pool);
+            out.println(GuideTree.build(matrix, method, pool).toNewick(names));
+            out.flush();
+         }
+         finally {
+            matrix.close();
+         }
+      }
+      catch (IOException e) {
+         throw new ResourceProcessException(e);
+      }
+   }
+
+   @Override
+   public void destroy() {
+      WorkerPools.release(pool);
+      if (toFile) {
+         out.close();
+      }
+      super.destroy();
+   }
+}
@@ -0,0 +1,181 @@
+package com.example.rob.bio_uima.uima;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.flow.FinalStep;
+import org.apache.uima.flow.Flow;
+import org.apache.uima.flow.FlowControllerContext;
+import org.apache.uima.flow.JCasFlowController_ImplBase;
+import org.apache.uima.flow.JCasFlow_ImplBase;
+import org.apache.uima.flow.SimpleStep;
+import org.apache.uima.flow.Step;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+
+/**
+ * Flow controller for an aggregate of the translation annotator, a {@link PairSplitter} and any number of
+ * {@link SequenceAlignmentAnnotator} replicas (see <code>desc/BioParallelDescriptor.xml</code>).
+ * 
+ * <p>
+ * An input CAS is translated and then split into blocks of pairs. Each block is routed to the next replica in turn,
+ * and once aligned its alignments are copied into the {@link CasView#ALIGNMENTS} view of the input CAS, pointing at
+ * the input CAS's own proteins, and the block is dropped. The sorted alignment index puts the merged alignments in the
+ * same order as a single annotator would. Replicas are the delegates that are neither the translator nor the splitter.
+ */
+public class PairFlowController extends JCasFlowController_ImplBase {
+
+   /**
+    * Name of the configuration parameter holding the delegate key of the translation annotator.
+    */
+   public static final String PARAM_TRANSLATOR_KEY = "TranslatorKey";
+
+   /**
+    * Name of the configuration parameter holding the delegate key of the {@link PairSplitter}.
+    */
+   public static final String PARAM_SPLITTER_KEY   = "SplitterKey";
+
+   private String             translatorKey;
+   private String             splitterKey;
+   private List<String>       alignerKeys;
+   private int                nextAligner;
+
+   @Override
+   public void initialize(FlowControllerContext context) throws ResourceInitializationException {
+      super.initialize(context);
+      translatorKey = stringParam(context, PARAM_TRANSLATOR_KEY, "ProteinSequenceDescriptor");
+      splitterKey = stringParam(context, PARAM_SPLITTER_KEY, "PairSplitterDescriptor");
+      alignerKeys = new ArrayList<String>();
+      for (String key : context.getAnalysisEngineMetaDataMap().keySet()) {
+         if (!key.equals(translatorKey) && !key.equals(splitterKey)) {
+            alignerKeys.add(key);
+         }
+      }
+      if (alignerKeys.isEmpty()) {
+         throw new ResourceInitializationException(new IllegalArgumentException(
+               "The aggregate has no alignment annotator."));
+      }
+   }
+
+   private static String stringParam(UimaContext context, String name, String defaultValue) {
+      String value = (String) context.getConfigParameterValue(name);
+      return value != null && !value.isEmpty() ? value : defaultValue;
+   }
+
+   @Override
+   public Flow computeFlow(JCas cas) throws AnalysisEngineProcessException {
+      return new InputFlow();
+   }
+
+   /**
+    * Translates and splits an input CAS, and takes in the alignments of its blocks.
+    */
+   private final class InputFlow extends JCasFlow_ImplBase {
+
+      private int                step;
+      private List<AnnotationFS> proteins;
+
+      @Override
+      public Step next() throws AnalysisEngineProcessException {
+         switch (step++) {
+            case 0:
+               return new SimpleStep(translatorKey);
+            case 1:
+               return new SimpleStep(splitterKey);
+            default:
+               return new FinalStep();
+         }
+      }
+
+      @Override
+      protected Flow newCasProduced(JCas newCas, String producedBy) throws AnalysisEngineProcessException {
+         String alignerKey = alignerKeys.get(nextAligner);
+         nextAligner = (nextAligner + 1) % alignerKeys.size();
+         return new BlockFlow(this, alignerKey);
+      }
+
+      /**
+       * Copies the alignments of a block into the alignments view of the input CAS.
+       * 
+       * @param block
+       * @throws CASException
+       */
+      void merge(JCas block) throws CASException {
+         CAS input = getJCas().getCas();
+         if (proteins == null) {
+            // The same order as the splitter's.
+            CAS dnaView = input.getView(CasView.DNA);
+            proteins = new ArrayList<AnnotationFS>();
+            FSIterator<AnnotationFS> orfs = dnaView.getAnnotationIndex(
+                  dnaView.getTypeSystem().getType(BioTypes.PROTEIN_ORF)).iterator();
+            while (orfs.hasNext()) {
+               proteins.add(orfs.next());
+            }
+         }
+
+         CAS alignmentView = input.getView(CasView.ALIGNMENTS);
+         Type alignmentType = input.getTypeSystem().getType(BioTypes.PAIRWISE_ALIGNMENT);
+         Feature first = alignmentType.getFeatureByBaseName(BioTypes.FIRST);
+         Feature second = alignmentType.getFeatureByBaseName(BioTypes.SECOND);
+         Feature firstIndex = alignmentType.getFeatureByBaseName(BioTypes.FIRST_INDEX);
+         Feature secondIndex = alignmentType.getFeatureByBaseName(BioTypes.SECOND_INDEX);
+         Feature score = alignmentType.getFeatureByBaseName(BioTypes.SCORE);
+         Feature cigar = alignmentType.getFeatureByBaseName(BioTypes.CIGAR);
+
+         FSIterator<FeatureStructure> alignments = block.getView(CasView.ALIGNMENTS).getCas().getIndexRepository()
+               .getIndex(BioTypes.ALIGNMENT_INDEX).iterator();
+         while (alignments.hasNext()) {
+            FeatureStructure alignment = alignments.next();
+            int i = alignment.getIntValue(firstIndex);
+            int j = alignment.getIntValue(secondIndex);
+            FeatureStructure merged = alignmentView.createFS(alignmentType);
+            merged.setFeatureValue(first, proteins.get(i));
+            merged.setFeatureValue(second, proteins.get(j));
+            merged.setIntValue(firstIndex, i);
+            merged.setIntValue(secondIndex, j);
+            merged.setIntValue(score, alignment.getIntValue(score));
+            merged.setStringValue(cigar, alignment.getStringValue(cigar));
+            alignmentView.addFsToIndexes(merged);
+         }
+      }
+   }
+
+   /**
+    * Aligns a block of pairs on one replica, merges the alignments into the input CAS and drops the block.
+    */
+   private static final class BlockFlow extends JCasFlow_ImplBase {
+
+      private final InputFlow parent;
+      private final String    alignerKey;
+      private boolean         aligned;
+
+      BlockFlow(InputFlow parent, String alignerKey) {
+         this.parent = parent;
+         this.alignerKey = alignerKey;
+      }
+
+      @Override
+      public Step next() throws AnalysisEngineProcessException {
+         if (!aligned) {
+            aligned = true;
+            return new SimpleStep(alignerKey);
+         }
+         try {
+            parent.merge(getJCas());
+         }
+         catch (CASException e) {
+            throw new AnalysisEngineProcessException(e);
+         }
+         return new FinalStep(true);
+      }
+   }
+}
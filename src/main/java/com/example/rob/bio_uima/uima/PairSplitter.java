@@ -0,0 +1,139 @@
+package com.example.rob.bio_uima.uima;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_component.JCasMultiplier_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.AbstractCas;
+import org.apache.uima.cas.ByteArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+
+/**
+ * CAS multiplier that splits the all-pairs alignment of the proteins of a CAS into blocks of pairs, one child CAS per
+ * block, so that the blocks can be routed to several {@link SequenceAlignmentAnnotator} replicas (see
+ * {@link PairFlowController}).
+ * 
+ * <p>
+ * The unordered pairs (i &lt; j) are taken in row order. A child CAS holds a copy of each protein of its block as a
+ * {@link BioTypes#PROTEIN_ORF} in its {@link CasView#DNA} view, without text or DNA sequence, and the pairs themselves
+ * in its {@link CasView#PAIRS} view, as {@link BioTypes#PAIRWISE_ALIGNMENT} feature structures indexed by the
+ * positions of the proteins in the input CAS. The input CAS gets an empty {@link CasView#ALIGNMENTS} view for the
+ * results.
+ */
+public class PairSplitter extends JCasMultiplier_ImplBase {
+
+   /**
+    * Name of the configuration parameter holding the number of pairs per child CAS.
+    */
+   public static final String PARAM_PAIRS_PER_CAS = "PairsPerCas";
+
+   private int                pairsPerCas;
+
+   private List<AnnotationFS> proteins;
+   private int                first;
+   private int                second;
+
+   @Override
+   public void initialize(UimaContext context) throws ResourceInitializationException {
+      super.initialize(context);
+      Integer pairsPerCasParam = (Integer) context.getConfigParameterValue(PARAM_PAIRS_PER_CAS);
+      pairsPerCas = pairsPerCasParam != null ? Math.max(1, pairsPerCasParam.intValue()) : 64;
+   }
+
+   @Override
+   public void process(JCas cas) throws AnalysisEngineProcessException {
+      try {
+         CAS dnaView = cas.getView(CasView.DNA).getCas();
+         Type orfType = dnaView.getTypeSystem().getType(BioTypes.PROTEIN_ORF);
+         proteins = new ArrayList<AnnotationFS>();
+         FSIterator<AnnotationFS> orfs = dnaView.getAnnotationIndex(orfType).iterator();
+         while (orfs.hasNext()) {
+            proteins.add(orfs.next());
+         }
+         first = 0;
+         second = 1;
+         cas.createView(CasView.ALIGNMENTS);
+      }
+      catch (CASException e) {
+         throw new AnalysisEngineProcessException(e);
+      }
+   }
+
+   @Override
+   public boolean hasNext() throws AnalysisEngineProcessException {
+      return second < proteins.size();
+   }
+
+   @Override
+   public AbstractCas next() throws AnalysisEngineProcessException {
+      JCas child = getEmptyJCas();
+      try {
+         CAS dnaView = child.createView(CasView.DNA).getCas();
+         CAS pairsView = child.createView(CasView.PAIRS).getCas();
+         dnaView.setDocumentText("");
+         Type orfType = dnaView.getTypeSystem().getType(BioTypes.PROTEIN_ORF);
+         Feature residues = orfType.getFeatureByBaseName(BioTypes.RESIDUES);
+         Type alignmentType = dnaView.getTypeSystem().getType(BioTypes.PAIRWISE_ALIGNMENT);
+         Feature firstFeature = alignmentType.getFeatureByBaseName(BioTypes.FIRST);
+         Feature secondFeature = alignmentType.getFeatureByBaseName(BioTypes.SECOND);
+         Feature firstIndex = alignmentType.getFeatureByBaseName(BioTypes.FIRST_INDEX);
+         Feature secondIndex = alignmentType.getFeatureByBaseName(BioTypes.SECOND_INDEX);
+
+         // Each protein of the block is copied once, however many of its pairs are in it.
+         Map<Integer, FeatureStructure> copies = new HashMap<Integer, FeatureStructure>();
+         for (int count = 0; count < pairsPerCas && second < proteins.size(); count++) {
+            FeatureStructure pair = pairsView.createFS(alignmentType);
+            pair.setFeatureValue(firstFeature, copy(dnaView, orfType, residues, first, copies));
+            pair.setFeatureValue(secondFeature, copy(dnaView, orfType, residues, second, copies));
+            pair.setIntValue(firstIndex, first);
+            pair.setIntValue(secondIndex, second);
+            pairsView.addFsToIndexes(pair);
+
+            if (++second == proteins.size()) {
+               first++;
+               second = first + 1;
+            }
+         }
+         return child;
+      }
+      catch (CASException e) {
+         child.release();
+         throw new AnalysisEngineProcessException(e);
+      }
+      catch (RuntimeException e) {
+         child.release();
+         throw e;
+      }
+   }
+
+   /**
+    * 
+    * @return The copy of protein 'i' in the child CAS, made on first use.
+    */
+   private FeatureStructure copy(CAS dnaView, Type orfType, Feature residues, int i,
+         Map<Integer, FeatureStructure> copies) {
+      FeatureStructure copy = copies.get(i);
+      if (copy == null) {
+         byte[] protein = ((ByteArrayFS) proteins.get(i).getFeatureValue(residues)).toArray();
+         ByteArrayFS copyResidues = dnaView.createByteArrayFS(protein.length);
+         copyResidues.copyFromArray(protein, 0, 0, protein.length);
+         copy = dnaView.createAnnotation(orfType, 0, 0);
+         copy.setFeatureValue(residues, copyResidues);
+         dnaView.addFsToIndexes(copy);
+         copies.put(i, copy);
+      }
+      return copy;
+   }
+}
@@ -1,11 +1,31 @@
 package com.example.rob.bio_uima.uima;
 
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.ByteArrayFS;
+import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 
+import com.example.rob.bio_uima.core.Orf;
+import com.example.rob.bio_uima.core.PackedDnaSequence;
 import com.example.rob.bio_uima.core.ProteinSequencer;
+import com.example.rob.bio_uima.metrics.Metrics;
 
 /**
  * This annotator should read DNA sequences from the CAS
@@ -19,27 +39,83 @@ import com.example.rob.bio_uima.core.ProteinSequencer;
 public class ProteinSequenceAnnotator extends JCasAnnotator_ImplBase {
 
    /**
-    * Translates each DNA sequence to a protein sequence considering all possible open reading frames and store in a CAS
-    * view.
+    * Name of the configuration parameter holding the number of bases above which a sequence is scanned in chunks of
+    * that length on the fork-join pool shared by the JVM (0 to always scan on the calling thread).
     */
+   public static final String PARAM_CHUNK_LENGTH = "ChunkLength";
+
+   private int                chunkLength;
+   private ForkJoinPool       pool;
+
    @Override
-   public void process(JCas cas) throws AnalysisEngineProcessException {
+   public void initialize(UimaContext context) throws ResourceInitializationException {
+      super.initialize(context);
+      Integer chunkLengthParam = (Integer) context.getConfigParameterValue(PARAM_CHUNK_LENGTH);
+      chunkLength = chunkLengthParam != null ? chunkLengthParam.intValue() : ProteinSequencer.DEFAULT_CHUNK_LENGTH;
+      if (chunkLength > 0) {
+         pool = WorkerPools.shared();
+      }
+   }
 
+   /**
+    * Translates each DNA sequence to a protein sequence considering all possible open reading frames and adds a
+    * {@link BioTypes#PROTEIN_ORF} annotation for each to the DNA view. Sequences without an ORF get an empty protein at
+    * their end. Sequences that already have one (e.g. read from a
+    * {@link com.example.rob.bio_uima.core.SequenceStore}) are not translated again.
+    */
+   @Override
+   public void process(JCas cas) throws AnalysisEngineProcessException {
+      Metrics.Span span = Metrics.begin(Metrics.Timer.TRANSLATION, getClass().getSimpleName());
       try {
-         String[] dnaSeqs = cas.getView(CasView.DNA).getDocumentText().split(" ");
-         StringBuilder proteinSeqs = new StringBuilder();
+         CAS dnaView = cas.getView(CasView.DNA).getCas();
+         String dna = dnaView.getDocumentText();
+         Type sequenceType = dnaView.getTypeSystem().getType(BioTypes.DNA_SEQUENCE);
+         Type orfType = dnaView.getTypeSystem().getType(BioTypes.PROTEIN_ORF);
+         Feature sequenceFeature = orfType.getFeatureByBaseName(BioTypes.SEQUENCE);
+         Feature residuesFeature = orfType.getFeatureByBaseName(BioTypes.RESIDUES);
+
+         Set<FeatureStructure> translated = new HashSet<FeatureStructure>();
+         FSIterator<AnnotationFS> orfs = dnaView.getAnnotationIndex(orfType).iterator();
+         while (orfs.hasNext()) {
+            translated.add(orfs.next().getFeatureValue(sequenceFeature));
+         }
 
-         for (String seq : dnaSeqs) {
-            String protein = ProteinSequencer.getInstance().findLongestProteinOrf(seq);
-            proteinSeqs.append(protein);
-            proteinSeqs.append(" ");
+         // Collected first, as the ORFs are added to the same annotation index.
+         List<AnnotationFS> sequences = new ArrayList<AnnotationFS>();
+         FSIterator<AnnotationFS> it = dnaView.getAnnotationIndex(sequenceType).iterator();
+         while (it.hasNext()) {
+            AnnotationFS sequence = it.next();
+            if (!translated.contains(sequence)) {
+               sequences.add(sequence);
+            }
          }
 
-         JCas proteins = cas.createView(CasView.PROTEINS);
-         proteins.setDocumentText(proteinSeqs.toString());
+         for (AnnotationFS sequence : sequences) {
+            int begin = sequence.getBegin();
+            PackedDnaSequence packed = PackedDnaSequence.pack(CharBuffer.wrap(dna, begin, sequence.getEnd()));
+            Orf orf = pool != null ? ProteinSequencer.getInstance().findLongestOrf(packed, pool, chunkLength)
+                  : ProteinSequencer.getInstance().findLongestOrf(packed);
+
+            byte[] protein = orf == null ? new byte[0] : orf.getProtein().getBytes(StandardCharsets.US_ASCII);
+            ByteArrayFS residues = dnaView.createByteArrayFS(protein.length);
+            residues.copyFromArray(protein, 0, 0, protein.length);
+
+            AnnotationFS proteinOrf = orf == null ? dnaView.createAnnotation(orfType, sequence.getEnd(), sequence.getEnd())
+                  : dnaView.createAnnotation(orfType, begin + orf.getStart(), begin + orf.getEnd());
+            proteinOrf.setFeatureValue(sequenceFeature, sequence);
+            proteinOrf.setFeatureValue(residuesFeature, residues);
+            dnaView.addFsToIndexes(proteinOrf);
+            if (Metrics.ENABLED) {
+               Metrics.Counter.BASES_TRANSLATED.add(packed.length());
+            }
+         }
+         if (Metrics.ENABLED) {
+            Metrics.Counter.SEQUENCES_TRANSLATED.add(sequences.size());
+         }
+         span.end(sequences.size());
       }
       catch (CASException e) {
          e.printStackTrace();
       }
    }
-}
\ No newline at end of file
+}
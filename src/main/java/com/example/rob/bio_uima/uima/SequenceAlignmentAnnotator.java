@@ -1,37 +1,538 @@
 package com.example.rob.bio_uima.uima;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.ByteArrayFS;
+import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 
+import com.example.rob.bio_uima.core.Alignment;
+import com.example.rob.bio_uima.core.AlignmentCache;
+import com.example.rob.bio_uima.core.KmerIndex;
 import com.example.rob.bio_uima.core.SequenceAligner;
+import com.example.rob.bio_uima.core.SequenceSearcher;
+import com.example.rob.bio_uima.metrics.Metrics;
 import com.example.rob.bio_uima.uima.CasView;
 
+/**
+ * Aligns every ordered pair of distinct {@link BioTypes#PROTEIN_ORF} proteins and adds a
+ * {@link BioTypes#PAIRWISE_ALIGNMENT} for each to the alignments view. When the cost scheme is symmetric only the upper
+ * triangle of the pair matrix is aligned and the lower triangle is filled by swapping the two sides of each alignment.
+ * Pairs are aligned on a fork-join pool, each task with its own {@link SequenceAligner}, and indexed by the positions
+ * of the two proteins.
+ * 
+ * <p>
+ * With {@link #PARAM_MIN_SHARED_KMERS} set, only the pairs that share that many k-mers in a {@link KmerIndex} are
+ * aligned, so that large collections of mostly unrelated proteins do not cost a quadratic number of alignments.
+ * 
+ * <p>
+ * With {@link #PARAM_QUERY_NAMES} set the annotator searches instead: the proteins of the named DNA sequences are
+ * queries, every other protein is the database, and only the best {@link #PARAM_MAX_HITS} hits of each query are kept
+ * (see {@link SequenceSearcher}), each as an alignment with the query first.
+ * 
+ * <p>
+ * In a CAS produced by a {@link PairSplitter}, only the pairs listed in its {@link CasView#PAIRS} view are aligned,
+ * and the alignments are indexed by the positions of the proteins in the CAS it was split from.
+ * 
+ * <p>
+ * With {@link #PARAM_CACHE_SIZE} or {@link #PARAM_CACHE_FILE} set, alignments and scores go through an
+ * {@link AlignmentCache}. With a cache file, a rerun over an input with new or changed sequences only aligns the pairs
+ * that involve them and takes every other pair from the file.
+ */
 public class SequenceAlignmentAnnotator extends JCasAnnotator_ImplBase {
 
-   private final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+   /**
+    * Name of the configuration parameter that switches the annotator to only compute alignment scores.
+    */
+   public static final String PARAM_SCORE_ONLY           = "ScoreOnly";
+
+   /**
+    * Names of the configuration parameters holding the {@link SequenceAligner} costs.
+    */
+   public static final String PARAM_INSERTION_COST       = "InsertionCost";
+   public static final String PARAM_DELETION_COST        = "DeletionCost";
+   public static final String PARAM_MATCH_COST           = "MatchCost";
+   public static final String PARAM_MISMATCH_COST        = "MismatchCost";
+
+   /**
+    * Name of the configuration parameter holding the largest full cost matrix to allocate, in megabytes.
+    */
+   public static final String PARAM_MEMORY_BUDGET        = "MemoryBudget";
+
+   /**
+    * Name of the configuration parameter holding the number of cells below which Hirschberg's recursion fills a full
+    * cost matrix.
+    */
+   public static final String PARAM_HIRSCHBERG_CUTOFF    = "HirschbergCutoff";
+
+   /**
+    * Name of the configuration parameter holding the number of alignment threads (0 to use the pool
+    * shared by the JVM, see {@link WorkerPools}).
+    */
+   public static final String PARAM_WORKERS              = "Workers";
+
+   /**
+    * Name of the configuration parameter holding the k-mer length of the candidate pair prefilter.
+    */
+   public static final String PARAM_KMER_LENGTH          = "KmerLength";
+
+   /**
+    * Name of the configuration parameter holding the number of k-mers two proteins must share to be aligned (0 to
+    * align every pair).
+    */
+   public static final String PARAM_MIN_SHARED_KMERS     = "MinSharedKmers";
+
+   /**
+    * Name of the configuration parameter holding the number of proteins above which a k-mer is ignored by the
+    * prefilter (0 for no limit).
+    */
+   public static final String PARAM_MAX_KMER_OCCURRENCES = "MaxKmerOccurrences";
+
+   /**
+    * Name of the configuration parameter holding the names of the DNA sequences whose proteins are searched against
+    * all the others (none to align pairs).
+    */
+   public static final String PARAM_QUERY_NAMES          = "QueryNames";
+
+   /**
+    * Name of the configuration parameter holding the number of hits kept for each query.
+    */
+   public static final String PARAM_MAX_HITS             = "MaxHits";
+
+   /**
+    * Name of the configuration parameter holding the number of alignments kept in memory by the alignment cache.
+    */
+   public static final String PARAM_CACHE_SIZE           = "CacheSize";
+
+   /**
+    * Name of the configuration parameter holding the path of the persistent alignment cache (empty for none).
+    */
+   public static final String PARAM_CACHE_FILE           = "CacheFile";
+
+   /**
+    * Number of pairs a single task aligns before splitting further.
+    */
+   private static final int   PAIRS_PER_TASK             = 8;
+
+   private SequenceAligner    sa;
+   private boolean            scoreOnly;
+   private ForkJoinPool       pool;
+   private int                kmerLength;
+   private int                minSharedKmers;
+   private int                maxKmerOccurrences;
+   private Set<String>        queryNames;
+   private int                maxHits;
+   private AlignmentCache     cache;
+
+   @Override
+   public void initialize(UimaContext context) throws ResourceInitializationException {
+      super.initialize(context);
+      Boolean scoreOnlyParam = (Boolean) context.getConfigParameterValue(PARAM_SCORE_ONLY);
+      scoreOnly = scoreOnlyParam != null && scoreOnlyParam.booleanValue();
+      sa = new SequenceAligner(intParam(context, PARAM_INSERTION_COST, -2), intParam(context, PARAM_DELETION_COST, -2),
+            intParam(context, PARAM_MATCH_COST, 2), intParam(context, PARAM_MISMATCH_COST, -1));
+      int memoryBudget = intParam(context, PARAM_MEMORY_BUDGET, (int) (SequenceAligner.DEFAULT_MEMORY_BUDGET >> 20));
+      sa.setMemoryBudget((long) memoryBudget << 20);
+      sa.setHirschbergCutoff(intParam(context, PARAM_HIRSCHBERG_CUTOFF, SequenceAligner.DEFAULT_HIRSCHBERG_CUTOFF));
+
+      kmerLength = intParam(context, PARAM_KMER_LENGTH, 3);
+      minSharedKmers = intParam(context, PARAM_MIN_SHARED_KMERS, 0);
+      maxKmerOccurrences = intParam(context, PARAM_MAX_KMER_OCCURRENCES, 0);
+      String[] queryNamesParam = (String[]) context.getConfigParameterValue(PARAM_QUERY_NAMES);
+      queryNames = new HashSet<String>();
+      if (queryNamesParam != null) {
+         queryNames.addAll(Arrays.asList(queryNamesParam));
+      }
+      maxHits = intParam(context, PARAM_MAX_HITS, 50);
+
+      int cacheSize = intParam(context, PARAM_CACHE_SIZE, 0);
+      String cacheFile = (String) context.getConfigParameterValue(PARAM_CACHE_FILE);
+      try {
+         if (cacheFile != null && !cacheFile.isEmpty()) {
+            cache = AlignmentCache.open(cacheSize, cacheFile);
+         }
+         else if (cacheSize > 0) {
+            cache = new AlignmentCache(cacheSize);
+         }
+      }
+      catch (IOException e) {
+         throw new ResourceInitializationException(e);
+      }
+
+      int workers = intParam(context, PARAM_WORKERS, 0);
+      pool = WorkerPools.acquire(workers);
+   }
+
+   private static int intParam(UimaContext context, String name, int defaultValue) {
+      Integer value = (Integer) context.getConfigParameterValue(name);
+      return value != null ? value.intValue() : defaultValue;
+   }
 
    @Override
    public void process(JCas cas) throws AnalysisEngineProcessException {
+      Metrics.Span span = Metrics.begin(Metrics.Timer.ALIGNMENT, getClass().getSimpleName());
       try {
-         String[] proteinSeqs = cas.getView(CasView.PROTEINS).getDocumentText().split(" ");
-         StringBuilder alignments = new StringBuilder();
-
-         for (String seq1 : proteinSeqs) {
-            for (String seq2 : proteinSeqs) {
-               if (!seq1.equals(seq2)) {
-                  String[] alignment = sa.computeAlignments(seq1, seq2);
-                  alignments.append(alignment[0]).append(" ").append(alignment[1]).append(" ");
+         CAS dnaView = cas.getView(CasView.DNA).getCas();
+         TypeSystem types = dnaView.getTypeSystem();
+         Type orfType = types.getType(BioTypes.PROTEIN_ORF);
+         Feature residuesFeature = orfType.getFeatureByBaseName(BioTypes.RESIDUES);
+
+         List<AnnotationFS> proteins = new ArrayList<AnnotationFS>();
+         FSIterator<AnnotationFS> orfs = dnaView.getAnnotationIndex(orfType).iterator();
+         while (orfs.hasNext()) {
+            proteins.add(orfs.next());
+         }
+         int n = proteins.size();
+         String[] proteinSeqs = new String[n];
+         for (int i = 0; i < n; i++) {
+            ByteArrayFS residues = (ByteArrayFS) proteins.get(i).getFeatureValue(residuesFeature);
+            proteinSeqs[i] = new String(residues.toArray(), StandardCharsets.US_ASCII);
+         }
+         int[] positions = new int[n];
+         for (int i = 0; i < n; i++) {
+            positions[i] = i;
+         }
+         Iterator<CAS> pairsViews = cas.getCas().getViewIterator(CasView.PAIRS);
+         PairList pairs;
+         boolean mirrored;
+         if (pairsViews.hasNext() || queryNames.isEmpty()) {
+            // Pairs to align: the upper triangle when symmetric, otherwise every ordered pair.
+            mirrored = sa.isSymmetric();
+            pairs = new PairList(!mirrored);
+            if (pairsViews.hasNext()) {
+               requestedPairs(pairsViews.next(), proteins, pairs, positions);
+            }
+            else if (minSharedKmers > 0) {
+               new KmerIndex(Arrays.asList(proteinSeqs), kmerLength).findCandidates(minSharedKmers,
+                     maxKmerOccurrences, pairs);
+            }
+            else {
+               for (int i = 0; i < n; i++) {
+                  for (int j = i + 1; j < n; j++) {
+                     pairs.pair(i, j, 0);
+                  }
                }
             }
+            PairTask task = new PairTask(sa, cache, proteinSeqs, Arrays.copyOf(pairs.firsts, pairs.size),
+                  Arrays.copyOf(pairs.seconds, pairs.size), 0, pairs.size, scoreOnly);
+            pool.invoke(task);
+            pairs.scores = task.scores;
+            pairs.alignments = task.alignments;
+         }
+         else {
+            mirrored = false;
+            pairs = search(dnaView, proteins, proteinSeqs);
          }
 
-         JCas alignmentCas = cas.createView(CasView.ALIGNMENTS);
-         alignmentCas.setDocumentText(alignments.toString());
+         CAS alignmentView = cas.createView(CasView.ALIGNMENTS).getCas();
+         Type alignmentType = types.getType(BioTypes.PAIRWISE_ALIGNMENT);
+         Feature first = alignmentType.getFeatureByBaseName(BioTypes.FIRST);
+         Feature second = alignmentType.getFeatureByBaseName(BioTypes.SECOND);
+         Feature firstIndex = alignmentType.getFeatureByBaseName(BioTypes.FIRST_INDEX);
+         Feature secondIndex = alignmentType.getFeatureByBaseName(BioTypes.SECOND_INDEX);
+         Feature score = alignmentType.getFeatureByBaseName(BioTypes.SCORE);
+         Feature cigar = alignmentType.getFeatureByBaseName(BioTypes.CIGAR);
+         // The sorted index orders the alignments by protein positions; symmetric pairs also give the swapped pair.
+         for (int k = 0; k < pairs.size; k++) {
+            for (int side = 0; side < (mirrored ? 2 : 1); side++) {
+               boolean swapped = side == 1;
+               int i = swapped ? pairs.seconds[k] : pairs.firsts[k];
+               int j = swapped ? pairs.firsts[k] : pairs.seconds[k];
+               FeatureStructure alignment = alignmentView.createFS(alignmentType);
+               alignment.setFeatureValue(first, proteins.get(i));
+               alignment.setFeatureValue(second, proteins.get(j));
+               alignment.setIntValue(firstIndex, positions[i]);
+               alignment.setIntValue(secondIndex, positions[j]);
+               alignment.setIntValue(score, pairs.scores[k]);
+               if (!scoreOnly) {
+                  Alignment path = swapped ? pairs.alignments[k].swap() : pairs.alignments[k];
+                  alignment.setStringValue(cigar, path.toCigar());
+               }
+               alignmentView.addFsToIndexes(alignment);
+            }
+         }
+         span.end(pairs.size);
       }
       catch (CASException e) {
          e.printStackTrace();
       }
    }
-}
\ No newline at end of file
+
+   /**
+    * Searches the proteins of the query sequences against all the other proteins, one query per task.
+    * 
+    * @param dnaView
+    * @param proteins
+    * @param proteinSeqs
+    * @return The best hits of every query, with their scores and alignments.
+    */
+   private PairList search(CAS dnaView, List<AnnotationFS> proteins, String[] proteinSeqs) {
+      Type orfType = dnaView.getTypeSystem().getType(BioTypes.PROTEIN_ORF);
+      Type sequenceType = dnaView.getTypeSystem().getType(BioTypes.DNA_SEQUENCE);
+      Feature sequence = orfType.getFeatureByBaseName(BioTypes.SEQUENCE);
+      Feature name = sequenceType.getFeatureByBaseName(BioTypes.NAME);
+
+      List<Integer> queries = new ArrayList<Integer>();
+      List<Integer> database = new ArrayList<Integer>();
+      for (int i = 0; i < proteins.size(); i++) {
+         FeatureStructure dna = proteins.get(i).getFeatureValue(sequence);
+         boolean isQuery = dna != null && queryNames.contains(dna.getStringValue(name));
+         (isQuery ? queries : database).add(i);
+      }
+      List<String> databaseSeqs = new ArrayList<String>(database.size());
+      for (int i : database) {
+         databaseSeqs.add(proteinSeqs[i]);
+      }
+
+      List<QueryTask> tasks = new ArrayList<QueryTask>();
+      for (int q : queries) {
+         QueryTask task = new QueryTask(sa, cache, maxHits, proteinSeqs[q], databaseSeqs, scoreOnly);
+         tasks.add(task);
+         pool.execute(task);
+      }
+
+      // Hits are ordered (query, protein) pairs, so (protein, query) is not added.
+      PairList hits = new PairList(false);
+      List<Alignment> alignments = new ArrayList<Alignment>();
+      List<Integer> scores = new ArrayList<Integer>();
+      for (int t = 0; t < tasks.size(); t++) {
+         QueryTask task = tasks.get(t);
+         task.join();
+         for (int h = 0; h < task.count; h++) {
+            hits.pair(queries.get(t), database.get(task.hits[h]), 0);
+            scores.add(task.scores[h]);
+            alignments.add(scoreOnly ? null : task.alignments[h]);
+         }
+      }
+      hits.scores = new int[scores.size()];
+      for (int h = 0; h < hits.scores.length; h++) {
+         hits.scores[h] = scores.get(h);
+      }
+      hits.alignments = alignments.toArray(new Alignment[alignments.size()]);
+      return hits;
+   }
+
+   @Override
+   public void destroy() {
+      WorkerPools.release(pool);
+      if (cache != null) {
+         try {
+            cache.close();
+         }
+         catch (IOException e) {
+            e.printStackTrace();
+         }
+      }
+      super.destroy();
+   }
+
+   /**
+    * Lists the pairs of a CAS produced by a {@link PairSplitter}, which are given as
+    * {@link BioTypes#PAIRWISE_ALIGNMENT} feature structures without a score in its {@link CasView#PAIRS} view.
+    * 
+    * @param pairsView
+    * @param proteins The proteins of the CAS.
+    * @param pairs The list to add each pair to, by the positions of its proteins in 'proteins'.
+    * @param positions Set to the position of each protein in the CAS it was split from.
+    */
+   private static void requestedPairs(CAS pairsView, List<AnnotationFS> proteins, PairList pairs, int[] positions) {
+      Map<FeatureStructure, Integer> local = new HashMap<FeatureStructure, Integer>();
+      for (int i = 0; i < proteins.size(); i++) {
+         local.put(proteins.get(i), i);
+      }
+      Type alignmentType = pairsView.getTypeSystem().getType(BioTypes.PAIRWISE_ALIGNMENT);
+      Feature first = alignmentType.getFeatureByBaseName(BioTypes.FIRST);
+      Feature second = alignmentType.getFeatureByBaseName(BioTypes.SECOND);
+      Feature firstIndex = alignmentType.getFeatureByBaseName(BioTypes.FIRST_INDEX);
+      Feature secondIndex = alignmentType.getFeatureByBaseName(BioTypes.SECOND_INDEX);
+
+      FSIterator<FeatureStructure> it = pairsView.getIndexRepository().getIndex(BioTypes.ALIGNMENT_INDEX).iterator();
+      while (it.hasNext()) {
+         FeatureStructure pair = it.next();
+         int i = local.get(pair.getFeatureValue(first)).intValue();
+         int j = local.get(pair.getFeatureValue(second)).intValue();
+         positions[i] = pair.getIntValue(firstIndex);
+         positions[j] = pair.getIntValue(secondIndex);
+         pairs.pair(i, j, 0);
+      }
+   }
+
+   /**
+    * Collects the pairs to align from unordered pairs (i &lt; j), adding (j, i) as well when asked to (for costs that
+    * are not symmetric), and then their scores and alignments.
+    */
+   private static final class PairList implements KmerIndex.Handler {
+
+      private final boolean addReversed;
+
+      int[]                 firsts  = new int[16];
+      int[]                 seconds = new int[16];
+      int                   size;
+      int[]                 scores;
+      Alignment[]           alignments;
+
+      /**
+       * 
+       * @param addReversed Whether {@link #pair(int, int, int)} adds (j, i) after (i, j).
+       */
+      PairList(boolean addReversed) {
+         this.addReversed = addReversed;
+      }
+
+      @Override
+      public void pair(int i, int j, int shared) {
+         add(i, j);
+         if (addReversed) {
+            add(j, i);
+         }
+      }
+
+      private void add(int i, int j) {
+         if (size == firsts.length) {
+            firsts = Arrays.copyOf(firsts, 2 * size);
+            seconds = Arrays.copyOf(seconds, 2 * size);
+         }
+         firsts[size] = i;
+         seconds[size] = j;
+         size++;
+      }
+   }
+
+   /**
+    * Finds the best hits of one query and aligns them.
+    */
+   private static final class QueryTask extends RecursiveAction {
+
+      private static final long     serialVersionUID = 1L;
+
+      private final SequenceAligner template;
+      private final AlignmentCache  cache;
+      private final String          query;
+      private final List<String>    database;
+      private final boolean         scoreOnly;
+
+      final int[]                   hits;
+      final int[]                   scores;
+      final Alignment[]             alignments;
+      int                           count;
+
+      QueryTask(SequenceAligner template, AlignmentCache cache, int maxHits, String query, List<String> database,
+            boolean scoreOnly) {
+         this.template = template;
+         this.cache = cache;
+         this.query = query;
+         this.database = database;
+         this.scoreOnly = scoreOnly;
+         this.hits = new int[maxHits];
+         this.scores = new int[maxHits];
+         this.alignments = scoreOnly ? null : new Alignment[maxHits];
+      }
+
+      @Override
+      protected void compute() {
+         SequenceSearcher searcher = new SequenceSearcher(template, hits.length);
+         count = searcher.search(query, database, new SequenceSearcher.Handler() {
+            @Override
+            public void hit(int rank, int index, int score) {
+               hits[rank] = index;
+               scores[rank] = score;
+            }
+         });
+         if (!scoreOnly) {
+            SequenceAligner aligner = new SequenceAligner(template);
+            for (int h = 0; h < count; h++) {
+               String hit = database.get(hits[h]);
+               alignments[h] = cache != null ? cache.align(aligner, query, hit) : aligner.align(query, hit);
+            }
+         }
+      }
+   }
+
+   /**
+    * Aligns a range of pairs, splitting it in half until it is small enough to align with a single aligner.
+    */
+   private static final class PairTask extends RecursiveAction {
+
+      private static final long     serialVersionUID = 1L;
+
+      private final SequenceAligner template;
+      private final AlignmentCache  cache;
+      private final String[]        seqs;
+      private final int[]           firsts;
+      private final int[]           seconds;
+      private final int             from;
+      private final int             to;
+      private final boolean         scoreOnly;
+
+      final Alignment[]             alignments;
+      final int[]                   scores;
+
+      PairTask(SequenceAligner template, AlignmentCache cache, String[] seqs, int[] firsts, int[] seconds, int from,
+            int to, boolean scoreOnly) {
+         this(template, cache, seqs, firsts, seconds, from, to, scoreOnly,
+               scoreOnly ? null : new Alignment[firsts.length], new int[firsts.length]);
+      }
+
+      private PairTask(SequenceAligner template, AlignmentCache cache, String[] seqs, int[] firsts, int[] seconds,
+            int from, int to, boolean scoreOnly, Alignment[] alignments, int[] scores) {
+         this.template = template;
+         this.cache = cache;
+         this.seqs = seqs;
+         this.firsts = firsts;
+         this.seconds = seconds;
+         this.from = from;
+         this.to = to;
+         this.scoreOnly = scoreOnly;
+         this.alignments = alignments;
+         this.scores = scores;
+      }
+
+      @Override
+      protected void compute() {
+         if (to - from <= PAIRS_PER_TASK) {
+            SequenceAligner aligner = new SequenceAligner(template);
+            for (int k = from; k < to; k++) {
+               String seq1 = seqs[firsts[k]];
+               String seq2 = seqs[seconds[k]];
+               if (scoreOnly) {
+                  scores[k] = cache != null ? cache.score(aligner, seq1, seq2) : aligner.score(seq1, seq2);
+               }
+               else {
+                  alignments[k] = cache != null ? cache.align(aligner, seq1, seq2) : aligner.align(seq1, seq2);
+                  scores[k] = alignments[k].getScore();
+               }
+            }
+         }
+         else {
+            int mid = (from + to) >>> 1;
+            invokeAll(split(from, mid), split(mid, to));
+         }
+      }
+
+      private PairTask split(int splitFrom, int splitTo) {
+         return new PairTask(template, cache, seqs, firsts, seconds, splitFrom, splitTo, scoreOnly, alignments, scores);
+      }
+   }
+}
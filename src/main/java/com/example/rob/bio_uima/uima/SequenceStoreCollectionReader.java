@@ -0,0 +1,111 @@
+package com.example.rob.bio_uima.uima;
+
+import java.io.IOException;
+
+import org.apache.uima.cas.ByteArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.collection.CollectionException;
+import org.apache.uima.collection.CollectionReader_ImplBase;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
+
+import com.example.rob.bio_uima.core.SequenceStore;
+import com.example.rob.bio_uima.metrics.Metrics;
+
+/**
+ * Reads a {@link SequenceStore} into one CAS per batch of sequences, laid out as by {@link FastaCollectionReader}.
+ * Since the store already holds the translation of every sequence, a {@link BioTypes#PROTEIN_ORF} is added for each as
+ * well, and {@link ProteinSequenceAnnotator} leaves those sequences alone.
+ */
+public class SequenceStoreCollectionReader extends CollectionReader_ImplBase {
+
+   /**
+    * Name of the configuration parameter holding the path of the store, as written by
+    * {@link com.example.rob.bio_uima.core.SequenceStoreBuilder}.
+    */
+   public static final String PARAM_STORE_FILE = "StoreFile";
+
+   /**
+    * Name of the configuration parameter holding the number of sequences per CAS (0 for all of them).
+    */
+   public static final String PARAM_BATCH_SIZE = "BatchSize";
+
+   private SequenceStore      store;
+   private int                batchSize;
+   private int                next;
+
+   @Override
+   public void initialize() throws ResourceInitializationException {
+      super.initialize();
+      String storeFile = (String) getConfigParameterValue(PARAM_STORE_FILE);
+      Integer batchSizeParam = (Integer) getConfigParameterValue(PARAM_BATCH_SIZE);
+      batchSize = batchSizeParam != null ? batchSizeParam.intValue() : 0;
+
+      try {
+         store = new SequenceStore(storeFile);
+      }
+      catch (IOException e) {
+         throw new ResourceInitializationException(e);
+      }
+   }
+
+   @Override
+   public boolean hasNext() throws IOException, CollectionException {
+      return next < store.size();
+   }
+
+   @Override
+   public void getNext(CAS cas) throws IOException, CollectionException {
+      Metrics.Span span = Metrics.begin(Metrics.Timer.READ, getClass().getSimpleName());
+      CAS dnaView = cas.createView(CasView.DNA);
+      Type sequenceType = cas.getTypeSystem().getType(BioTypes.DNA_SEQUENCE);
+      Type orfType = cas.getTypeSystem().getType(BioTypes.PROTEIN_ORF);
+      Feature name = sequenceType.getFeatureByBaseName(BioTypes.NAME);
+      Feature sequenceFeature = orfType.getFeatureByBaseName(BioTypes.SEQUENCE);
+      Feature residuesFeature = orfType.getFeatureByBaseName(BioTypes.RESIDUES);
+
+      int from = next;
+      int to = batchSize <= 0 ? store.size() : Math.min(store.size(), from + batchSize);
+      StringBuilder dna = new StringBuilder();
+      for (int i = from; i < to; i++) {
+         dna.append(store.getDna(i)).append(" ");
+      }
+      dnaView.setDocumentText(dna.toString());
+
+      int begin = 0;
+      for (int i = from; i < to; i++) {
+         int end = begin + store.getDnaLength(i);
+         AnnotationFS sequence = dnaView.createAnnotation(sequenceType, begin, end);
+         sequence.setStringValue(name, store.getName(i));
+         dnaView.addFsToIndexes(sequence);
+
+         byte[] protein = store.getProteinBytes(i);
+         ByteArrayFS residues = dnaView.createByteArrayFS(protein.length);
+         residues.copyFromArray(protein, 0, 0, protein.length);
+         AnnotationFS proteinOrf = store.getOrfStart(i) < 0 ? dnaView.createAnnotation(orfType, end, end)
+               : dnaView.createAnnotation(orfType, begin + store.getOrfStart(i), begin + store.getOrfEnd(i));
+         proteinOrf.setFeatureValue(sequenceFeature, sequence);
+         proteinOrf.setFeatureValue(residuesFeature, residues);
+         dnaView.addFsToIndexes(proteinOrf);
+         begin = end + 1;
+      }
+      next = to;
+      span.end(to - from);
+   }
+
+   @Override
+   public Progress[] getProgress() {
+      return new Progress[] { new ProgressImpl(next, store.size(), Progress.ENTITIES) };
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (store != null) {
+         store.close();
+      }
+   }
+}
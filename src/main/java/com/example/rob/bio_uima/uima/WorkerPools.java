@@ -0,0 +1,58 @@
+package com.example.rob.bio_uima.uima;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The fork-join pools the annotators and consumers run their tasks on. Unless a component is configured with its own
+ * number of workers it uses the one pool shared by the whole JVM, so that a pipeline (or a server running several of
+ * them) does not start a thread per processor for each component that parallelizes.
+ * 
+ * <p>
+ * The shared pool is created on first use, with the number of threads given by the system property
+ * {@value #PROPERTY} (e.g. <code>-Dbio_uima.workers=4</code>) or one per processor. Its threads are daemons and it is
+ * never shut down.
+ */
+final class WorkerPools {
+
+   /**
+    * Name of the system property holding the number of threads of the shared pool.
+    */
+   static final String         PROPERTY = "bio_uima.workers";
+
+   private static ForkJoinPool shared;
+
+   private WorkerPools() {
+   }
+
+   /**
+    * 
+    * @return The pool shared by the whole JVM.
+    */
+   static synchronized ForkJoinPool shared() {
+      if (shared == null) {
+         int workers = Integer.getInteger(PROPERTY, 0).intValue();
+         shared = new ForkJoinPool(workers > 0 ? workers : Runtime.getRuntime().availableProcessors());
+      }
+      return shared;
+   }
+
+   /**
+    * 
+    * @param workers The number of threads a component was configured with (0 for the shared pool).
+    * @return A new pool of that many threads, or the shared pool.
+    */
+   static ForkJoinPool acquire(int workers) {
+      return workers > 0 ? new ForkJoinPool(workers) : shared();
+   }
+
+   /**
+    * Shuts down a pool returned by {@link #acquire(int)} unless it is the shared pool.
+    * 
+    * @param pool
+    */
+   static synchronized void release(ForkJoinPool pool) {
+      if (pool != null && pool != shared) {
+         pool.shutdown();
+      }
+   }
+}
@@ -0,0 +1,157 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+
+import org.junit.Test;
+
+public class AlignmentCacheTest {
+
+   private static final String S1 = "MVILLMIKIVLIFVVVMLIVMKNVKKVLNLVNVGMLVNMVMLVGVINFLIGFLLNKKFLVNV";
+   private static final String S2 = "MKHRGGSYGYCYGFGCYCEGLSDSTPTWPLPNKTCSGK";
+
+   @Test
+   public final void testAlign_InMemory() {
+      SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      AlignmentCache cache = new AlignmentCache(2);
+      Alignment expected = sa.align(S1, S2);
+
+      assertEquals(expected.toCigar(), cache.align(sa, S1, S2).toCigar());
+      assertEquals(expected.getScore(), cache.score(sa, S1, S2));
+      assertEquals(expected.getFirstRow(), cache.align(sa, S1, S2).getFirstRow());
+      assertEquals(2, cache.getHitCount());
+      assertEquals(1, cache.getMissCount());
+
+      // Other costs are another key.
+      cache.score(new SequenceAligner(-1, -1, 0, -2), S1, S2);
+      assertEquals(2, cache.getMissCount());
+   }
+
+   @Test
+   public final void testScore_DoesNotAnswerAlign() {
+      SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      AlignmentCache cache = new AlignmentCache(10);
+      cache.score(sa, S1, S2);
+      assertEquals(sa.align(S1, S2).toCigar(), cache.align(sa, S1, S2).toCigar());
+      assertEquals(2, cache.getMissCount());
+      cache.score(sa, S1, S2);
+      assertEquals(1, cache.getHitCount());
+   }
+
+   @Test
+   public final void testAlign_FromFile() throws IOException {
+      SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      File file = File.createTempFile("alignments", ".cache");
+      file.deleteOnExit();
+
+      AlignmentCache cache = AlignmentCache.open(10, file.getPath());
+      try {
+         cache.align(sa, S1, S2);
+         cache.score(sa, S2, S1);
+      }
+      finally {
+         cache.close();
+      }
+      long complete = file.length();
+
+      // A record cut short is dropped.
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+         raf.setLength(complete + 10);
+      }
+      finally {
+         raf.close();
+      }
+
+      cache = AlignmentCache.open(10, file.getPath());
+      try {
+         assertEquals(complete, file.length());
+         assertEquals(sa.align(S1, S2).toCigar(), cache.align(sa, S1, S2).toCigar());
+         assertEquals(sa.score(S2, S1), cache.score(sa, S2, S1));
+         assertEquals(2, cache.getHitCount());
+         assertEquals(0, cache.getMissCount());
+
+         // New entries are appended to the file.
+         cache.score(sa, S1, S1);
+      }
+      finally {
+         cache.close();
+      }
+      cache = AlignmentCache.open(0, file.getPath());
+      try {
+         assertEquals(sa.score(S1, S1), cache.score(sa, S1, S1));
+         assertEquals(1, cache.getHitCount());
+      }
+      finally {
+         cache.close();
+      }
+   }
+
+   @Test
+   public final void testOpen_SharesInstancePerFile() throws IOException {
+      SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      File file = File.createTempFile("alignments", ".cache");
+      file.deleteOnExit();
+
+      // As two annotator instances configured with the same file would.
+      AlignmentCache first = AlignmentCache.open(10, file.getPath());
+      AlignmentCache second = AlignmentCache.open(10, new File(file.getParentFile(), ".").getPath() + File.separator
+            + file.getName());
+      try {
+         assertSame(first, second);
+         first.align(sa, S1, S2);
+         second.align(sa, S2, S1);
+      }
+      finally {
+         first.close();
+      }
+      second.align(sa, S1, S1);
+      second.close();
+
+      AlignmentCache cache = AlignmentCache.open(10, file.getPath());
+      try {
+         assertNotSame(first, cache);
+         assertEquals(sa.align(S1, S2).toCigar(), cache.align(sa, S1, S2).toCigar());
+         assertEquals(sa.align(S2, S1).toCigar(), cache.align(sa, S2, S1).toCigar());
+         assertEquals(sa.align(S1, S1).toCigar(), cache.align(sa, S1, S1).toCigar());
+         assertEquals(3, cache.getHitCount());
+      }
+      finally {
+         cache.close();
+      }
+   }
+
+   @Test
+   public final void testScore_WhenFileIsFull() throws IOException {
+      SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      File file = File.createTempFile("alignments", ".cache");
+      file.deleteOnExit();
+
+      // Room for the header and one score-only record.
+      AlignmentCache cache = AlignmentCache.open(10, file.getPath(), 8 + 24);
+      try {
+         cache.score(sa, S1, S2);
+         try {
+            cache.score(sa, S2, S1);
+            fail("Expected the file to be full.");
+         }
+         catch (UncheckedIOException e) {
+            assertEquals(32, file.length());
+         }
+         // The refused entry is still cached in memory.
+         assertEquals(sa.score(S2, S1), cache.score(sa, S2, S1));
+         assertEquals(1, cache.getHitCount());
+      }
+      finally {
+         cache.close();
+      }
+   }
+
+}
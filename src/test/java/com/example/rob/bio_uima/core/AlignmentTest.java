@@ -0,0 +1,52 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AlignmentTest {
+
+   @Test
+   public final void testAlign_RunsAndRows() {
+      final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      Alignment alignment = sa.align("AAGT", "AGT");
+      assertEquals("1I3M", alignment.swap().toCigar());
+      assertEquals("1D3M", alignment.toCigar());
+      assertEquals("AAGT", alignment.getFirstRow());
+      assertEquals("-AGT", alignment.getSecondRow());
+      assertEquals(4, alignment.getScore());
+      assertEquals(2, alignment.getRunCount());
+   }
+
+   @Test
+   public final void testAlign_ScoreMatchesCostMatrix() {
+      final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      final String s1 = "MVILLMIKIVLIFVVVMLIVMKNVKKVLNLVNVGMLVNMVMLVGVINFLIGFLLNKKFLVNV";
+      final String s2 = "MKHRGGSYGYCYGFGCYCEGLSDSTPTWPLPNKTCSGK";
+      Alignment alignment = sa.align(s1, s2);
+      assertEquals(sa.computeCostMatrix(s1, s2)[s1.length()][s2.length()], alignment.getScore());
+      assertEquals(alignment.getScore(), sa.scoreAlignment(alignment.getFirstRow(), alignment.getSecondRow()));
+
+      // Runs of the same operation are always merged.
+      for (int r = 1; r < alignment.getRunCount(); r++) {
+         assertTrue(alignment.getOp(r) != alignment.getOp(r - 1));
+      }
+   }
+
+   @Test
+   public final void testFromCigar() {
+      Alignment alignment = Alignment.fromCigar("2M1X2I1D", "ACGT", "ACTGG", -3);
+      assertEquals("ACG--T", alignment.getFirstRow());
+      assertEquals("ACTGG-", alignment.getSecondRow());
+      assertEquals(6, alignment.getLength());
+      assertEquals(-3, alignment.getScore());
+      assertEquals("2M1X2I1D", alignment.toCigar());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public final void testFromCigar_WhenInvalid() {
+      Alignment.fromCigar("2M3", "AC", "AC", 0);
+   }
+
+}
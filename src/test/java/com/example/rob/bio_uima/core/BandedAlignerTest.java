@@ -0,0 +1,68 @@
+package com.example.rob.bio_uima.core;
+
+import static com.example.rob.bio_uima.core.RandomSequences.mutate;
+import static com.example.rob.bio_uima.core.RandomSequences.protein;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.example.rob.bio_uima.core.RandomSequences.Edit;
+
+public class BandedAlignerTest {
+
+   @Test
+   public final void testScore_MatchesFullMatrix() {
+      final Random random = new Random(11);
+      final SequenceAligner full = new SequenceAligner(-2, -2, 2, -1);
+      final BandedAligner banded = new BandedAligner(-2, -2, 2, -1);
+
+      for (int len : new int[] { 1, 5, 40, 120 }) {
+         for (int i = 0; i < 5; i++) {
+            String s1 = protein(random, len);
+            String s2 = i % 2 == 0 ? mutate(random, s1, s1.length() / 10 + 1, Edit.DELETION, Edit.INSERTION)
+                  : protein(random, 1 + random.nextInt(2 * len));
+            int expected = full.computeCostMatrix(s1, s2)[s1.length()][s2.length()];
+            for (int width : new int[] { 0, 1, 4, Integer.MAX_VALUE }) {
+               assertEquals(expected, banded.score(s1.toCharArray(), s2.toCharArray(), width, BandedAligner.NO_CUTOFF));
+            }
+         }
+      }
+   }
+
+   @Test
+   public final void testScore_Cutoff() {
+      final BandedAligner banded = new BandedAligner(-2, -2, 2, -1);
+      final char[] s1 = "AGTACGCA".toCharArray();
+      final char[] s2 = "TATGC".toCharArray();
+      assertEquals(1, banded.score(s1, s2, 1, 1));
+      assertEquals(BandedAligner.ABANDONED, banded.score(s1, s2, 1, 2));
+      assertEquals(BandedAligner.ABANDONED, banded.score(s1, "WWWWWWWW".toCharArray(), 2, 0));
+   }
+
+   @Test
+   public final void testSequenceAligner_DistanceCutoff() {
+      final SequenceAligner sa = new SequenceAligner(-1, -1, 0, -2);
+      sa.setDistanceCutoff(5);
+      assertEquals(5, sa.distance("KITTEN", "SITTING"));
+      sa.setDistanceCutoff(4);
+      assertEquals(Integer.MAX_VALUE, sa.distance("KITTEN", "SITTING"));
+      sa.clearCutoff();
+      assertEquals(5, sa.distance("KITTEN", "SITTING"));
+   }
+
+   @Test
+   public final void testSequenceAligner_Banded() {
+      final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      final String s1 = "MVILLMIKIVLIFVVVMLIVMKNVKKVLNLVNVGMLVNMVMLVGVINFLIGFLLNKKFLVNV";
+      final String s2 = "MVILLNMIIVLIFVGIMIMLIVINFVKIKKLILVIVIGFIFFVIVMVFLILNLLKLMVNVNLVK";
+      int expected = sa.score(s1, s2);
+      sa.setBandWidth(2);
+      assertEquals(expected, sa.score(s1, s2));
+      sa.setScoreCutoff(expected + 1);
+      assertTrue(sa.score(s1, s2) == SequenceAligner.ABANDONED);
+   }
+
+}
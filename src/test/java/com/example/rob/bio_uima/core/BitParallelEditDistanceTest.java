@@ -0,0 +1,54 @@
+package com.example.rob.bio_uima.core;
+
+import static com.example.rob.bio_uima.core.RandomSequences.mutate;
+import static com.example.rob.bio_uima.core.RandomSequences.protein;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.example.rob.bio_uima.core.RandomSequences.Edit;
+
+public class BitParallelEditDistanceTest {
+
+   @Test
+   public final void testLevenshtein() {
+      final BitParallelEditDistance bp = new BitParallelEditDistance(true);
+      assertEquals(3, bp.distance("KITTEN", "SITTING"));
+      assertEquals(4, bp.distance("", "ACGT"));
+      assertEquals(0, bp.distance("ACGT", "ACGT"));
+   }
+
+   @Test
+   public final void testIndel() {
+      final BitParallelEditDistance bp = new BitParallelEditDistance(false);
+      assertEquals(5, bp.distance("KITTEN", "SITTING"));
+      assertEquals(4, bp.distance("ACGT", ""));
+   }
+
+   @Test
+   public final void testMatchesDynamicProgramming_MultipleBlocks() {
+      final Random random = new Random(42);
+      final BitParallelEditDistance levenshtein = new BitParallelEditDistance(true);
+      final BitParallelEditDistance indel = new BitParallelEditDistance(false);
+      final SequenceAligner levenshteinDp = new SequenceAligner(-1, -1, 0, -1);
+      final SequenceAligner indelDp = new SequenceAligner(-1, -1, 0, -2);
+
+      for (int len : new int[] { 1, 63, 64, 65, 130, 200 }) {
+         String s1 = protein(random, len);
+         String s2 = mutate(random, s1, s1.length() / 5 + 1, Edit.DELETION, Edit.INSERTION, Edit.SUBSTITUTION);
+         assertEquals(-levenshteinDp.computeCostMatrix(s1, s2)[s1.length()][s2.length()], levenshtein.distance(s1, s2));
+         assertEquals(-indelDp.computeCostMatrix(s1, s2)[s1.length()][s2.length()], indel.distance(s1, s2));
+      }
+   }
+
+   @Test
+   public final void testSequenceAlignerRoutesScaledCosts() {
+      final String s1 = "MVILLMIKIVLIFVVVMLIVMKNVKKVLNLVNVGMLVNMVMLVGVINFLIGFLLNKKFLVNV";
+      final String s2 = "MVILLNMIIVLIFVGIMIMLIVINFVKIKKLILVIVIGFIFFVIVMVFLILNLLKLMVNVNLVK";
+      final SequenceAligner sa = new SequenceAligner(-3, -3, 0, -6);
+      assertEquals(sa.computeCostMatrix(s1, s2)[s1.length()][s2.length()], sa.score(s1, s2));
+   }
+
+}
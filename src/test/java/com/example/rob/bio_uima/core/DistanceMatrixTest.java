@@ -0,0 +1,87 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class DistanceMatrixTest {
+
+   private static final List<String> SEQS = Arrays.asList("kitten", "sitting", "mitten", "fitting", "kitten", "k", "");
+
+   @Test
+   public final void testIndex_PacksUpperTriangleByRow() {
+      int n = 5;
+      long expected = 0;
+      for (int i = 0; i < n; i++) {
+         for (int j = i + 1; j < n; j++) {
+            assertEquals(expected++, DistanceMatrix.index(n, i, j));
+         }
+      }
+      assertEquals(DistanceMatrix.entryCount(n), expected);
+   }
+
+   @Test
+   public final void testGetAndSet_AreSymmetric() {
+      DistanceMatrix matrix = new DistanceMatrix(4);
+      matrix.set(3, 1, 2.5f);
+      assertEquals(2.5f, matrix.get(1, 3), 0);
+      assertEquals(2.5f, matrix.get(3, 1), 0);
+      assertEquals(0, matrix.get(2, 2), 0);
+   }
+
+   @Test
+   public final void testFill_WithEditDistances() {
+      // Free matches: the distances are Levenshtein distances.
+      SequenceAligner levenshtein = new SequenceAligner(-1, -1, 0, -1);
+      ForkJoinPool pool = new ForkJoinPool(3);
+      try {
+         DistanceMatrix matrix = new DistanceMatrix(SEQS.size());
+         matrix.fill(levenshtein, SEQS, pool);
+         assertDistances(matrix, levenshtein);
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+
+   @Test
+   public final void testFill_WhenMapped() throws Exception {
+      SequenceAligner aligner = new SequenceAligner(-2, -2, 2, -1);
+      File file = File.createTempFile("distances", ".bin");
+      ForkJoinPool pool = new ForkJoinPool(2);
+      try {
+         DistanceMatrix matrix = new DistanceMatrix(SEQS.size(), file.getPath());
+         try {
+            matrix.fill(aligner, SEQS, pool);
+            assertDistances(matrix, aligner);
+            assertEquals(4 * DistanceMatrix.entryCount(SEQS.size()), file.length());
+         }
+         finally {
+            matrix.close();
+         }
+      }
+      finally {
+         pool.shutdown();
+         file.delete();
+      }
+   }
+
+   private static void assertDistances(DistanceMatrix matrix, SequenceAligner aligner) {
+      for (int i = 0; i < SEQS.size(); i++) {
+         for (int j = 0; j < SEQS.size(); j++) {
+            String x = SEQS.get(i);
+            String y = SEQS.get(j);
+            float expected = i == j ? 0 : (aligner.maxScore(x.length(), x.length())
+                  + aligner.maxScore(y.length(), y.length())) / 2f - aligner.score(x, y);
+            assertEquals(x + "/" + y, expected, matrix.get(i, j), 0);
+         }
+      }
+      // Identical sequences.
+      assertEquals(0, matrix.get(0, 4), 0);
+   }
+}
@@ -0,0 +1,81 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FastaReaderTest {
+
+   private static final String FASTA = "# first\nACGT\n\n# second  description\nAC\nGT\r\nTT\n\n>third\n\n>fourth x\nGGG";
+
+   @Test
+   public final void testRead_MixedHeaders() throws IOException {
+      List<FastaRecord> records = readAll(FASTA, 1 << 20);
+      assertEquals(4, records.size());
+      assertEquals("first", records.get(0).getId());
+      assertEquals("ACGT", records.get(0).getSequence().toString());
+      assertEquals("second", records.get(1).getId());
+      assertEquals("ACGTTT", records.get(1).getSequence().toString());
+      assertEquals("third", records.get(2).getId());
+      assertEquals(0, records.get(2).getSequence().length());
+      assertEquals("fourth", records.get(3).getId());
+      assertEquals("GGG", records.get(3).getSequence().toString());
+      assertEquals("GG", records.get(3).getSequence().subSequence(1, 3).toString());
+   }
+
+   @Test
+   public final void testRead_WithSmallWindows() throws IOException {
+      List<FastaRecord> expected = readAll(FASTA, 1 << 20);
+      for (int window = 1; window < 12; window++) {
+         List<FastaRecord> records = readAll(FASTA, window);
+         assertEquals(expected.size(), records.size());
+         for (int i = 0; i < records.size(); i++) {
+            assertEquals(expected.get(i).getId(), records.get(i).getId());
+            assertEquals(expected.get(i).getSequence().toString(), records.get(i).getSequence().toString());
+         }
+      }
+   }
+
+   @Test
+   public final void testRead_WithoutHeader() throws IOException {
+      List<FastaRecord> records = readAll("\n\nACGT\nAC\n\n", 4);
+      assertEquals(1, records.size());
+      assertEquals("", records.get(0).getId());
+      assertEquals("ACGTAC", records.get(0).getSequence().toString());
+   }
+
+   private static List<FastaRecord> readAll(String contents, int windowSize) throws IOException {
+      File file = File.createTempFile("fasta", ".txt");
+      file.deleteOnExit();
+      FileOutputStream out = new FileOutputStream(file);
+      try {
+         out.write(contents.getBytes("US-ASCII"));
+      }
+      finally {
+         out.close();
+      }
+
+      List<FastaRecord> records = new ArrayList<FastaRecord>();
+      FastaReader reader = new FastaReader(file.getPath(), windowSize);
+      try {
+         FastaRecord record = reader.read();
+         while (record != null) {
+            records.add(record);
+            record = reader.read();
+         }
+         assertNull(reader.read());
+      }
+      finally {
+         reader.close();
+      }
+      return records;
+   }
+
+}
@@ -0,0 +1,68 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class GuideTreeTest {
+
+   private static final List<String> NAMES = Arrays.asList("a", "b", "c", "d", "e");
+
+   @Test
+   public final void testBuild_Upgma() {
+      // The example of the Wikipedia UPGMA article.
+      DistanceMatrix matrix = matrix(new float[][] { { 17, 21, 31, 23 }, { 30, 34, 21 }, { 28, 39 }, { 43 } });
+      assertEquals("(((a:8.5,b:8.5):2.5,e:11.0):5.5,(c:14.0,d:14.0):2.5);", build(matrix, GuideTree.Method.UPGMA));
+   }
+
+   @Test
+   public final void testBuild_NeighborJoining() {
+      // The example of the Wikipedia neighbor joining article; the ties are broken by the lowest row.
+      DistanceMatrix matrix = matrix(new float[][] { { 5, 9, 9, 8 }, { 10, 10, 9 }, { 8, 7 }, { 3 } });
+      assertEquals("((((a:2.0,b:3.0):3.0,c:4.0):2.0,d:2.0):0.5,e:0.5);",
+            build(matrix, GuideTree.Method.NEIGHBOR_JOINING));
+   }
+
+   @Test
+   public final void testBuild_WithOneOrTwoSequences() {
+      assertEquals("a;", build(new DistanceMatrix(1), GuideTree.Method.UPGMA));
+      DistanceMatrix matrix = matrix(new float[][] { { 3 } });
+      assertEquals("(a:1.5,b:1.5);", build(matrix, GuideTree.Method.NEIGHBOR_JOINING));
+   }
+
+   @Test
+   public final void testToNewick_QuotesNames() {
+      DistanceMatrix matrix = matrix(new float[][] { { 2 } });
+      GuideTree tree = GuideTree.build(matrix, GuideTree.Method.UPGMA, ForkJoinPool.commonPool());
+      assertEquals("('sp|P1 (x)':1.0,'Rob''s':1.0);", tree.toNewick(Arrays.asList("sp|P1 (x)", "Rob's")));
+   }
+
+   /**
+    * 
+    * @param upper The upper triangle, row by row.
+    * @return The matrix.
+    */
+   private static DistanceMatrix matrix(float[][] upper) {
+      DistanceMatrix matrix = new DistanceMatrix(upper.length + 1);
+      for (int i = 0; i < upper.length; i++) {
+         for (int j = 0; j < upper[i].length; j++) {
+            matrix.set(i, i + 1 + j, upper[i][j]);
+         }
+      }
+      return matrix;
+   }
+
+   private static String build(DistanceMatrix matrix, GuideTree.Method method) {
+      ForkJoinPool pool = new ForkJoinPool(3);
+      try {
+         return GuideTree.build(matrix, method, pool).toNewick(NAMES);
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+}
@@ -0,0 +1,55 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class KmerIndexTest {
+
+   private static final List<String> SEQS = Arrays.asList("MKVLAAGIL", "MKVLAAGQQ", "WWWWWWWW", "QQMKVLYY", "MK");
+
+   @Test
+   public final void testFindCandidates() {
+      KmerIndex index = new KmerIndex(SEQS, 3);
+      assertEquals("0-1:5 0-3:2 1-3:2", candidates(index, 1, 0));
+      assertEquals("0-1:5", candidates(index, 3, 0));
+   }
+
+   @Test
+   public final void testFindCandidates_SkipsFrequentKmers() {
+      KmerIndex index = new KmerIndex(SEQS, 3);
+      // MKV and KVL occur in three sequences.
+      assertEquals("0-1:3", candidates(index, 1, 2));
+   }
+
+   @Test
+   public final void testFindCandidates_WithHashedKmers() {
+      List<String> seqs = Arrays.asList("ACDEFGHIKLMNPQRST", "XXACDEFGHIKLMNPQ", "TSRQPNMLKIHGFEDCA");
+      assertEquals("0-1:6", candidates(new KmerIndex(seqs, 9), 1, 0));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public final void testKmerIndex_WhenKIsTooLong() {
+      new KmerIndex(SEQS, KmerIndex.MAX_K + 1);
+   }
+
+   private static String candidates(KmerIndex index, int minShared, int maxOccurrences) {
+      final List<String> pairs = new ArrayList<String>();
+      index.findCandidates(minShared, maxOccurrences, new KmerIndex.Handler() {
+         @Override
+         public void pair(int first, int second, int shared) {
+            pairs.add(first + "-" + second + ":" + shared);
+         }
+      });
+      StringBuilder sb = new StringBuilder();
+      for (String pair : pairs) {
+         sb.append(sb.length() == 0 ? "" : " ").append(pair);
+      }
+      return sb.toString();
+   }
+
+}
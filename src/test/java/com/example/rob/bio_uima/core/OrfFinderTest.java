@@ -0,0 +1,165 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OrfFinderTest {
+
+   @Test
+   public final void testFindOrfs_ForwardAndReverse() {
+      // Forward: ATG GCT TGG TAA; reverse complement of the tail: ATG CCC TAG.
+      List<Orf> orfs = new OrfFinder(1).findOrfs("ATGGCTTGGTAAGGCTAGGGCAT", 0);
+      assertEquals(2, orfs.size());
+
+      Orf forward = orfs.get(0);
+      assertEquals("MAW", forward.getProtein());
+      assertEquals(Orf.Strand.FORWARD, forward.getStrand());
+      assertEquals(0, forward.getStart());
+      assertEquals(12, forward.getEnd());
+      assertTrue(forward.isComplete());
+
+      Orf reverse = orfs.get(1);
+      assertEquals("MP", reverse.getProtein());
+      assertEquals(Orf.Strand.REVERSE, reverse.getStrand());
+      assertEquals(14, reverse.getStart());
+      assertEquals(23, reverse.getEnd());
+      assertEquals(0, reverse.getFrame());
+      assertTrue(reverse.isComplete());
+   }
+
+   @Test
+   public final void testFindOrfs_PartialAndTopK() {
+      List<Orf> orfs = new OrfFinder(0).findOrfs("ATGAAAAAAAAATGCCC", 1);
+      assertEquals(1, orfs.size());
+      assertEquals("MKKKC", orfs.get(0).getProtein());
+      assertFalse(orfs.get(0).isComplete());
+      assertEquals(0, new OrfFinder(6).findOrfs("ATGAAAAAAAAATGCCC", 0).size());
+   }
+
+   @Test
+   public final void testFindOrfs_TopKIsHeadOfAll() {
+      // FORWARD@14-20 and REVERSE@2-8 tie on length; the lower start ranks first.
+      assertTopKIsHeadOfAll("TTTCGCATGCGGGTATGAGA", 2);
+      Random random = new Random(8);
+      for (int t = 0; t < 500; t++) {
+         StringBuilder sb = new StringBuilder();
+         int len = 10 + random.nextInt(60);
+         for (int i = 0; i < len; i++) {
+            sb.append("ACGT".charAt(random.nextInt(4)));
+         }
+         assertTopKIsHeadOfAll(sb.toString(), 1 + random.nextInt(3));
+      }
+   }
+
+   private static void assertTopKIsHeadOfAll(String dna, int k) {
+      OrfFinder finder = new OrfFinder(0);
+      List<Orf> all = finder.findOrfs(dna, 0);
+      List<String> expected = new ArrayList<String>();
+      for (Orf orf : all.subList(0, Math.min(k, all.size()))) {
+         expected.add(describe(orf.getStrand(), orf.getStart(), orf.getEnd(), orf.getFrame(), orf.isComplete(),
+               orf.getProtein()));
+      }
+      List<String> actual = new ArrayList<String>();
+      for (Orf orf : finder.findOrfs(dna, k)) {
+         actual.add(describe(orf.getStrand(), orf.getStart(), orf.getEnd(), orf.getFrame(), orf.isComplete(),
+               orf.getProtein()));
+      }
+      assertEquals(dna + " k=" + k, expected, actual);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public final void testFindOrfs_WhenSequenceContainsInvalidCharacters() {
+      new OrfFinder(0).findOrfs("ATGZ", 0);
+   }
+
+   @Test
+   public final void testFindOrfs_MatchesSixFrameTranslation() {
+      final Random random = new Random(3);
+      for (int t = 0; t < 20; t++) {
+         StringBuilder sb = new StringBuilder();
+         int len = 50 + random.nextInt(300);
+         for (int i = 0; i < len; i++) {
+            sb.append("ACGT".charAt(random.nextInt(4)));
+         }
+         String dna = sb.toString();
+
+         List<String> expected = naiveOrfs(dna);
+         List<String> actual = new ArrayList<String>();
+         for (Orf orf : new OrfFinder(0).findOrfs(dna, 0)) {
+            actual.add(describe(orf.getStrand(), orf.getStart(), orf.getEnd(), orf.getFrame(), orf.isComplete(),
+                  orf.getProtein()));
+         }
+         Collections.sort(expected);
+         Collections.sort(actual);
+         assertEquals(expected, actual);
+      }
+   }
+
+   /**
+    * Translates each frame of both strands separately.
+    */
+   private static List<String> naiveOrfs(String dna) {
+      List<String> orfs = new ArrayList<String>();
+      int len = dna.length();
+      for (Orf.Strand strand : Orf.Strand.values()) {
+         String seq = strand == Orf.Strand.FORWARD ? dna : reverseComplement(dna);
+         for (int frame = 0; frame < 3; frame++) {
+            int start = -1;
+            StringBuilder protein = new StringBuilder();
+            for (int p = frame; p + 3 <= len; p += 3) {
+               char aa = translate(seq.substring(p, p + 3));
+               if (start < 0 && aa == 'M') {
+                  start = p;
+               }
+               if (start >= 0 && aa == '*') {
+                  orfs.add(describe(strand, start, p + 3, frame, true, protein.toString(), len));
+                  start = -1;
+                  protein.setLength(0);
+               }
+               else if (start >= 0) {
+                  protein.append(aa);
+               }
+            }
+            if (start >= 0) {
+               orfs.add(describe(strand, start, start + 3 * protein.length(), frame, false, protein.toString(), len));
+            }
+         }
+      }
+      return orfs;
+   }
+
+   private static String describe(Orf.Strand strand, int start, int end, int frame, boolean complete, String protein,
+         int len) {
+      if (strand == Orf.Strand.REVERSE) {
+         return describe(strand, len - end, len - start, frame, complete, protein);
+      }
+      return describe(strand, start, end, frame, complete, protein);
+   }
+
+   private static String describe(Orf.Strand strand, int start, int end, int frame, boolean complete, String protein) {
+      return strand + " " + start + " " + end + " " + frame + " " + complete + " " + protein;
+   }
+
+   private static char translate(String codon) {
+      String bases = "ACGT";
+      return ProteinSequencer.CODON_TABLE[bases.indexOf(codon.charAt(0)) * 16 + bases.indexOf(codon.charAt(1)) * 4
+            + bases.indexOf(codon.charAt(2))];
+   }
+
+   private static String reverseComplement(String dna) {
+      StringBuilder sb = new StringBuilder(dna.length());
+      for (int i = dna.length() - 1; i >= 0; i--) {
+         sb.append("TGCA".charAt("ACGT".indexOf(dna.charAt(i))));
+      }
+      return sb.toString();
+   }
+
+}
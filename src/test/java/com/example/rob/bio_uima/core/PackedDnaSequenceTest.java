@@ -0,0 +1,57 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PackedDnaSequenceTest {
+
+   @Test
+   public final void testPack_RoundTrip() {
+      PackedDnaSequence seq = PackedDnaSequence.pack("acgTTGCA");
+      assertEquals(8, seq.length());
+      assertEquals("ACGTTGCA", seq.toString());
+      assertEquals('T', seq.charAt(3));
+      assertEquals("GTT", seq.subSequence(2, 5).toString());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public final void testPack_WhenSequenceIsEmpty() {
+      PackedDnaSequence.pack("");
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public final void testPack_WhenSequenceContainsInvalidCharacters() {
+      PackedDnaSequence.pack("ACGN");
+   }
+
+   @Test
+   public final void testCodon() {
+      PackedDnaSequence seq = PackedDnaSequence.pack("CATGT");
+      assertEquals(ProteinSequencer.START_CODON, seq.codon(1));
+      assertEquals('C', ProteinSequencer.CODON_TABLE[seq.codon(2)]);
+   }
+
+   @Test
+   public final void testReverseComplement() {
+      Random random = new Random(5);
+      for (int len = 1; len <= 130; len++) {
+         StringBuilder sb = new StringBuilder();
+         for (int i = 0; i < len; i++) {
+            sb.append("ACGT".charAt(random.nextInt(4)));
+         }
+         String dna = sb.toString();
+
+         StringBuilder expected = new StringBuilder();
+         for (int i = len - 1; i >= 0; i--) {
+            expected.append("TGCA".charAt("ACGT".indexOf(dna.charAt(i))));
+         }
+         PackedDnaSequence reversed = PackedDnaSequence.pack(dna).reverseComplement();
+         assertEquals(expected.toString(), reversed.toString());
+         assertEquals(dna, reversed.reverseComplement().toString());
+      }
+   }
+
+}
@@ -2,6 +2,9 @@ package com.example.rob.bio_uima.core;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
 /**
@@ -41,6 +44,13 @@ public class ProteinSequencerTest {
       _seq.findLongestProteinOrf("ATT");
    }
 
+   @Test
+   public final void testSequence_WhenOrfIsClosedByStopCodon() {
+      assertEquals("", _seq.findLongestProteinOrf("ATGGCTTAA"));
+      assertEquals("MAW", _seq.findLongestProteinOrf("ATGGCTTGG"));
+      assertEquals("MW", _seq.findLongestProteinOrf("CCATGGCTTAAATGTGGA"));
+   }
+
    @Test
    public final void testSequence_WhenSequenceIsScxaButeu() {
       String protein = _seq
@@ -77,4 +87,28 @@ public class ProteinSequencerTest {
       assertEquals("MVIFVNVMVVNFLVFLVMKVVIKNVNLMVVLMVIVGLGVLLVGVKVFLMKKLGNLKLILV", protein);
    }
 
+   @Test
+   public final void testFindLongestOrf_InParallel() {
+      ForkJoinPool pool = new ForkJoinPool(4);
+      Random random = new Random(42);
+      try {
+         for (int n = 0; n < 200; n++) {
+            // Few stop codons in the GC-rich sequences, so ORFs span many chunks.
+            String bases = n % 2 == 0 ? "ACGT" : "ACGGCCGT";
+            StringBuilder dna = new StringBuilder();
+            for (int length = random.nextInt(2000); dna.length() < length;) {
+               dna.append(random.nextInt(20) == 0 ? "ATG" : bases.charAt(random.nextInt(bases.length())));
+            }
+            PackedDnaSequence packed = PackedDnaSequence.pack(dna);
+            String expected = String.valueOf(_seq.findLongestOrf(packed));
+            for (int chunkLength = 1; chunkLength <= 64; chunkLength *= 4) {
+               assertEquals(dna.toString(), expected, String.valueOf(_seq.findLongestOrf(packed, pool, chunkLength)));
+            }
+         }
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+
 }
@@ -0,0 +1,62 @@
+package com.example.rob.bio_uima.core;
+
+import java.util.Random;
+
+/**
+ * Random proteins and random edits of them, for the tests that compare aligners against each other.
+ */
+final class RandomSequences {
+
+   /**
+    * The 20 amino acids.
+    */
+   static final String ALPHABET = "ACDEFGHIKLMNPQRSTVWY";
+
+   /**
+    * Kinds of edits made by {@link RandomSequences#mutate(Random, String, int, Edit...)}.
+    */
+   enum Edit {
+      DELETION, INSERTION, SUBSTITUTION
+   }
+
+   private RandomSequences() {
+   }
+
+   static String protein(Random random, int length) {
+      StringBuilder sb = new StringBuilder(length);
+      for (int i = 0; i < length; i++) {
+         sb.append(residue(random));
+      }
+      return sb.toString();
+   }
+
+   /**
+    * 
+    * @param random
+    * @param seq
+    * @param edits The number of edits to make; fewer are made if the sequence is shortened to a single residue.
+    * @param mix The kinds of edits to choose from, each equally likely.
+    * @return The edited sequence.
+    */
+   static String mutate(Random random, String seq, int edits, Edit... mix) {
+      StringBuilder sb = new StringBuilder(seq);
+      for (int i = 0; i < edits && sb.length() > 1; i++) {
+         int pos = random.nextInt(sb.length());
+         switch (mix[random.nextInt(mix.length)]) {
+            case DELETION:
+               sb.deleteCharAt(pos);
+               break;
+            case INSERTION:
+               sb.insert(pos, residue(random));
+               break;
+            default:
+               sb.setCharAt(pos, residue(random));
+         }
+      }
+      return sb.toString();
+   }
+
+   private static char residue(Random random) {
+      return ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+   }
+}
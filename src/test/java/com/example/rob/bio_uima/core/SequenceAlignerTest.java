@@ -14,6 +14,67 @@ public class SequenceAlignerTest {
       assertEquals("-AGT", res[1]);
    }
 
+   @Test
+   public final void testComputeAlignments_IsOptimal() {
+      final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      final String s1 = "MVILLMIKIVLIFVVVMLIVMKNVKKVLNLVNVGMLVNMVMLVGVINFLIGFLLNKKFLVNV";
+      final String s2 = "MKHRGGSYGYCYGFGCYCEGLSDSTPTWPLPNKTCSGK";
+      String[] res = sa.computeAlignments(s1, s2);
+      int[][] cost = sa.computeCostMatrix(s1, s2);
+      assertEquals(s1, res[0].replace("-", ""));
+      assertEquals(s2, res[1].replace("-", ""));
+      assertEquals(cost[s1.length()][s2.length()], score(res[0], res[1], -2, -2, 2, -1));
+      assertEquals(cost[s1.length()][s2.length()], sa.scoreAlignment(res[0], res[1]));
+   }
+
+   @Test
+   public final void testScore_MatchesCostMatrix() {
+      final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      final String s1 = "AGTACGCA";
+      final String s2 = "TATGC";
+      assertEquals(sa.computeCostMatrix(s1, s2)[s1.length()][s2.length()], sa.score(s1, s2));
+      assertEquals(-8, sa.score("", "ACGT"));
+   }
+
+   @Test
+   public final void testDistance_Levenshtein() {
+      final SequenceAligner sa = new SequenceAligner(-1, -1, 0, -2);
+      assertEquals(0, sa.distance("KITTEN", "KITTEN"));
+      assertEquals(5, sa.distance("KITTEN", "SITTING"));
+      assertEquals(4, sa.distance("", "ACGT"));
+   }
+
+   @Test
+   public final void testPlan() {
+      final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      assertEquals(SequenceAligner.Strategy.FULL_MATRIX, sa.plan("AAGT", "AGT", true));
+      assertEquals(SequenceAligner.Strategy.SCALAR, sa.plan("AAGT", "AGT", false));
+      sa.setBandWidth(2);
+      assertEquals(SequenceAligner.Strategy.BANDED, sa.plan("AAGT", "AGT", false));
+      sa.setMemoryBudget(0);
+      assertEquals(SequenceAligner.Strategy.HIRSCHBERG, sa.plan("AAGT", "AGT", true));
+      assertEquals(SequenceAligner.Strategy.BIT_PARALLEL, new SequenceAligner(-1, -1, 0, -1).plan("AB", "BA", false));
+   }
+
+   @Test
+   public final void testAlign_SameScoreForEveryStrategy() {
+      final String s1 = "MVILLMIKIVLIFVVVMLIVMKNVKKVLNLVNVGMLVNMVMLVGVINFLIGFLLNKKFLVNV";
+      final String s2 = "MKHRGGSYGYCYGFGCYCEGLSDSTPTWPLPNKTCSGK";
+      final SequenceAligner full = new SequenceAligner(-2, -2, 2, -1);
+      final SequenceAligner hirschberg = new SequenceAligner(full);
+      hirschberg.setMemoryBudget(0);
+      final SequenceAligner leaves = new SequenceAligner(full);
+      leaves.setMemoryBudget(1000);
+      leaves.setHirschbergCutoff(100);
+
+      int expected = full.computeCostMatrix(s1, s2)[s1.length()][s2.length()];
+      assertEquals(expected, full.align(s1, s2).getScore());
+      assertEquals(SequenceAligner.Strategy.FULL_MATRIX, full.getLastStrategy());
+      assertEquals(expected, hirschberg.align(s1, s2).getScore());
+      assertEquals(SequenceAligner.Strategy.HIRSCHBERG, hirschberg.getLastStrategy());
+      assertEquals(expected, leaves.align(s1, s2).getScore());
+   }
+
    @Test
    public final void testNeedlemanWunsch() {
       final String s1 = "L";
@@ -26,4 +87,23 @@ public class SequenceAlignerTest {
       assertEquals("NLN", res1);
    }
 
+   /**
+    * Scores a pair of gapped alignment strings.
+    */
+   static int score(String a, String b, int ins, int del, int match, int mismatch) {
+      int score = 0;
+      for (int i = 0; i < a.length(); i++) {
+         if (a.charAt(i) == '-') {
+            score += ins;
+         }
+         else if (b.charAt(i) == '-') {
+            score += del;
+         }
+         else {
+            score += a.charAt(i) == b.charAt(i) ? match : mismatch;
+         }
+      }
+      return score;
+   }
+
 }
@@ -0,0 +1,96 @@
+package com.example.rob.bio_uima.core;
+
+import static com.example.rob.bio_uima.core.RandomSequences.mutate;
+import static com.example.rob.bio_uima.core.RandomSequences.protein;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.example.rob.bio_uima.core.RandomSequences.Edit;
+
+public class SequenceSearcherTest {
+
+   @Test
+   public final void testSearch_SameAsScoringEveryPair() {
+      assertSameAsScoringEveryPair(new SequenceAligner(-2, -2, 2, -1));
+   }
+
+   @Test
+   public final void testSearch_WhenDeletionCostIsNotNegative() {
+      // The striped kernel needs a negative deletion cost, so these are scored with the scalar one.
+      assertSameAsScoringEveryPair(new SequenceAligner(-2, 0, 2, -1));
+   }
+
+   private static void assertSameAsScoringEveryPair(final SequenceAligner sa) {
+      Random random = new Random(42);
+      String query = protein(random, 40);
+      final List<String> database = new ArrayList<String>();
+      for (int i = 0; i < 200; i++) {
+         database.add(i % 10 == 0 ? mutate(random, query, 6, Edit.SUBSTITUTION)
+               : protein(random, 5 + random.nextInt(80)));
+      }
+
+      final int[] scores = new int[database.size()];
+      List<Integer> expected = new ArrayList<Integer>();
+      for (int i = 0; i < database.size(); i++) {
+         scores[i] = sa.score(query, database.get(i));
+         expected.add(i);
+      }
+      Collections.sort(expected, new Comparator<Integer>() {
+         @Override
+         public int compare(Integer a, Integer b) {
+            return scores[a] != scores[b] ? scores[b] - scores[a] : a - b;
+         }
+      });
+
+      SequenceSearcher searcher = new SequenceSearcher(sa, 5);
+      List<String> hits = search(searcher, query, database);
+      assertEquals(5, hits.size());
+      for (int rank = 0; rank < 5; rank++) {
+         int index = expected.get(rank);
+         assertEquals(rank + ":" + index + ":" + scores[index], hits.get(rank));
+      }
+      assertTrue(searcher.getScoredCount() < database.size());
+   }
+
+   @Test
+   public final void testSearch_SmallDatabase() {
+      SequenceSearcher searcher = new SequenceSearcher(new SequenceAligner(-2, -2, 2, -1), 3);
+      assertEquals(Arrays.asList("0:1:8", "1:0:4"), search(searcher, "MKVL", Arrays.asList("MKV", "MKVL")));
+      assertEquals(Arrays.asList(), search(searcher, "MKVL", new ArrayList<String>()));
+   }
+
+   @Test
+   public final void testMaxScore() {
+      final SequenceAligner sa = new SequenceAligner(-2, -3, 2, -1);
+      assertEquals(4 * 2 - 2 * 3, sa.maxScore(6, 4));
+      assertEquals(4 * 2 - 2 * 2, sa.maxScore(4, 6));
+      assertEquals(0, new SequenceAligner(-1, -1, -5, -5).maxScore(3, 3) + 6);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public final void testSequenceSearcher_WhenNoHits() {
+      new SequenceSearcher(new SequenceAligner(-2, -2, 2, -1), 0);
+   }
+
+   private static List<String> search(SequenceSearcher searcher, String query, List<String> database) {
+      final List<String> hits = new ArrayList<String>();
+      int count = searcher.search(query, database, new SequenceSearcher.Handler() {
+         @Override
+         public void hit(int rank, int index, int score) {
+            hits.add(rank + ":" + index + ":" + score);
+         }
+      });
+      assertEquals(hits.size(), count);
+      return hits;
+   }
+
+}
@@ -0,0 +1,99 @@
+package com.example.rob.bio_uima.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class SequenceStoreTest {
+
+   private static final String[] NAMES = { "first", "second", "t\u00e9rc\u00e8r" };
+   private static final String[] DNA   = { "CCATGGCCTAAATGTTT", "GGG", "ATGAAACCCGGGTTTACGTACGTACGTACGTACGTACGTAAAT" };
+
+   @Test
+   public final void testSequenceStore() throws IOException {
+      File file = File.createTempFile("sequences", ".store");
+      file.deleteOnExit();
+      SequenceStoreBuilder builder = new SequenceStoreBuilder(file.getPath());
+      try {
+         for (int i = 0; i < DNA.length; i++) {
+            builder.add(NAMES[i], DNA[i]);
+         }
+      }
+      finally {
+         builder.close();
+      }
+
+      SequenceStore store = new SequenceStore(file.getPath());
+      try {
+         assertEquals(DNA.length, store.size());
+         for (int i = 0; i < DNA.length; i++) {
+            PackedDnaSequence packed = PackedDnaSequence.pack(DNA[i]);
+            Orf orf = ProteinSequencer.getInstance().findLongestOrf(packed);
+            assertEquals(NAMES[i], store.getName(i));
+            assertEquals(DNA[i], store.getDna(i).toString());
+            assertEquals(orf == null ? "" : orf.getProtein(), store.getProtein(i).toString());
+            assertEquals(store.getProtein(i).toString(), new String(store.getProteinBytes(i), "US-ASCII"));
+            assertEquals(orf == null ? -1 : orf.getStart(), store.getOrfStart(i));
+            assertEquals(orf == null ? -1 : orf.getEnd(), store.getOrfEnd(i));
+         }
+         assertEquals("", store.getProtein(1).toString());
+      }
+      finally {
+         store.close();
+      }
+   }
+
+   @Test
+   public final void testSequenceStore_WhenFull() throws IOException {
+      File file = File.createTempFile("sequences", ".store");
+      file.deleteOnExit();
+      // Exactly enough for the header, the first two sequences (a DNA word, protein and name each, with padding
+      // between them) and their index entries.
+      long maxBytes = SequenceStore.HEADER_BYTES + (8 + 2 + 5) + 1 + (8 + 0 + 6) + 2 * SequenceStore.ENTRY_BYTES;
+      SequenceStoreBuilder builder = new SequenceStoreBuilder(file.getPath(), maxBytes);
+      try {
+         builder.add(NAMES[0], DNA[0]);
+         builder.add(NAMES[1], DNA[1]);
+         try {
+            builder.add(NAMES[2], DNA[2]);
+            fail("Expected the store to be full.");
+         }
+         catch (IOException e) {
+            assertEquals(2, builder.size());
+         }
+      }
+      finally {
+         builder.close();
+      }
+      assertEquals(maxBytes, file.length());
+
+      SequenceStore store = new SequenceStore(file.getPath());
+      try {
+         assertEquals(2, store.size());
+         assertEquals(DNA[1], store.getDna(1).toString());
+      }
+      finally {
+         store.close();
+      }
+   }
+
+   @Test(expected = IOException.class)
+   public final void testSequenceStore_WhenNotAStore() throws IOException {
+      File file = File.createTempFile("sequences", ".txt");
+      file.deleteOnExit();
+      FileOutputStream out = new FileOutputStream(file);
+      try {
+         out.write("# first\nACGTACGTACGTACGTACGT\n".getBytes("US-ASCII"));
+      }
+      finally {
+         out.close();
+      }
+      new SequenceStore(file.getPath());
+   }
+
+}
@@ -0,0 +1,57 @@
+package com.example.rob.bio_uima.core;
+
+import static com.example.rob.bio_uima.core.RandomSequences.protein;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StripedAlignerTest {
+
+   @Test
+   public final void testScore_Wikipedia() {
+      final StripedAligner striped = new StripedAligner(-2, -2, 2, -1);
+      striped.setQuery("AGTACGCA");
+      assertEquals(1, striped.score("TATGC"));
+   }
+
+   @Test
+   public final void testScore_MatchesScalar() {
+      final Random random = new Random(7);
+      final SequenceAligner scalar = new SequenceAligner(-2, -3, 2, -1);
+      final StripedAligner striped = new StripedAligner(-2, -3, 2, -1);
+
+      for (int len : new int[] { 1, 2, 7, 8, 9, 17, 64, 150 }) {
+         String query = protein(random, len);
+         striped.setQuery(query);
+         for (int i = 0; i < 5; i++) {
+            String subject = protein(random, 1 + random.nextInt(2 * len + 1));
+            int expected = scalar.computeCostMatrix(query, subject)[query.length()][subject.length()];
+            assertEquals(expected, striped.score(subject));
+         }
+      }
+   }
+
+   @Test
+   public final void testScore_EmptyAndNonAscii() {
+      final SequenceAligner scalar = new SequenceAligner(-2, -2, 2, -1);
+      final StripedAligner striped = new StripedAligner(-2, -2, 2, -1);
+      striped.setQuery("\u00e9ACG\u00e9");
+      assertEquals(scalar.computeCostMatrix("\u00e9ACG\u00e9", "AC\u00e9")[5][3], striped.score("AC\u00e9"));
+      assertEquals(-10, striped.score(""));
+      striped.setQuery("");
+      assertEquals(-6, striped.score("ACG"));
+   }
+
+   @Test
+   public final void testSequenceAligner_StripedKernel() {
+      final SequenceAligner sa = new SequenceAligner(-2, -2, 2, -1);
+      final String s1 = "MVILLMIKIVLIFVVVMLIVMKNVKKVLNLVNVGMLVNMVMLVGVINFLIGFLLNKKFLVNV";
+      final String s2 = "MKHRGGSYGYCYGFGCYCEGLSDSTPTWPLPNKTCSGK";
+      int expected = sa.score(s1, s2);
+      sa.setKernel(SequenceAligner.Kernel.STRIPED);
+      assertEquals(expected, sa.score(s1, s2));
+   }
+
+}
@@ -0,0 +1,45 @@
+package com.example.rob.bio_uima.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+   @Test
+   public final void testRecord() {
+      Histogram h = new Histogram();
+      for (long nanos = 1; nanos <= 1000; nanos++) {
+         h.record(nanos);
+      }
+      assertEquals(1000, h.getCount());
+      assertEquals(500500, h.getTotalNanos());
+      assertEquals(1000, h.getMaxNanos());
+   }
+
+   @Test
+   public final void testGetPercentileNanos() {
+      Histogram h = new Histogram();
+      assertEquals(0, h.getPercentileNanos(0.5));
+      for (long nanos = 1; nanos <= 1000; nanos++) {
+         h.record(nanos);
+      }
+      // Within a factor of two of the exact percentiles, and never above the maximum.
+      long p50 = h.getPercentileNanos(0.5);
+      assertTrue(p50 >= 500 && p50 < 1000);
+      long p99 = h.getPercentileNanos(0.99);
+      assertTrue(p99 >= 990 && p99 <= 1000);
+      assertEquals(1000, h.getPercentileNanos(1));
+   }
+
+   @Test
+   public final void testReset() {
+      Histogram h = new Histogram();
+      h.record(42);
+      h.reset();
+      assertEquals(0, h.getCount());
+      assertEquals(0, h.getTotalNanos());
+      assertEquals(0, h.getMaxNanos());
+   }
+}
@@ -0,0 +1,189 @@
+package com.example.rob.bio_uima.uima;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.collection.CasConsumer;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Test;
+
+import com.example.rob.bio_uima.core.FastaReader;
+import com.example.rob.bio_uima.core.FastaRecord;
+
+public class BatchingPipelineTest {
+
+   @Test
+   public final void testAlign_SameAsCommandLine() throws Exception {
+      String inputFile = new File(BatchingPipelineTest.class.getResource("/data/dna.txt").toURI()).getPath();
+      List<FastaRecord> records = new ArrayList<FastaRecord>();
+      FastaReader fasta = new FastaReader(inputFile);
+      try {
+         for (FastaRecord record = fasta.read(); record != null; record = fasta.read()) {
+            if (record.getSequence().length() > 0) {
+               records.add(record);
+            }
+         }
+      }
+      finally {
+         fasta.close();
+      }
+
+      BatchingPipeline pipeline = new BatchingPipeline(1, 1);
+      try {
+         assertEquals(printed(inputFile), pipeline.align(records));
+      }
+      finally {
+         pipeline.close();
+      }
+   }
+
+   @Test
+   public final void testConcurrentRequests_SameAsAlone() throws Exception {
+      Random random = new Random(24);
+      final List<List<FastaRecord>> inputs = new ArrayList<List<FastaRecord>>();
+      for (int r = 0; r < 12; r++) {
+         List<FastaRecord> records = new ArrayList<FastaRecord>();
+         for (int i = 0, n = 2 + random.nextInt(5); i < n; i++) {
+            records.add(new FastaRecord("r" + r + "s" + i, randomDna(random, 30 + random.nextInt(150))));
+         }
+         inputs.add(records);
+      }
+
+      final BatchingPipeline pipeline = new BatchingPipeline(2, 4);
+      ExecutorService clients = Executors.newFixedThreadPool(inputs.size());
+      try {
+         List<String> alone = new ArrayList<String>();
+         for (int r = 0; r < inputs.size(); r++) {
+            alone.add(request(pipeline, r, inputs.get(r)));
+         }
+
+         for (int round = 0; round < 5; round++) {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int r = 0; r < inputs.size(); r++) {
+               final int kind = r;
+               responses.add(clients.submit(new Callable<String>() {
+                  @Override
+                  public String call() throws Exception {
+                     start.await();
+                     return request(pipeline, kind, inputs.get(kind));
+                  }
+               }));
+            }
+            start.countDown();
+            for (int r = 0; r < inputs.size(); r++) {
+               assertEquals("request " + r, alone.get(r), responses.get(r).get());
+            }
+         }
+      }
+      finally {
+         clients.shutdown();
+         pipeline.close();
+      }
+   }
+
+   @Test
+   public final void testTranslate_WhenSequenceIsInvalid() throws Exception {
+      List<FastaRecord> valid = Arrays.asList(new FastaRecord("a", "CCATGGCCTAAATGTTT"));
+      BatchingPipeline pipeline = new BatchingPipeline(1, 4);
+      try {
+         String expected = pipeline.translate(valid);
+         try {
+            pipeline.translate(Arrays.asList(valid.get(0), new FastaRecord("n", "ATGNNNTAA")));
+            fail("Expected the sequence to be refused.");
+         }
+         catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Sequence n: "));
+         }
+         assertEquals(expected, pipeline.translate(valid));
+      }
+      finally {
+         pipeline.close();
+      }
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public final void testAlign_WhenClosed() throws Exception {
+      BatchingPipeline pipeline = new BatchingPipeline(1, 1);
+      pipeline.close();
+      pipeline.align(Arrays.asList(new FastaRecord("a", "ATGAAA"), new FastaRecord("b", "ATGCCC")));
+   }
+
+   /**
+    * Sends a translation, an alignment or a search, depending on 'kind'.
+    */
+   private static String request(BatchingPipeline pipeline, int kind, List<FastaRecord> records) throws Exception {
+      switch (kind % 3) {
+         case 0:
+            return pipeline.translate(records);
+         case 1:
+            return pipeline.align(records);
+         default:
+            String response = pipeline.search(records, new HashSet<String>(Collections.singleton(records.get(0)
+                  .getId())), 2);
+            assertTrue(response.length() > 0);
+            return response;
+      }
+   }
+
+   private static String randomDna(Random random, int length) {
+      StringBuilder sb = new StringBuilder("ATG");
+      for (int i = 0; i < length; i++) {
+         sb.append("ACGT".charAt(random.nextInt(4)));
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Runs the reader, the aggregate and the printer as {@link BioUimaMain} does.
+    * 
+    * @return What the printer wrote to standard output.
+    */
+   private static String printed(String inputFile) throws Exception {
+      CollectionReader reader = UIMAFramework.produceCollectionReader(BioDescriptors.fastaCollectionReader(inputFile,
+            0));
+      AnalysisEngine pipeline = UIMAFramework.produceAnalysisEngine(BioDescriptors.bio());
+      CasConsumer printer = UIMAFramework.produceCasConsumer(BioDescriptors.alignmentPrinter());
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      PrintStream stdout = System.out;
+      System.setOut(new PrintStream(bytes, true, "UTF-8"));
+      try {
+         CAS cas = CasCreationUtils.createCas(Arrays.asList(reader.getProcessingResourceMetaData(),
+               pipeline.getAnalysisEngineMetaData(), printer.getProcessingResourceMetaData()));
+         while (reader.hasNext()) {
+            reader.getNext(cas);
+            pipeline.process(cas);
+            printer.processCas(cas);
+            cas.reset();
+         }
+      }
+      finally {
+         System.setOut(stdout);
+         reader.close();
+         reader.destroy();
+         pipeline.destroy();
+         printer.destroy();
+      }
+      return bytes.toString("UTF-8").replace(System.getProperty("line.separator"), "\n");
+   }
+}
@@ -0,0 +1,131 @@
+package com.example.rob.bio_uima.uima;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.collection.CasConsumerDescription;
+import org.apache.uima.collection.CollectionReaderDescription;
+import org.apache.uima.resource.ResourceCreationSpecifier;
+import org.apache.uima.resource.metadata.ConfigurationParameter;
+import org.apache.uima.resource.metadata.FeatureDescription;
+import org.apache.uima.resource.metadata.FsIndexDescription;
+import org.apache.uima.resource.metadata.FsIndexKeyDescription;
+import org.apache.uima.resource.metadata.NameValuePair;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.XMLInputSource;
+import org.junit.Test;
+
+/**
+ * Checks the descriptions built in code against the XML descriptors, read from the classpath.
+ */
+public class BioDescriptorsTest {
+
+   @Test
+   public final void testTypeSystem_MatchesXml() throws Exception {
+      TypeSystemDescription xml = UIMAFramework.getXMLParser().parseTypeSystemDescription(xml("BioTypeSystem.xml"));
+      assertEquals(types(xml), types(BioDescriptors.typeSystem()));
+   }
+
+   @Test
+   public final void testAnnotators_MatchXml() throws Exception {
+      assertSame(parse("ProteinSequenceDescriptor.xml"), BioDescriptors.proteinSequence());
+
+      AnalysisEngineDescription xml = parse("SequenceAlignmentDescriptor.xml");
+      AnalysisEngineDescription code = BioDescriptors.sequenceAlignment();
+      assertSame(xml, code);
+      assertEquals(indexes(xml.getAnalysisEngineMetaData().getFsIndexCollection().getFsIndexes()),
+            indexes(code.getAnalysisEngineMetaData().getFsIndexCollection().getFsIndexes()));
+   }
+
+   @Test
+   public final void testAggregate_MatchesXml() throws Exception {
+      AnalysisEngineDescription xml = parse("BioDescriptor.xml");
+      AnalysisEngineDescription code = BioDescriptors.bio();
+      assertEquals(xml.getDelegateAnalysisEngineSpecifiersWithImports().keySet(),
+            code.getDelegateAnalysisEngineSpecifiersWithImports().keySet());
+      assertArrayEquals(((FixedFlow) xml.getAnalysisEngineMetaData().getFlowConstraints()).getFixedFlow(),
+            ((FixedFlow) code.getAnalysisEngineMetaData().getFlowConstraints()).getFixedFlow());
+   }
+
+   @Test
+   public final void testReaderAndPrinter_MatchXml() throws Exception {
+      CollectionReaderDescription reader = UIMAFramework.getXMLParser().parseCollectionReaderDescription(
+            xml("FastaCollectionReaderDescriptor.xml"));
+      assertSame(reader, BioDescriptors.fastaCollectionReader("data/dna.txt", 0));
+      CasConsumerDescription printer = UIMAFramework.getXMLParser().parseCasConsumerDescription(
+            xml("AlignmentPrinterDescriptor.xml"));
+      assertSame(printer, BioDescriptors.alignmentPrinter());
+   }
+
+   private static XMLInputSource xml(String name) throws Exception {
+      return new XMLInputSource(BioDescriptorsTest.class.getResource("/desc/" + name));
+   }
+
+   private static AnalysisEngineDescription parse(String name) throws Exception {
+      return UIMAFramework.getXMLParser().parseAnalysisEngineDescription(xml(name));
+   }
+
+   /**
+    * Asserts that two descriptions have the same implementation, operational properties and parameters.
+    */
+   private static void assertSame(ResourceCreationSpecifier xml, ResourceCreationSpecifier code) {
+      assertEquals(xml.getImplementationName(), code.getImplementationName());
+      ProcessingResourceMetaData xmlMetaData = (ProcessingResourceMetaData) xml.getMetaData();
+      ProcessingResourceMetaData codeMetaData = (ProcessingResourceMetaData) code.getMetaData();
+      assertEquals(xmlMetaData.getName(), codeMetaData.getName());
+      assertEquals(xmlMetaData.getOperationalProperties(), codeMetaData.getOperationalProperties());
+      assertEquals(declarations(xmlMetaData), declarations(codeMetaData));
+      assertEquals(settings(xmlMetaData), settings(codeMetaData));
+   }
+
+   private static Map<String, String> types(TypeSystemDescription types) {
+      Map<String, String> map = new TreeMap<String, String>();
+      for (TypeDescription type : types.getTypes()) {
+         map.put(type.getName(), type.getSupertypeName());
+         for (FeatureDescription feature : type.getFeatures()) {
+            map.put(type.getName() + ":" + feature.getName(), feature.getRangeTypeName());
+         }
+      }
+      return map;
+   }
+
+   private static List<String> indexes(FsIndexDescription[] indexes) {
+      List<String> list = new ArrayList<String>();
+      for (FsIndexDescription index : indexes) {
+         list.add(index.getLabel() + " " + index.getTypeName() + " " + index.getKind());
+         for (FsIndexKeyDescription key : index.getKeys()) {
+            list.add(key.getFeatureName() + " " + key.getComparator());
+         }
+      }
+      return list;
+   }
+
+   private static Map<String, String> declarations(ProcessingResourceMetaData metaData) {
+      Map<String, String> map = new TreeMap<String, String>();
+      for (ConfigurationParameter param : metaData.getConfigurationParameterDeclarations()
+            .getConfigurationParameters()) {
+         map.put(param.getName(), param.getType() + " " + param.isMultiValued() + " " + param.isMandatory());
+      }
+      return map;
+   }
+
+   private static Map<String, String> settings(ProcessingResourceMetaData metaData) {
+      Map<String, String> map = new TreeMap<String, String>();
+      for (NameValuePair pair : metaData.getConfigurationParameterSettings().getParameterSettings()) {
+         Object value = pair.getValue();
+         map.put(pair.getName(), value instanceof Object[] ? String.valueOf(((Object[]) value).length) + " values"
+               : String.valueOf(value));
+      }
+      return map;
+   }
+}
@@ -0,0 +1,42 @@
+package com.example.rob.bio_uima.uima;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.example.rob.bio_uima.core.FastaRecord;
+
+public class BioServerTest {
+
+   @Test
+   public final void testParseFasta() {
+      assertEquals("[a:ACGT, b:TTTGGG]", describe(BioServer.parseFasta(">a first\nAC\nGT\n# b\nTTT\nGGG\n")));
+   }
+
+   @Test
+   public final void testParseFasta_CrLf() {
+      assertEquals("[a:ACGT, b:TT]", describe(BioServer.parseFasta(">a\r\nAC\r\nGT\r\n\r\n>b\r\nTT")));
+   }
+
+   @Test
+   public final void testParseFasta_WhenRecordsHaveNoResidues() {
+      assertEquals("[b:AC]", describe(BioServer.parseFasta(">a\n\n>b\nAC\n>c\n")));
+      assertEquals("[]", describe(BioServer.parseFasta("")));
+   }
+
+   @Test
+   public final void testParseFasta_WhenNoHeader() {
+      assertEquals("[:ACGT, a:TT]", describe(BioServer.parseFasta("AC\nGT\n>a\nTT\n")));
+   }
+
+   private static String describe(List<FastaRecord> records) {
+      List<String> list = new ArrayList<String>();
+      for (FastaRecord record : records) {
+         list.add(record.getId() + ":" + record.getSequence());
+      }
+      return list.toString();
+   }
+}
@@ -0,0 +1,108 @@
+package com.example.rob.bio_uima.uima;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.CasIterator;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.util.XMLInputSource;
+import org.junit.Test;
+
+/**
+ * Checks that <code>desc/BioParallelDescriptor.xml</code>, which splits the pairs into child CASes for several aligner
+ * replicas, gives the same alignments as <code>desc/BioDescriptor.xml</code>.
+ */
+public class PairFlowControllerTest {
+
+   @Test
+   public final void testParallel_SameAlignmentsAsSerial() throws Exception {
+      Random random = new Random(23);
+      List<String> dna = new ArrayList<String>();
+      for (int i = 0; i < 8; i++) {
+         StringBuilder sb = new StringBuilder("ATG");
+         int len = 60 + random.nextInt(120);
+         for (int b = 0; b < len; b++) {
+            sb.append("ACGT".charAt(random.nextInt(4)));
+         }
+         dna.add(sb.toString());
+      }
+
+      AnalysisEngineDescription parallel = parse("BioParallelDescriptor.xml");
+      // 28 pairs in blocks of 3: ten child CASes, dealt to the two replicas in turn.
+      ((AnalysisEngineDescription) parallel.getDelegateAnalysisEngineSpecifiers().get("PairSplitterDescriptor"))
+            .getAnalysisEngineMetaData().getConfigurationParameterSettings()
+            .setParameterValue(PairSplitter.PARAM_PAIRS_PER_CAS, Integer.valueOf(3));
+
+      List<String> expected = align(parse("BioDescriptor.xml"), dna);
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, align(parallel, dna));
+   }
+
+   private static AnalysisEngineDescription parse(String name) throws Exception {
+      return UIMAFramework.getXMLParser().parseAnalysisEngineDescription(
+            new XMLInputSource(PairFlowControllerTest.class.getResource("/desc/" + name)));
+   }
+
+   /**
+    * Runs an aggregate on one CAS of DNA sequences.
+    * 
+    * @return The alignments of the alignments view, each as its protein positions and rendering, sorted.
+    */
+   private static List<String> align(AnalysisEngineDescription desc, List<String> dna) throws Exception {
+      AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(desc);
+      try {
+         CAS cas = ae.newCAS();
+         CAS dnaView = cas.createView(CasView.DNA);
+         Type sequenceType = cas.getTypeSystem().getType(BioTypes.DNA_SEQUENCE);
+         Feature name = sequenceType.getFeatureByBaseName(BioTypes.NAME);
+         StringBuilder text = new StringBuilder();
+         for (String seq : dna) {
+            text.append(seq).append(" ");
+         }
+         dnaView.setDocumentText(text.toString());
+         int begin = 0;
+         for (int i = 0; i < dna.size(); i++) {
+            AnnotationFS sequence = dnaView.createAnnotation(sequenceType, begin, begin + dna.get(i).length());
+            sequence.setStringValue(name, "seq" + i);
+            dnaView.addFsToIndexes(sequence);
+            begin += dna.get(i).length() + 1;
+         }
+
+         CasIterator children = ae.processAndOutputNewCASes(cas);
+         while (children.hasNext()) {
+            children.next().release();
+         }
+
+         CAS alignmentView = cas.getView(CasView.ALIGNMENTS);
+         Type alignmentType = cas.getTypeSystem().getType(BioTypes.PAIRWISE_ALIGNMENT);
+         Feature firstIndex = alignmentType.getFeatureByBaseName(BioTypes.FIRST_INDEX);
+         Feature secondIndex = alignmentType.getFeatureByBaseName(BioTypes.SECOND_INDEX);
+         List<String> alignments = new ArrayList<String>();
+         FSIterator<FeatureStructure> it = alignmentView.getIndexRepository().getIndex(BioTypes.ALIGNMENT_INDEX)
+               .iterator();
+         while (it.hasNext()) {
+            FeatureStructure alignment = it.next();
+            alignments.add(alignment.getIntValue(firstIndex) + " " + alignment.getIntValue(secondIndex) + "\n"
+                  + AlignmentPrinter.render(alignment));
+         }
+         Collections.sort(alignments);
+         return alignments;
+      }
+      finally {
+         ae.destroy();
+      }
+   }
+}